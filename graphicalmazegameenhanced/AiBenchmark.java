@@ -0,0 +1,146 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// Headless monster AI benchmark: a generated maze, N monsters packed around a wandering
+// player, and the distance field rebuilt on every tick (its worst case).
+//
+//   java -Djava.awt.headless=true ...AiBenchmark [--ticks N] [--warmup N] [--size N]
+//        [--monsters N,N,...] [--radius R] [--mode wander|hunt|both] [--parallel-min N]
+//        [--budget MICROS]
+//
+// Reports per-tick percentiles of MonsterManager.moveMonsters and of the field rebuild in it,
+// the cost of counting the monsters within NEAR_RADIUS of the player, and of a
+// FOV_RADIUS field of view from the player, recomputed every tick. With --budget the AI tick
+// is time-sliced (see AiScheduler) and the overruns and largest backlog are reported too.
+// Runs are seeded and unbudgeted by default, so the final-state digest must come out the
+// same with any --parallel-min.
+public class AiBenchmark {
+    private static final int NEAR_RADIUS = 16;
+    private static final int FOV_RADIUS = 20;
+
+    // The game as MonsterManager sees it; redraw notifications are dropped
+    static class Scene implements MonsterHost {
+        final MazeGrid maze;
+        final StoryManager story = new StoryManager();
+        int playerX, playerY;
+        private final SplittableRandom random;
+
+        Scene(int size, int monsters, int radius, long seed) {
+            random = new SplittableRandom(seed);
+            maze = MazeGenerator.generate(seed, size, size, 1);
+            maze.clearOccupants();
+            // Player on a floor cell near the middle, monsters on free cells within the radius
+            playerX = size / 2 | 1;
+            playerY = size / 2 | 1;
+            maze.setOccupant(playerX, playerY, MazeGrid.PLAYER);
+            int placed = 0;
+            for (int tries = 0; placed < monsters && tries < monsters * 50; tries++) {
+                int r = playerX + random.nextInt(2 * radius + 1) - radius;
+                int c = playerY + random.nextInt(2 * radius + 1) - radius;
+                if (Math.abs(r - playerX) + Math.abs(c - playerY) < 4 || !maze.isFree(r, c)) continue;
+                maze.setOccupant(r, c, MazeGrid.MONSTER);
+                placed++;
+            }
+        }
+
+        // One step to a random open neighbour, if the monsters leave one
+        void stepPlayer() {
+            for (int k = 0; k < 4; k++) {
+                int dir = random.nextInt(4);
+                int nr = playerX + MazeGrid.DIR_ROW[dir], nc = playerY + MazeGrid.DIR_COL[dir];
+                if (maze.isFree(nr, nc)) {
+                    maze.moveOccupant(playerX, playerY, nr, nc);
+                    playerX = nr;
+                    playerY = nc;
+                    return;
+                }
+            }
+        }
+
+        public MazeGrid getMaze() { return maze; }
+        public int getPlayerX() { return playerX; }
+        public int getPlayerY() { return playerY; }
+        public void markCellDirty(int r, int c) { }
+        public void markAreaDirty(int r, int c, int radius) { }
+        public StoryManager getStoryManager() { return story; }
+    }
+
+    public static void main(String[] args) {
+        if (System.getProperty("java.awt.headless") == null) System.setProperty("java.awt.headless", "true");
+        int ticks = 500, warmup = 200, size = 1025;
+        int[] counts = {100, 1_000, 10_000};
+        String mode = "both";
+        System.setProperty("maze.aiBudgetMicros", "0");
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--ticks" -> ticks = Integer.parseInt(args[++i]);
+                case "--warmup" -> warmup = Integer.parseInt(args[++i]);
+                case "--size" -> size = Integer.parseInt(args[++i]);
+                case "--monsters" -> counts = Arrays.stream(args[++i].split(",")).mapToInt(Integer::parseInt).toArray();
+                case "--radius" -> System.setProperty("maze.huntRadius", args[++i]);
+                case "--parallel-min" -> System.setProperty("maze.aiParallelMin", args[++i]);
+                case "--mode" -> mode = args[++i];
+                case "--budget" -> System.setProperty("maze.aiBudgetMicros", args[++i]);
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+                }
+            }
+        }
+        System.out.printf("%-7s %9s %8s %10s %10s %10s %10s %11s %8s %8s %8s %8s %8s %8s %8s%n", "mode", "monsters", "placed",
+                "p50 us", "p95 us", "p99 us", "field us", "field cells", "near", "near ns", "fov ns", "aggro", "overruns",
+                "backlog", "digest");
+        for (String m : new String[]{"wander", "hunt"}) {
+            if (!mode.equals("both") && !mode.equals(m)) continue;
+            for (int n : counts) run(m, n, size, ticks, warmup);
+        }
+    }
+
+    private static void run(String mode, int monsters, int size, int ticks, int warmup) {
+        int radius = MonsterManager.HUNT_RADIUS;
+        Scene scene = new Scene(size, monsters, radius, 7L);
+        MonsterManager manager = new MonsterManager(scene);
+        manager.resetMonsters(scene.maze);
+        manager.setHunting(mode.equals("hunt"));
+        manager.setSeed(7L);
+        FieldOfView view = new FieldOfView(FOV_RADIUS);
+        long[] tickTimes = new long[ticks], fieldTimes = new long[ticks], nearTimes = new long[ticks];
+        long[] fovTimes = new long[ticks];
+        int near = 0;
+        for (int t = 0; t < warmup + ticks; t++) {
+            scene.stepPlayer();
+            manager.getDistanceField().invalidate();
+            manager.moveMonsters();
+            long start = System.nanoTime();
+            near = manager.countMonstersNear(scene.playerX, scene.playerY, NEAR_RADIUS, Integer.MAX_VALUE);
+            long nearNanos = System.nanoTime() - start;
+            view.invalidate();
+            view.update(scene.maze, scene.playerX, scene.playerY);
+            if (t >= warmup) {
+                fovTimes[t - warmup] = view.getLastBuildNanos();
+                tickTimes[t - warmup] = manager.getLastTickMicros();
+                fieldTimes[t - warmup] = manager.getLastFieldMicros();
+                nearTimes[t - warmup] = nearNanos;
+            }
+        }
+        Arrays.sort(tickTimes);
+        Arrays.sort(fieldTimes);
+        Arrays.sort(nearTimes);
+        Arrays.sort(fovTimes);
+        int digest = 1, aggro = 0;
+        EntityStore actors = manager.getActors();
+        for (int s = 0; s < actors.size(); s++) {
+            digest = 31 * (31 * (31 * digest + actors.getId(s)) + actors.getX(s)) + actors.getY(s);
+            if (actors.getState(s) == EntityStore.STATE_AGGRO) aggro++;
+        }
+        AiScheduler scheduler = manager.getScheduler();
+        System.out.printf("%-7s %9d %8d %10d %10d %10d %10d %11d %8d %8d %8d %8d %8d %8d %08x%n", mode, monsters,
+                actors.size(),
+                tickTimes[ticks / 2], tickTimes[Math.min(ticks - 1, (int) (ticks * 0.95))],
+                tickTimes[Math.min(ticks - 1, (int) (ticks * 0.99))], fieldTimes[ticks / 2],
+                manager.getDistanceField().getReachedCells(), near, nearTimes[ticks / 2], fovTimes[ticks / 2],
+                aggro, scheduler.getOverruns(), scheduler.getMaxBacklog(), digest);
+    }
+}
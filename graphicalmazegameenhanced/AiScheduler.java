@@ -0,0 +1,69 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+// A fixed time budget for each AI tick. MonsterManager spends it in priority order (the
+// Warden, then monsters in sight of the player, then those in hunting range, then the
+// rest), checking the clock between batches. Whoever doesn't fit stands still, and the
+// next tick's pass starts after the last one served, so everyone gets a turn. Work that
+// can stop midway, such as a path search, takes a deadline instead and picks up where it
+// left off on the next tick.
+//
+// -Dmaze.aiBudgetMicros sets the budget; 0 means unlimited, which also keeps ticks
+// exactly reproducible from the level seed.
+public class AiScheduler {
+    public static final long BUDGET_MICROS = Long.getLong("maze.aiBudgetMicros", 2000);
+
+    // Work that can be paused at a deadline and resumed later
+    public interface AnytimeTask {
+        // Work until finished or past deadlineNanos (System.nanoTime); true when finished
+        boolean run(long deadlineNanos);
+    }
+
+    private long budgetNanos;
+    private long tickStart, deadline = Long.MAX_VALUE;
+    private long ticks = 0, overruns = 0;
+    private long lastUsedNanos = 0;
+    private int backlog = 0, maxBacklog = 0;
+
+    public AiScheduler(long budgetMicros) {
+        setBudgetMicros(budgetMicros);
+    }
+
+    public void setBudgetMicros(long micros) { budgetNanos = Math.max(0, micros) * 1000; }
+    public long getBudgetMicros() { return budgetNanos / 1000; }
+    public boolean isLimited() { return budgetNanos > 0; }
+
+    public void beginTick() {
+        tickStart = System.nanoTime();
+        deadline = budgetNanos > 0 ? tickStart + budgetNanos : Long.MAX_VALUE;
+    }
+
+    public boolean expired() {
+        return deadline != Long.MAX_VALUE && System.nanoTime() >= deadline;
+    }
+
+    // A deadline for spending at most this fraction of the whole budget, from now
+    public long deadlineFor(double share) {
+        if (deadline == Long.MAX_VALUE) return Long.MAX_VALUE;
+        return Math.min(deadline, System.nanoTime() + (long) (budgetNanos * share));
+    }
+
+    // Run a task against a share of the budget; true when it finished
+    public boolean run(AnytimeTask task, double share) {
+        return task.run(deadlineFor(share));
+    }
+
+    // backlog: actors that wanted a decision this tick and didn't get one
+    public void endTick(int backlog) {
+        lastUsedNanos = System.nanoTime() - tickStart;
+        ticks++;
+        if (budgetNanos > 0 && lastUsedNanos > budgetNanos) overruns++;
+        this.backlog = backlog;
+        maxBacklog = Math.max(maxBacklog, backlog);
+    }
+
+    public long getTicks() { return ticks; }
+    public long getOverruns() { return overruns; }
+    public long getLastUsedMicros() { return lastUsedNanos / 1000; }
+    public int getBacklog() { return backlog; }
+    public int getMaxBacklog() { return maxBacklog; }
+}
@@ -0,0 +1,37 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.lang.management.ManagementFactory;
+
+// Per-thread allocated-bytes counter (HotSpot ThreadMXBean extension), used to
+// check that a steady-state frame does not allocate.
+public final class AllocationMeter {
+    private static final com.sun.management.ThreadMXBean THREADS = init();
+
+    private AllocationMeter() {
+    }
+
+    private static com.sun.management.ThreadMXBean init() {
+        try {
+            java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) bean;
+                if (sun.isThreadAllocatedMemorySupported()) {
+                    sun.setThreadAllocatedMemoryEnabled(true);
+                    return sun;
+                }
+            }
+        } catch (UnsupportedOperationException | SecurityException e) {
+            System.err.println("Allocation counter unavailable: " + e.getMessage());
+        }
+        return null;
+    }
+
+    public static boolean isSupported() {
+        return THREADS != null;
+    }
+
+    // Bytes allocated so far by the calling thread, or -1 when unsupported
+    public static long currentThreadAllocatedBytes() {
+        return THREADS == null ? -1 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+}
@@ -0,0 +1,418 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Checkpoints for one level as a chain of small undo records. The level as loaded is the
+// keyframe; each later checkpoint stores only what it takes to step back to the one
+// before it: the terrain cells that changed (old values, logged as they change), the
+// actors that moved (old positions) and the player flags. Records are varint-packed into
+// a fixed byte ring, and when it fills up the oldest are dropped, so thousands of
+// checkpoints fit in a few KB. Rewinding replays records newest-first and then compares
+// each actor with the checkpoint once, putting back only those that differ, so it costs
+// the deltas being undone plus one pass over the actors, never the size of the maze.
+//
+// Actors are identified by their EntityStore id; an id that is no longer live (the slain
+// boss) is recorded as gone, and a rewind puts it back under the same id.
+public class CheckpointStore {
+    // The game's limits; a save journal's replay has to keep the same history
+    public static final int GAME_CHECKPOINTS = 2048, GAME_LOG_BYTES = 16 * 1024;
+
+    // What a rewind lands on; the maze terrain and the actor store have already been put back
+    public static class State {
+        public final int playerX, playerY, playerFacing;
+        public final boolean hasObjectiveItem;
+        public final String objective;
+
+        State(int playerX, int playerY, int playerFacing, boolean hasObjectiveItem, String objective) {
+            this.playerX = playerX;
+            this.playerY = playerY;
+            this.playerFacing = playerFacing;
+            this.hasObjectiveItem = hasObjectiveItem;
+            this.objective = objective;
+        }
+    }
+
+    private final byte[] log;     // record bytes, power-of-two ring
+    private final int mask;
+    private final int[] starts;   // absolute start of each record, ring of maxCheckpoints
+    private int first = 0, count = 0;
+    private int tail = 0;         // absolute write position; differences survive wrap-around
+
+    // The latest checkpoint (head) in full, minus terrain
+    private int headX, headY, headFacing, headObjective;
+    private boolean headItem;
+    private int slots = 0; // ids below this have been seen
+    private int[] actorX = new int[16], actorY = new int[16], actorFacing = new int[16], actorKind = new int[16];
+    private boolean headRestored = false; // head was just rewound to; the next rewind goes past it
+    private final List<String> objectives = new ArrayList<>();
+
+    // Terrain changes since the head: cell index and old terrain, in order
+    private int[] pendingCells = new int[16];
+    private byte[] pendingTerrain = new byte[16];
+    private int pending = 0;
+
+    // What the latest rewind put back, for the game to patch its own indexes: terrain cells,
+    // and actor ids with where each stood before (x -1 when it wasn't live)
+    private int[] restoredCells = new int[16];
+    private byte[] restoredTerrain = new byte[16];
+    private int restoredCellCount = 0;
+    private int[] restoredIds = new int[16], restoredFromX = new int[16], restoredFromY = new int[16];
+    private int restoredActorCount = 0;
+
+    private byte[] scratch = new byte[256];
+    private int scratchLength;
+    private int readPos; // ring index, while decoding
+
+    public CheckpointStore(int maxCheckpoints, int logBytes) {
+        int size = Integer.highestOneBit(Math.max(64, logBytes - 1) << 1);
+        log = new byte[size];
+        mask = size - 1;
+        starts = new int[maxCheckpoints];
+    }
+
+    public int getCount() { return count; }
+    public int getRestoredCellCount() { return restoredCellCount; }
+    public int getRestoredCell(int k) { return restoredCells[k]; }
+    public int getRestoredActorCount() { return restoredActorCount; }
+    public int getRestoredId(int k) { return restoredIds[k]; }
+    public int getRestoredFromX(int k) { return restoredFromX[k]; }
+    public int getRestoredFromY(int k) { return restoredFromY[k]; }
+    public int getStoredBytes() { return count == 0 ? 0 : tail - starts[first]; }
+
+    // Level start: the state as loaded becomes the keyframe and all history is dropped
+    public void reset(int playerX, int playerY, int facing, boolean hasItem, String objective, EntityStore actors) {
+        first = count = 0;
+        tail = 0;
+        pending = 0;
+        objectives.clear();
+        slots = 0;
+        headRestored = false;
+        setHead(playerX, playerY, facing, hasItem, objective);
+        slots = actors.getIdLimit();
+        ensureSlots(slots);
+        for (int id = 0; id < slots; id++) {
+            int slot = actors.slotOf(id);
+            actorKind[id] = slot < 0 ? MazeGrid.NONE : actors.getType(slot);
+            if (slot < 0) continue;
+            actorX[id] = actors.getX(slot);
+            actorY[id] = actors.getY(slot);
+            actorFacing[id] = actors.getFacing(slot);
+        }
+    }
+
+    // Must be called before a terrain cell changes, so the change can be undone
+    public void terrainChanged(int cell, char old) {
+        if (pending == pendingCells.length) {
+            pendingCells = Arrays.copyOf(pendingCells, pending * 2);
+            pendingTerrain = Arrays.copyOf(pendingTerrain, pending * 2);
+        }
+        pendingCells[pending] = cell;
+        pendingTerrain[pending] = (byte) old;
+        pending++;
+    }
+
+    // Bytes writeTo needs at most
+    public int getSaveSize() {
+        int size = 8 * 5 + 3 + 5 * count + getStoredBytes() + 11 * slots + 6 * pending;
+        for (String objective : objectives) size += SaveLoadManager.stringSize(objective);
+        return size;
+    }
+
+    // The whole history for a save file: the record lengths oldest first, their bytes, then
+    // the head in full and the terrain changes pending since it; numbers as varints
+    public void writeTo(ByteBuffer out) {
+        int base = count == 0 ? tail : starts[first];
+        SaveLoadManager.putVarint(out, count);
+        for (int k = 0; k < count; k++) {
+            int end = k + 1 < count ? starts[(first + k + 1) % starts.length] : tail;
+            SaveLoadManager.putVarint(out, end - starts[(first + k) % starts.length]);
+        }
+        for (int p = base; p != tail; p++) out.put(log[p & mask]);
+        SaveLoadManager.putVarint(out, headX);
+        SaveLoadManager.putVarint(out, headY);
+        SaveLoadManager.putVarint(out, headObjective);
+        out.put((byte) (headFacing | (headItem ? 4 : 0) | (headRestored ? 8 : 0)));
+        SaveLoadManager.putVarint(out, objectives.size());
+        for (String objective : objectives) SaveLoadManager.putString(out, objective);
+        SaveLoadManager.putVarint(out, slots);
+        for (int id = 0; id < slots; id++) {
+            SaveLoadManager.putVarint(out, actorX[id]);
+            SaveLoadManager.putVarint(out, actorY[id]);
+            out.put((byte) (actorKind[id] << 2 | actorFacing[id]));
+        }
+        SaveLoadManager.putVarint(out, pending);
+        for (int k = 0; k < pending; k++) {
+            SaveLoadManager.putVarint(out, pendingCells[k]);
+            out.put(pendingTerrain[k]);
+        }
+    }
+
+    // Replace everything with what writeTo wrote; the history must fit this store's limits.
+    // Throws IllegalArgumentException on a bad or short history, which can leave this store
+    // half-replaced: decode into a fresh store and only use it once this returns.
+    public void readFrom(ByteBuffer in) {
+        try {
+            int n = SaveLoadManager.getVarint(in), length = 0;
+            if (n < 0 || n > starts.length) throw new IllegalArgumentException("Too many checkpoints: " + n);
+            for (int k = 0; k < n; k++) {
+                starts[k] = length;
+                length += SaveLoadManager.getVarint(in);
+                if (length < 0 || length > log.length) throw new IllegalArgumentException("Checkpoint log too long");
+            }
+            in.get(log, 0, length);
+            first = 0;
+            count = n;
+            tail = length;
+            headX = SaveLoadManager.getVarint(in);
+            headY = SaveLoadManager.getVarint(in);
+            headObjective = SaveLoadManager.getVarint(in);
+            int flags = in.get();
+            headFacing = flags & 3;
+            headItem = (flags & 4) != 0;
+            headRestored = (flags & 8) != 0;
+            objectives.clear();
+            for (int k = SaveLoadManager.getVarint(in); k > 0; k--) objectives.add(SaveLoadManager.getString(in));
+            if (headObjective < 0 || headObjective >= objectives.size()) throw new IllegalArgumentException("Bad checkpoint objective");
+            slots = 0;
+            int saved = SaveLoadManager.getVarint(in);
+            // Each actor takes at least three bytes
+            if (saved < 0 || saved > in.remaining() / 3) throw new IllegalArgumentException("Bad checkpoint actor count: " + saved);
+            ensureSlots(saved);
+            for (int id = 0; id < saved; id++) {
+                actorX[id] = SaveLoadManager.getVarint(in);
+                actorY[id] = SaveLoadManager.getVarint(in);
+                int packed = in.get();
+                actorKind[id] = packed >>> 2 & 3;
+                actorFacing[id] = packed & 3;
+            }
+            slots = saved;
+            pending = 0;
+            for (int k = SaveLoadManager.getVarint(in); k > 0; k--) terrainChanged(SaveLoadManager.getVarint(in), (char) in.get());
+        } catch (BufferUnderflowException ex) {
+            throw new IllegalArgumentException("Checkpoint history ends early");
+        }
+    }
+
+    // Record a checkpoint at the current state: one undo record back to the previous head
+    public void save(int playerX, int playerY, int facing, boolean hasItem, String objective, EntityStore actors) {
+        scratchLength = 0;
+        // Flags of the previous head, relative to the new one
+        writeVarint(zigzag(headX - playerX));
+        writeVarint(zigzag(headY - playerY));
+        writeVarint(headFacing | (headItem ? 4 : 0) | headObjective << 3);
+        writeVarint(pending);
+        for (int k = 0; k < pending; k++) {
+            writeVarint(pendingCells[k]);
+            writeByte(pendingTerrain[k]);
+        }
+        pending = 0;
+        int total = Math.max(slots, actors.getIdLimit());
+        ensureSlots(total);
+        int moved = 0;
+        for (int id = 0; id < total; id++) {
+            if (changed(id, actors)) moved++;
+        }
+        writeVarint(moved);
+        for (int id = 0; id < total; id++) {
+            if (!changed(id, actors)) continue;
+            int slot = actors.slotOf(id);
+            int x = slot >= 0 ? actors.getX(slot) : actorX[id], y = slot >= 0 ? actors.getY(slot) : actorY[id];
+            int oldKind = id < slots ? actorKind[id] : MazeGrid.NONE;
+            writeVarint(id);
+            writeVarint(zigzag(actorX[id] - x) << 4 | oldKind << 2 | actorFacing[id]);
+            writeVarint(zigzag(actorY[id] - y));
+            actorX[id] = x;
+            actorY[id] = y;
+            actorFacing[id] = slot >= 0 ? actors.getFacing(slot) : actorFacing[id];
+            actorKind[id] = slot >= 0 ? actors.getType(slot) : MazeGrid.NONE;
+        }
+        slots = total;
+        append();
+        setHead(playerX, playerY, facing, hasItem, objective);
+        headRestored = false;
+    }
+
+    private boolean changed(int id, EntityStore actors) {
+        int slot = actors.slotOf(id);
+        if (slot < 0) return id < slots && actorKind[id] != MazeGrid.NONE;
+        return id >= slots || actors.getX(slot) != actorX[id] || actors.getY(slot) != actorY[id]
+                || actors.getFacing(slot) != actorFacing[id] || actors.getType(slot) != actorKind[id];
+    }
+
+    // Back to the latest checkpoint (steps = 1) or further. A checkpoint that was just rewound
+    // to counts as passed, so repeated single steps keep going back. Terrain is undone in the
+    // maze; actors that differ from the checkpoint are put back under their old ids, with
+    // their occupant bits moved, and keep their state and hp unless they have to be re-created.
+    // The rest keep their slots. null (and nothing touched) when there is no history at all.
+    public State rewind(int steps, MazeGrid maze, EntityStore actors) {
+        int back = Math.min(count, headRestored ? Math.max(1, steps) : Math.max(0, steps - 1));
+        if (headRestored && back == 0) return null;
+        restoredCellCount = 0;
+        int cols = maze.getCols();
+        for (int k = pending - 1; k >= 0; k--) {
+            logRestored(pendingCells[k], pendingTerrain[k]);
+            maze.setTerrain(pendingCells[k] / cols, pendingCells[k] % cols, (char) pendingTerrain[k]);
+        }
+        pending = 0;
+        for (int n = 0; n < back; n++) {
+            undoNewest(maze);
+        }
+        headRestored = true;
+        restoreActors(maze, actors);
+        return new State(headX, headY, headFacing, headItem, objectives.get(headObjective));
+    }
+
+    // Two passes, so clearing one actor's old cell can't wipe another's new one
+    private void restoreActors(MazeGrid maze, EntityStore actors) {
+        int total = Math.max(slots, actors.getIdLimit());
+        int n = 0;
+        for (int id = 0; id < total; id++) {
+            if (!changed(id, actors)) continue;
+            if (n == restoredIds.length) {
+                restoredIds = Arrays.copyOf(restoredIds, n * 2);
+                restoredFromX = Arrays.copyOf(restoredFromX, n * 2);
+                restoredFromY = Arrays.copyOf(restoredFromY, n * 2);
+            }
+            int slot = actors.slotOf(id);
+            restoredIds[n] = id;
+            restoredFromX[n] = slot >= 0 ? actors.getX(slot) : -1;
+            restoredFromY[n] = slot >= 0 ? actors.getY(slot) : -1;
+            if (slot >= 0) maze.setOccupant(actors.getX(slot), actors.getY(slot), MazeGrid.NONE);
+            n++;
+        }
+        restoredActorCount = n;
+        for (int k = 0; k < n; k++) {
+            int id = restoredIds[k], slot = actors.slotOf(id);
+            int kind = id < slots ? actorKind[id] : MazeGrid.NONE;
+            if (slot >= 0 && actors.getType(slot) != kind) {
+                actors.remove(id);
+                slot = -1;
+            }
+            if (kind == MazeGrid.NONE) continue;
+            if (slot < 0) actors.put(id, kind, actorX[id], actorY[id], actorFacing[id], EntityStore.DEFAULT_HP);
+            else actors.setPosition(slot, actorX[id], actorY[id], actorFacing[id]);
+            maze.setOccupant(actorX[id], actorY[id], kind);
+        }
+    }
+
+    private void undoNewest(MazeGrid maze) {
+        int idx = (first + count - 1) % starts.length;
+        readPos = starts[idx] & mask;
+        headX += unzigzag(readVarint());
+        headY += unzigzag(readVarint());
+        int flags = readVarint();
+        headFacing = flags & 3;
+        headItem = (flags & 4) != 0;
+        headObjective = flags >>> 3;
+        int cells = readVarint();
+        if (cells > 0) undoTerrain(maze, cells);
+        int moved = readVarint();
+        for (int k = 0; k < moved; k++) {
+            int s = readVarint();
+            int packed = readVarint();
+            actorX[s] += unzigzag(packed >>> 4);
+            actorY[s] += unzigzag(readVarint());
+            actorKind[s] = (packed >>> 2) & 3;
+            actorFacing[s] = packed & 3;
+        }
+        tail = starts[idx];
+        count--;
+    }
+
+    // Entries were logged in change order, so they're undone in reverse
+    private void undoTerrain(MazeGrid maze, int cells) {
+        int from = restoredCellCount;
+        for (int k = 0; k < cells; k++) {
+            int cell = readVarint();
+            logRestored(cell, readByte());
+        }
+        int cols = maze.getCols();
+        for (int k = restoredCellCount - 1; k >= from; k--) {
+            maze.setTerrain(restoredCells[k] / cols, restoredCells[k] % cols, (char) restoredTerrain[k]);
+        }
+    }
+
+    private void logRestored(int cell, byte old) {
+        if (restoredCellCount == restoredCells.length) {
+            restoredCells = Arrays.copyOf(restoredCells, restoredCellCount * 2);
+            restoredTerrain = Arrays.copyOf(restoredTerrain, restoredCellCount * 2);
+        }
+        restoredCells[restoredCellCount] = cell;
+        restoredTerrain[restoredCellCount++] = old;
+    }
+
+    private void setHead(int x, int y, int facing, boolean hasItem, String objective) {
+        headX = x;
+        headY = y;
+        headFacing = facing & 3;
+        headItem = hasItem;
+        int index = objectives.indexOf(objective);
+        if (index < 0) {
+            index = objectives.size();
+            objectives.add(objective);
+        }
+        headObjective = index;
+    }
+
+    private void ensureSlots(int n) {
+        if (n <= actorX.length) return;
+        int size = Math.max(n, actorX.length * 2);
+        actorX = Arrays.copyOf(actorX, size);
+        actorY = Arrays.copyOf(actorY, size);
+        actorFacing = Arrays.copyOf(actorFacing, size);
+        actorKind = Arrays.copyOf(actorKind, size);
+    }
+
+    // Copy the scratch record into the ring, dropping the oldest records to make room
+    private void append() {
+        if (scratchLength > log.length) {
+            first = count = 0; // a record bigger than the whole ring: history can't reach past it
+            return;
+        }
+        while (count > 0 && (count == starts.length || tail + scratchLength - starts[first] > log.length)) {
+            first = (first + 1) % starts.length;
+            count--;
+        }
+        starts[(first + count) % starts.length] = tail;
+        count++;
+        for (int k = 0; k < scratchLength; k++) {
+            log[(tail + k) & mask] = scratch[k];
+        }
+        tail += scratchLength;
+    }
+
+    private void writeByte(int b) {
+        if (scratchLength == scratch.length) scratch = Arrays.copyOf(scratch, scratchLength * 2);
+        scratch[scratchLength++] = (byte) b;
+    }
+
+    private void writeVarint(int v) {
+        while ((v & ~0x7F) != 0) {
+            writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        writeByte(v);
+    }
+
+    private byte readByte() {
+        byte b = log[readPos];
+        readPos = (readPos + 1) & mask;
+        return b;
+    }
+
+    private int readVarint() {
+        int v = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = readByte();
+            v |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+    }
+
+    private static int zigzag(int v) { return (v << 1) ^ (v >> 31); }
+    private static int unzigzag(int v) { return (v >>> 1) ^ -(v & 1); }
+}
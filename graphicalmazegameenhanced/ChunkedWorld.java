@@ -0,0 +1,395 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+// A level pack level too big to keep on the heap, paged in as 64x64-cell chunks. The chunks
+// around the player are loaded on demand, the next ones in the direction of travel are read
+// ahead on a background thread, and the least recently used are evicted once the resident
+// set outgrows its memory budget. Terrain stays in the mapped pack, so heap use follows the
+// budget rather than the size of the world.
+//
+// Actors in evicted chunks are frozen: their cells are parked and they leave the simulation
+// (see Listener) until the chunk comes back. Chunks whose terrain changed are kept whole
+// instead of being re-read from the pack. Only the game thread may touch the world; the
+// read-ahead thread just builds detached chunks.
+//
+//   java ...ChunkedWorld PACK [level] [steps] [budgetMB]   flies over a level, prints counters
+public class ChunkedWorld extends MazeGrid {
+    public static final int CHUNK_SHIFT = 6;
+    public static final int CHUNK_CELLS = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_CELLS - 1;
+    private static final int CHUNK_BYTES = CHUNK_CELLS * CHUNK_CELLS * 7 / 8 + 256; // 3.5 bits per cell plus headers
+    private static final int WINDOW = 1; // chunks kept resident around the player's own, each way
+    private static final int MIN_CHUNKS = 4 * (2 * WINDOW + 1) * (2 * WINDOW + 1);
+    private static final int[] NO_ACTORS = new int[0];
+
+    // Told when a chunk's actors join or leave the simulation; coordinates are the chunk's origin
+    public interface Listener {
+        void chunkLoaded(MazeGrid cells, int row0, int col0);
+        void chunkEvicted(MazeGrid cells, int row0, int col0);
+    }
+
+    private static class Chunk {
+        final int id, row0, col0;
+        final MazeGrid cells;
+        long lastUsed;
+        boolean modified;
+
+        Chunk(int id, int row0, int col0, MazeGrid cells) {
+            this.id = id;
+            this.row0 = row0;
+            this.col0 = col0;
+            this.cells = cells;
+        }
+    }
+
+    private final ByteBuffer terrain; // nibbles, straight out of the mapping
+    private final ByteBuffer spawns;  // (row, col, kind) triples, row-major
+    private final int chunkRows, chunkCols;
+    private final Chunk[] grid;       // by chunk id, null when not resident
+    private final List<Chunk> resident = new ArrayList<>();
+    private final Map<Integer, MazeGrid> retained = new HashMap<>(); // evicted chunks with changed terrain
+    private final Map<Integer, int[]> parked = new HashMap<>();      // evicted chunks' actors: local cell, kind
+    private final Map<Integer, Future<MazeGrid>> pending = new HashMap<>();
+    private final ExecutorService readAhead;
+    private final int capacity;
+    private Listener listener;
+    private long useClock = 0;
+    private int windowRow = -1, windowCol = -1, windowFacing = -1;
+
+    private long hits = 0, misses = 0, prefetches = 0, evictions = 0;
+    private final AtomicLong loads = new AtomicLong(), loadNanos = new AtomicLong(), maxLoadNanos = new AtomicLong();
+
+    private ChunkedWorld(int rows, int cols, ByteBuffer terrain, ByteBuffer spawns, long budgetBytes) {
+        super(rows, cols, true);
+        this.terrain = terrain;
+        this.spawns = spawns;
+        chunkRows = (rows + CHUNK_MASK) >> CHUNK_SHIFT;
+        chunkCols = (cols + CHUNK_MASK) >> CHUNK_SHIFT;
+        grid = new Chunk[chunkRows * chunkCols];
+        capacity = (int) Math.max(MIN_CHUNKS, Math.min(grid.length, budgetBytes / CHUNK_BYTES));
+        readAhead = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "chunk-read-ahead");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static ChunkedWorld open(LevelPack pack, int level, long budgetBytes) throws IOException {
+        return new ChunkedWorld(pack.getRows(level), pack.getCols(level),
+                pack.terrainView(level), pack.spawnView(level), budgetBytes);
+    }
+
+    public void setListener(Listener listener) { this.listener = listener; }
+
+    // Stops the read-ahead thread; the world must not be used afterwards
+    public void close() {
+        readAhead.shutdownNow();
+    }
+
+    public long getHits() { return hits; }
+    public long getMisses() { return misses; }
+    public long getPrefetches() { return prefetches; }
+    public long getEvictions() { return evictions; }
+    public int getResidentCount() { return resident.size(); }
+    public int getCapacity() { return capacity; }
+    public long getAverageLoadMicros() { return loads.get() == 0 ? 0 : loadNanos.get() / loads.get() / 1000; }
+    public long getMaxLoadMicros() { return maxLoadNanos.get() / 1000; }
+
+    // Once per tick on the game thread: installs finished read-aheads and, when the player has
+    // entered another chunk or turned, pages in their neighbourhood, reads ahead of them and
+    // evicts down to the budget
+    public void update(int playerRow, int playerCol, int facing) {
+        installReadAheads();
+        int pcr = playerRow >> CHUNK_SHIFT, pcc = playerCol >> CHUNK_SHIFT;
+        if (pcr == windowRow && pcc == windowCol && facing == windowFacing) return;
+        boolean moved = pcr != windowRow || pcc != windowCol;
+        windowRow = pcr;
+        windowCol = pcc;
+        windowFacing = facing;
+        useClock++;
+        for (int cr = pcr - WINDOW; cr <= pcr + WINDOW; cr++) {
+            for (int cc = pcc - WINDOW; cc <= pcc + WINDOW; cc++) {
+                if (cr < 0 || cc < 0 || cr >= chunkRows || cc >= chunkCols) continue;
+                Chunk chunk = grid[cr * chunkCols + cc];
+                if (chunk == null) {
+                    misses++;
+                    chunk = bringIn(cr * chunkCols + cc, null);
+                } else if (moved) {
+                    hits++;
+                }
+                chunk.lastUsed = useClock;
+            }
+        }
+        // The band of chunks just beyond the window, straight ahead
+        int d = facing & 3;
+        int aheadRow = pcr + (WINDOW + 1) * DIR_ROW[d], aheadCol = pcc + (WINDOW + 1) * DIR_COL[d];
+        for (int k = -WINDOW; k <= WINDOW; k++) {
+            readAhead(aheadRow + k * Math.abs(DIR_COL[d]), aheadCol + k * Math.abs(DIR_ROW[d]));
+        }
+        evictToBudget();
+    }
+
+    private void readAhead(int cr, int cc) {
+        if (cr < 0 || cc < 0 || cr >= chunkRows || cc >= chunkCols) return;
+        int id = cr * chunkCols + cc;
+        if (grid[id] != null || pending.containsKey(id) || retained.containsKey(id)) return;
+        pending.put(id, readAhead.submit(() -> readChunk(id)));
+        prefetches++;
+    }
+
+    private void installReadAheads() {
+        if (pending.isEmpty()) return;
+        for (Iterator<Map.Entry<Integer, Future<MazeGrid>>> it = pending.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Integer, Future<MazeGrid>> e = it.next();
+            if (!e.getValue().isDone()) continue;
+            it.remove();
+            MazeGrid cells = await(e.getValue());
+            if (cells != null && grid[e.getKey()] == null) bringIn(e.getKey(), cells).lastUsed = useClock;
+        }
+    }
+
+    private static MazeGrid await(Future<MazeGrid> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null; // read it again on this thread
+        }
+    }
+
+    // Makes a chunk resident. Its terrain comes from the retained set, a finished read-ahead
+    // (loaded) or the pack; its actors from the parked set or, on a first visit, the pack.
+    private Chunk bringIn(int id, MazeGrid loaded) {
+        MazeGrid cells = retained.remove(id);
+        boolean modified = cells != null;
+        if (cells == null) {
+            Future<MazeGrid> inFlight = loaded == null ? pending.remove(id) : null;
+            cells = loaded != null ? loaded : inFlight != null ? await(inFlight) : null;
+            if (cells == null) cells = readChunk(id);
+            int[] actors = parked.remove(id);
+            if (actors == null) {
+                placeSpawns(cells, (id / chunkCols) << CHUNK_SHIFT, (id % chunkCols) << CHUNK_SHIFT);
+            } else {
+                for (int k = 0; k < actors.length; k += 2) {
+                    cells.setOccupant(actors[k] / cells.getCols(), actors[k] % cells.getCols(), actors[k + 1]);
+                }
+            }
+        }
+        Chunk chunk = new Chunk(id, (id / chunkCols) << CHUNK_SHIFT, (id % chunkCols) << CHUNK_SHIFT, cells);
+        chunk.modified = modified;
+        chunk.lastUsed = useClock;
+        grid[id] = chunk;
+        resident.add(chunk);
+        if (listener != null) listener.chunkLoaded(cells, chunk.row0, chunk.col0);
+        return chunk;
+    }
+
+    // One chunk's terrain out of the mapping. Touches nothing shared, so it runs on either thread.
+    private MazeGrid readChunk(int id) {
+        long start = System.nanoTime();
+        int row0 = (id / chunkCols) << CHUNK_SHIFT, col0 = (id % chunkCols) << CHUNK_SHIFT;
+        int rows = Math.min(CHUNK_CELLS, getRows() - row0), cols = Math.min(CHUNK_CELLS, getCols() - col0);
+        MazeGrid cells = new MazeGrid(rows, cols);
+        for (int r = 0; r < rows; r++) {
+            int i = (row0 + r) * getCols() + col0;
+            for (int c = 0; c < cols; c++, i++) {
+                cells.setTerrain(r, c, terrainChar((terrain.get(i >> 1) >> ((i & 1) << 2)) & 0xF));
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        loads.incrementAndGet();
+        loadNanos.addAndGet(nanos);
+        maxLoadNanos.accumulateAndGet(nanos, Math::max);
+        return cells;
+    }
+
+    // Monsters and the boss the pack puts in a chunk nobody has visited; the game places the player
+    private void placeSpawns(MazeGrid cells, int row0, int col0) {
+        int count = spawns.limit() / 12;
+        int lo = 0, hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (spawns.getInt(mid * 12) < row0) lo = mid + 1;
+            else hi = mid;
+        }
+        for (int k = lo; k < count; k++) {
+            int r = spawns.getInt(k * 12), c = spawns.getInt(k * 12 + 4), kind = spawns.getInt(k * 12 + 8) & 3;
+            if (r >= row0 + cells.getRows()) break;
+            if (c >= col0 && c < col0 + cells.getCols() && kind != PLAYER) cells.setOccupant(r - row0, c - col0, kind);
+        }
+    }
+
+    // Least recently used first, never the player's window
+    private void evictToBudget() {
+        while (resident.size() > capacity) {
+            Chunk oldest = null;
+            for (Chunk chunk : resident) {
+                boolean inWindow = Math.abs((chunk.row0 >> CHUNK_SHIFT) - windowRow) <= WINDOW
+                        && Math.abs((chunk.col0 >> CHUNK_SHIFT) - windowCol) <= WINDOW;
+                if (!inWindow && (oldest == null || chunk.lastUsed < oldest.lastUsed)) oldest = chunk;
+            }
+            if (oldest == null) return;
+            if (listener != null) listener.chunkEvicted(oldest.cells, oldest.row0, oldest.col0);
+            if (oldest.modified) {
+                retained.put(oldest.id, oldest.cells);
+            } else {
+                parked.put(oldest.id, actorsOf(oldest.cells));
+            }
+            grid[oldest.id] = null;
+            resident.remove(oldest);
+            evictions++;
+        }
+    }
+
+    // Local cell, kind pairs
+    private static int[] actorsOf(MazeGrid cells) {
+        int n = 0;
+        for (int i = cells.nextOccupied(0); i >= 0; i = cells.nextOccupied(i + 1)) n++;
+        if (n == 0) return NO_ACTORS;
+        int[] actors = new int[n * 2];
+        int k = 0;
+        for (int i = cells.nextOccupied(0); i >= 0; i = cells.nextOccupied(i + 1)) {
+            actors[k++] = i;
+            actors[k++] = cells.getOccupant(i / cells.getCols(), i % cells.getCols());
+        }
+        return actors;
+    }
+
+    // The chunk holding (r, c), paged in on the spot if it isn't resident
+    private Chunk chunk(int r, int c) {
+        int id = (r >> CHUNK_SHIFT) * chunkCols + (c >> CHUNK_SHIFT);
+        Chunk chunk = grid[id];
+        if (chunk == null) {
+            misses++;
+            chunk = bringIn(id, null);
+        }
+        return chunk;
+    }
+
+    @Override
+    public char getTerrain(int r, int c) {
+        return chunk(r, c).cells.getTerrain(r & CHUNK_MASK, c & CHUNK_MASK);
+    }
+
+    @Override
+    public void setTerrain(int r, int c, char t) {
+        Chunk chunk = chunk(r, c);
+        if (isOpaqueTerrain(chunk.cells.getTerrain(r & CHUNK_MASK, c & CHUNK_MASK)) != isOpaqueTerrain(t)) wallsChanged();
+        chunk.cells.setTerrain(r & CHUNK_MASK, c & CHUNK_MASK, t);
+        chunk.modified = true;
+    }
+
+    @Override
+    public boolean isPassable(int r, int c) {
+        return inBounds(r, c) && chunk(r, c).cells.isPassable(r & CHUNK_MASK, c & CHUNK_MASK);
+    }
+
+    @Override
+    public boolean isPassableIndex(int i) {
+        return isPassable(i / getCols(), i % getCols());
+    }
+
+    @Override
+    public int getOccupant(int r, int c) {
+        return chunk(r, c).cells.getOccupant(r & CHUNK_MASK, c & CHUNK_MASK);
+    }
+
+    @Override
+    public void setOccupant(int r, int c, int kind) {
+        chunk(r, c).cells.setOccupant(r & CHUNK_MASK, c & CHUNK_MASK, kind);
+    }
+
+    // Frozen chunks are never stepped into, and asking doesn't page them in
+    @Override
+    public boolean isFree(int r, int c) {
+        if (!inBounds(r, c)) return false;
+        Chunk chunk = grid[(r >> CHUNK_SHIFT) * chunkCols + (c >> CHUNK_SHIFT)];
+        return chunk != null && chunk.cells.isFree(r & CHUNK_MASK, c & CHUNK_MASK);
+    }
+
+    // Searches resident chunks only; actors anywhere else are frozen
+    @Override
+    public int nextOccupied(int from) {
+        int best = -1;
+        for (Chunk chunk : resident) {
+            MazeGrid cells = chunk.cells;
+            for (int i = cells.nextOccupied(0); i >= 0; i = cells.nextOccupied(i + 1)) {
+                int cell = (chunk.row0 + i / cells.getCols()) * getCols() + chunk.col0 + i % cells.getCols();
+                if (cell >= from && (best < 0 || cell < best)) best = cell;
+            }
+        }
+        return best;
+    }
+
+    // Whole-world operations would page in every chunk
+    @Override
+    public MazeGrid copy() { throw new UnsupportedOperationException("A streamed world can't be copied whole"); }
+
+    @Override
+    public void fill(char t) { throw new UnsupportedOperationException("A streamed world can't be refilled"); }
+
+    @Override
+    public void clearOccupants() { throw new UnsupportedOperationException("A streamed world's actors can't be cleared"); }
+
+    @Override
+    byte[] terrainBytes() { throw new UnsupportedOperationException("A streamed world has no terrain layer"); }
+
+    @Override
+    long[] passableWords() { throw new UnsupportedOperationException("A streamed world has no passability layer"); }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: ChunkedWorld PACK [level] [steps] [budgetMB]");
+            System.exit(2);
+        }
+        LevelPack pack = LevelPack.open(Paths.get(args[0]));
+        int level = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        int steps = args.length > 2 ? Integer.parseInt(args[2]) : 200_000;
+        long budget = (args.length > 3 ? Long.parseLong(args[3]) : 8) << 20;
+        ChunkedWorld world = open(pack, level, budget);
+        // A camera flying over walls in long straight runs, so paging is all that's measured
+        SplittableRandom random = new SplittableRandom(1);
+        int r = 1, c = 1, facing = 2;
+        long hash = 0;
+        long t0 = System.nanoTime();
+        for (int step = 0; step < steps; step++) {
+            if (step % 500 == 0) facing = random.nextInt(4);
+            int nr = r + DIR_ROW[facing], nc = c + DIR_COL[facing];
+            if (!world.inBounds(nr, nc)) {
+                facing = (facing + 2) & 3;
+                continue;
+            }
+            r = nr;
+            c = nc;
+            world.update(r, c, facing);
+            hash = hash * 31 + world.getTerrain(r, c);
+        }
+        long t1 = System.nanoTime();
+        world.close();
+        System.gc();
+        Runtime rt = Runtime.getRuntime();
+        System.out.printf("%dx%d level %d, %d steps in %.1f ms (hash %016x)%n",
+                world.getRows(), world.getCols(), level, steps, (t1 - t0) / 1e6, hash);
+        System.out.printf("chunks: %d resident of %d budget, hits %d, misses %d, read ahead %d, evicted %d%n",
+                world.getResidentCount(), world.getCapacity(), world.getHits(), world.getMisses(),
+                world.getPrefetches(), world.getEvictions());
+        System.out.printf("chunk load avg %d us, max %d us; heap used %.1f MB%n",
+                world.getAverageLoadMicros(), world.getMaxLoadMicros(), (rt.totalMemory() - rt.freeMemory()) / 1048576.0);
+    }
+}
@@ -0,0 +1,120 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+// Records which maze cells changed since the last frame so only their
+// rectangles are redrawn instead of the whole panel.
+public class DirtyRegionTracker {
+    private final int cellSize;
+    private int rows;
+    private int cols;
+    private boolean[] dirty = new boolean[0];
+    private int[] dirtyCells = new int[0]; // indices of set flags, in mark order
+    private int dirtyCount = 0;
+    private boolean allDirty = true;
+    private final Rectangle extra = new Rectangle();
+    private boolean hasExtra = false;
+
+    public DirtyRegionTracker(int cellSize) {
+        this.cellSize = cellSize;
+    }
+
+    // Maze dimensions changed (new level): drop per-cell state and repaint everything
+    public void resizeIfNeeded(int rows, int cols) {
+        if (rows != this.rows || cols != this.cols) {
+            this.rows = rows;
+            this.cols = cols;
+            dirty = new boolean[rows * cols];
+            dirtyCells = new int[rows * cols];
+            dirtyCount = 0;
+            allDirty = true;
+        }
+    }
+
+    public void markCell(int r, int c) {
+        if (allDirty || r < 0 || r >= rows || c < 0 || c >= cols) return;
+        int idx = r * cols + c;
+        if (!dirty[idx]) {
+            dirty[idx] = true;
+            dirtyCells[dirtyCount++] = idx;
+        }
+    }
+
+    // Cell plus everything within radius cells (glow and boss aura spill over)
+    public void markArea(int r, int c, int radius) {
+        for (int i = r - radius; i <= r + radius; i++) {
+            for (int j = c - radius; j <= c + radius; j++) markCell(i, j);
+        }
+    }
+
+    // Pixel rectangle not tied to a cell (speech bubble, debug overlay)
+    public void markRect(int x, int y, int w, int h) {
+        if (hasExtra) {
+            int x2 = Math.max(extra.x + extra.width, x + w);
+            int y2 = Math.max(extra.y + extra.height, y + h);
+            extra.x = Math.min(extra.x, x);
+            extra.y = Math.min(extra.y, y);
+            extra.width = x2 - extra.x;
+            extra.height = y2 - extra.y;
+        } else {
+            extra.setBounds(x, y, w, h);
+            hasExtra = true;
+        }
+    }
+
+    public void markAll() {
+        allDirty = true;
+    }
+
+    public boolean isEmpty() {
+        return !allDirty && dirtyCount == 0 && !hasExtra;
+    }
+
+    // Drains marked regions into rects as {x, y, w, h} quadruples and returns how many
+    // were written, or -1 when the whole surface must be redrawn. Too many scattered
+    // cells collapse into their bounding box.
+    public int drain(int[] rects) {
+        int max = rects.length / 4;
+        int n = 0;
+        if (!allDirty) {
+            int needed = dirtyCount + (hasExtra ? 1 : 0);
+            if (needed <= max) {
+                for (int k = 0; k < dirtyCount; k++) {
+                    int idx = dirtyCells[k];
+                    rects[n * 4] = (idx % cols) * cellSize;
+                    rects[n * 4 + 1] = (idx / cols) * cellSize;
+                    rects[n * 4 + 2] = cellSize;
+                    rects[n * 4 + 3] = cellSize;
+                    n++;
+                }
+                if (hasExtra) {
+                    rects[n * 4] = extra.x;
+                    rects[n * 4 + 1] = extra.y;
+                    rects[n * 4 + 2] = extra.width;
+                    rects[n * 4 + 3] = extra.height;
+                    n++;
+                }
+            } else if (max > 0) {
+                int minX = hasExtra ? extra.x : Integer.MAX_VALUE, minY = hasExtra ? extra.y : Integer.MAX_VALUE;
+                int maxX = hasExtra ? extra.x + extra.width : Integer.MIN_VALUE, maxY = hasExtra ? extra.y + extra.height : Integer.MIN_VALUE;
+                for (int k = 0; k < dirtyCount; k++) {
+                    int idx = dirtyCells[k];
+                    int x = (idx % cols) * cellSize, y = (idx / cols) * cellSize;
+                    minX = Math.min(minX, x); minY = Math.min(minY, y);
+                    maxX = Math.max(maxX, x + cellSize); maxY = Math.max(maxY, y + cellSize);
+                }
+                rects[0] = minX; rects[1] = minY; rects[2] = maxX - minX; rects[3] = maxY - minY;
+                n = 1;
+            }
+            for (int k = 0; k < dirtyCount; k++) dirty[dirtyCells[k]] = false;
+        } else {
+            Arrays.fill(dirty, false);
+            n = -1;
+        }
+        dirtyCount = 0;
+        hasExtra = false;
+        allDirty = false;
+        return n;
+    }
+}
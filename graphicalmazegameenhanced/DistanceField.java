@@ -0,0 +1,87 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.util.Arrays;
+
+// Walking distances from one source cell (the player) over passable terrain, out to a
+// hunting radius, shared by every monster: each one steps to a neighbour one closer, so a
+// tick costs O(1) per monster however many there are.
+//
+// A path of length <= radius can't leave the (2 * radius + 1)^2 square around the source,
+// so the field is that window, re-centred on each rebuild. Entries are stamped with a
+// generation base instead of being cleared, so a rebuild only touches the cells the
+// breadth-first search reaches. It only runs when the source changes cell.
+public class DistanceField {
+    private final int radius, side;
+    private final int[] field;  // base + distance for cells reached this generation, < base otherwise
+    private final int[] queue;
+    private int base = 0;
+    private int originRow, originCol; // maze cell at window index 0
+    private int sourceRow = -1, sourceCol = -1;
+    private MazeGrid builtFor;
+    private int reached = 0;
+    private long builds = 0;
+    private long lastBuildNanos = 0;
+
+    public DistanceField(int radius) {
+        this.radius = radius;
+        side = 2 * radius + 1;
+        field = new int[side * side];
+        queue = new int[side * side];
+    }
+
+    public int getRadius() { return radius; }
+    public int getReachedCells() { return reached; }
+    public long getBuilds() { return builds; }
+    public long getLastBuildMicros() { return lastBuildNanos / 1000; }
+
+    // Terrain passability changed; the next update rebuilds even if the source didn't move
+    public void invalidate() {
+        builtFor = null;
+    }
+
+    // Rebuild around (row, col) if it isn't the current source; true when it rebuilt
+    public boolean update(MazeGrid maze, int row, int col) {
+        if (maze == builtFor && row == sourceRow && col == sourceCol) return false;
+        long start = System.nanoTime();
+        builtFor = maze;
+        sourceRow = row;
+        sourceCol = col;
+        originRow = row - radius;
+        originCol = col - radius;
+        if (base > Integer.MAX_VALUE - 2 * side) {
+            Arrays.fill(field, 0);
+            base = 0;
+        }
+        base += radius + 1;
+        int head = 0, tail = 0;
+        int center = radius * side + radius;
+        field[center] = base;
+        queue[tail++] = center;
+        while (head < tail) {
+            int i = queue[head++];
+            int d = field[i] - base;
+            if (d == radius) continue;
+            int lr = i / side, lc = i % side;
+            for (int k = 0; k < 4; k++) {
+                int nr = lr + MazeGrid.DIR_ROW[k], nc = lc + MazeGrid.DIR_COL[k];
+                if (nr < 0 || nc < 0 || nr >= side || nc >= side) continue;
+                int n = nr * side + nc;
+                if (field[n] >= base || !maze.isPassable(originRow + nr, originCol + nc)) continue;
+                field[n] = base + d + 1;
+                queue[tail++] = n;
+            }
+        }
+        reached = tail;
+        builds++;
+        lastBuildNanos = System.nanoTime() - start;
+        return true;
+    }
+
+    // Steps from (r, c) to the source, or -1 when it's beyond the radius or walled off
+    public int distance(int r, int c) {
+        int lr = r - originRow, lc = c - originCol;
+        if (builtFor == null || lr < 0 || lc < 0 || lr >= side || lc >= side) return -1;
+        int v = field[lr * side + lc];
+        return v >= base ? v - base : -1;
+    }
+}
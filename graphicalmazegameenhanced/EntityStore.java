@@ -0,0 +1,147 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.util.Arrays;
+
+// Monsters and the boss as parallel primitive arrays, one slot per live entity, packed at
+// the front so a tick walks plain arrays from 0 to size. Removal moves the last entity into
+// the hole, so slots shift; ids don't. An id stays with its entity for life and is only
+// reused after it's removed, so checkpoints and RNG streams can key on it.
+//
+// About 21 bytes per entity, with no per-entity objects.
+public class EntityStore {
+    // Entity kinds reuse the maze's occupant codes
+    public static final int MONSTER = MazeGrid.MONSTER, BOSS = MazeGrid.BOSS;
+    public static final int STATE_IDLE = 0;
+    public static final int STATE_AGGRO = 1; // a hunter that has seen the player
+    public static final int DEFAULT_HP = 1;
+
+    private int size = 0;
+    private int[] x = new int[16], y = new int[16], ids = new int[16];
+    private byte[] facing = new byte[16], type = new byte[16], state = new byte[16];
+    private short[] hp = new short[16];
+
+    private int[] slotOf = new int[16]; // by id: its slot, or -1 when the id is free
+    private int idLimit = 0;            // ids in use are all below this
+    private int[] freeIds = new int[16];
+    private int freeCount = 0;
+
+    public int size() { return size; }
+    public int getIdLimit() { return idLimit; }
+
+    public int getId(int slot) { return ids[slot]; }
+    public int getX(int slot) { return x[slot]; }
+    public int getY(int slot) { return y[slot]; }
+    public int getFacing(int slot) { return facing[slot]; }
+    public int getType(int slot) { return type[slot]; }
+    public int getHp(int slot) { return hp[slot]; }
+    public int getState(int slot) { return state[slot]; }
+
+    public void setPosition(int slot, int x, int y, int facing) {
+        this.x[slot] = x;
+        this.y[slot] = y;
+        this.facing[slot] = (byte) facing;
+    }
+
+    public void setHp(int slot, int hp) { this.hp[slot] = (short) hp; }
+    public void setState(int slot, int state) { this.state[slot] = (byte) state; }
+
+    // Slot of a live id, or -1
+    public int slotOf(int id) {
+        return id >= 0 && id < idLimit ? slotOf[id] : -1;
+    }
+
+    public void clear() {
+        size = 0;
+        idLimit = 0;
+        freeCount = 0;
+    }
+
+    // New entity on the most recently freed id, else the next unused one; returns the id
+    public int add(int type, int x, int y, int facing, int hp) {
+        int id = freeCount > 0 ? freeIds[--freeCount] : newId();
+        place(id, type, x, y, facing, hp);
+        return id;
+    }
+
+    // Re-create an entity under a known id, as when a checkpoint brings it back; the id
+    // must be free
+    public void put(int id, int type, int x, int y, int facing, int hp) {
+        while (idLimit <= id) pushFree(newId());
+        for (int k = freeCount - 1; k >= 0; k--) {
+            if (freeIds[k] == id) {
+                freeIds[k] = freeIds[--freeCount];
+                break;
+            }
+        }
+        place(id, type, x, y, facing, hp);
+    }
+
+    // Bulk copy into dst, for a snapshot that has to outlive the tick
+    public void copyTo(EntityStore dst) {
+        if (dst.ids.length < size) dst.grow(ids.length);
+        System.arraycopy(x, 0, dst.x, 0, size);
+        System.arraycopy(y, 0, dst.y, 0, size);
+        System.arraycopy(ids, 0, dst.ids, 0, size);
+        System.arraycopy(facing, 0, dst.facing, 0, size);
+        System.arraycopy(type, 0, dst.type, 0, size);
+        System.arraycopy(state, 0, dst.state, 0, size);
+        System.arraycopy(hp, 0, dst.hp, 0, size);
+        if (dst.slotOf.length < idLimit) dst.slotOf = new int[slotOf.length];
+        System.arraycopy(slotOf, 0, dst.slotOf, 0, idLimit);
+        if (dst.freeIds.length < freeCount) dst.freeIds = new int[freeIds.length];
+        System.arraycopy(freeIds, 0, dst.freeIds, 0, freeCount);
+        dst.size = size;
+        dst.idLimit = idLimit;
+        dst.freeCount = freeCount;
+    }
+
+    public void remove(int id) {
+        int slot = slotOf(id);
+        if (slot < 0) return;
+        int last = --size;
+        if (slot != last) {
+            x[slot] = x[last];
+            y[slot] = y[last];
+            ids[slot] = ids[last];
+            facing[slot] = facing[last];
+            type[slot] = type[last];
+            state[slot] = state[last];
+            hp[slot] = hp[last];
+            slotOf[ids[slot]] = slot;
+        }
+        slotOf[id] = -1;
+        pushFree(id);
+    }
+
+    private int newId() {
+        if (idLimit == slotOf.length) slotOf = Arrays.copyOf(slotOf, idLimit * 2);
+        slotOf[idLimit] = -1;
+        return idLimit++;
+    }
+
+    private void pushFree(int id) {
+        if (freeCount == freeIds.length) freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        freeIds[freeCount++] = id;
+    }
+
+    private void place(int id, int type, int x, int y, int facing, int hp) {
+        if (size == ids.length) grow(size * 2);
+        int slot = size++;
+        ids[slot] = id;
+        slotOf[id] = slot;
+        this.type[slot] = (byte) type;
+        this.state[slot] = STATE_IDLE;
+        this.hp[slot] = (short) hp;
+        setPosition(slot, x, y, facing);
+    }
+
+    private void grow(int capacity) {
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        ids = Arrays.copyOf(ids, capacity);
+        facing = Arrays.copyOf(facing, capacity);
+        type = Arrays.copyOf(type, capacity);
+        state = Arrays.copyOf(state, capacity);
+        hp = Arrays.copyOf(hp, capacity);
+    }
+}
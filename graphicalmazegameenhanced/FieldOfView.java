@@ -0,0 +1,105 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.util.Arrays;
+
+// The cells visible from one origin cell out to a radius, by recursive shadowcasting over
+// the wall layer ('#' and 'W'): each octant is scanned row by row outwards, and a wall
+// splits the scan into the slopes still open on either side of it. Every cell in range is
+// looked at about once, and walls cut whole wedges off early.
+//
+// The result is a bit per cell of the (2 * radius + 1)^2 square around the origin, and is
+// kept until the origin moves or the maze's wall version changes, so a viewer standing
+// still costs nothing.
+public class FieldOfView {
+    // Octant transforms: (row, col) = origin + (dx * xx + dy * xy, dx * yx + dy * yy)
+    private static final int[] XX = {1, 0, 0, -1, -1, 0, 0, 1};
+    private static final int[] XY = {0, 1, -1, 0, 0, -1, 1, 0};
+    private static final int[] YX = {0, 1, 1, 0, 0, -1, -1, 0};
+    private static final int[] YY = {1, 0, 0, 1, -1, 0, 0, -1};
+
+    private final int radius, side;
+    private final long[] visible;
+    private MazeGrid builtFor;
+    private long builtVersion;
+    private int originRow, originCol; // the viewer; the window starts radius up and left
+    private long builds = 0;
+    private long lastBuildNanos = 0;
+
+    public FieldOfView(int radius) {
+        this.radius = radius;
+        side = 2 * radius + 1;
+        visible = new long[(side * side + 63) / 64];
+    }
+
+    public int getRadius() { return radius; }
+    public long getBuilds() { return builds; }
+    public long getLastBuildNanos() { return lastBuildNanos; }
+
+    public void invalidate() {
+        builtFor = null;
+    }
+
+    // Recompute from (row, col) unless that's already what's held; true when it recomputed
+    public boolean update(MazeGrid maze, int row, int col) {
+        if (maze == builtFor && maze.getWallVersion() == builtVersion && row == originRow && col == originCol) {
+            return false;
+        }
+        long start = System.nanoTime();
+        builtFor = maze;
+        builtVersion = maze.getWallVersion();
+        originRow = row;
+        originCol = col;
+        Arrays.fill(visible, 0L);
+        mark(maze, row, col);
+        for (int oct = 0; oct < 8; oct++) cast(maze, 1, 1.0, 0.0, XX[oct], XY[oct], YX[oct], YY[oct]);
+        builds++;
+        lastBuildNanos = System.nanoTime() - start;
+        return true;
+    }
+
+    // Seen from the origin of the last update; false before the first
+    public boolean isVisible(int r, int c) {
+        int lr = r - originRow + radius, lc = c - originCol + radius;
+        if (builtFor == null || lr < 0 || lc < 0 || lr >= side || lc >= side) return false;
+        int i = lr * side + lc;
+        return (visible[i >> 6] & (1L << i)) != 0;
+    }
+
+    // Rows from 'row' outwards, between the slopes start and end (1 is the octant's diagonal
+    // edge, 0 its straight one); recurses past each wall with the part of the span it leaves
+    private void cast(MazeGrid maze, int row, double start, double end, int xx, int xy, int yx, int yy) {
+        if (start < end) return;
+        int r2 = radius * radius;
+        double nextStart = start;
+        for (int j = row; j <= radius; j++) {
+            boolean blocked = false;
+            for (int dx = -j, dy = -j; dx <= 0; dx++) {
+                double left = (dx - 0.5) / (dy + 0.5), right = (dx + 0.5) / (dy - 0.5);
+                if (start < right) continue;
+                if (end > left) break;
+                int r = originRow + dx * xx + dy * xy, c = originCol + dx * yx + dy * yy;
+                if (dx * dx + dy * dy <= r2) mark(maze, r, c);
+                boolean wall = !maze.inBounds(r, c) || MazeGrid.isOpaqueTerrain(maze.getTerrain(r, c));
+                if (blocked) {
+                    if (wall) {
+                        nextStart = right;
+                    } else {
+                        blocked = false;
+                        start = nextStart;
+                    }
+                } else if (wall && j < radius) {
+                    blocked = true;
+                    cast(maze, j + 1, start, left, xx, xy, yx, yy);
+                    nextStart = right;
+                }
+            }
+            if (blocked) break;
+        }
+    }
+
+    private void mark(MazeGrid maze, int r, int c) {
+        if (!maze.inBounds(r, c)) return;
+        int i = (r - originRow + radius) * side + (c - originCol + radius);
+        visible[i >> 6] |= 1L << i;
+    }
+}
@@ -0,0 +1,84 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+// Running frame statistics, shown in the debug overlay (F3). Written by the game loop thread only.
+public class FrameStats {
+    private long frames = 0;
+    private long paintedArea = 0;
+    private long fullArea = 0;
+    private long renderNanos = 0;
+    private long allocatedBytes = 0;
+    private long lastFrameAllocatedBytes = 0;
+
+    // Frames per second over the last whole second
+    private long fpsWindowStart = System.nanoTime();
+    private int fpsWindowFrames = 0;
+    private int fps = 0;
+    private long windowSerial = 0;
+
+    // Input-to-photon: key received on the EDT until the frame showing it was presented
+    private long inputSamples = 0;
+    private long inputLatencyNanos = 0;
+    private long maxInputLatencyNanos = 0;
+
+    public void recordFrame(long paintedPixels, int panelArea, long nanos, long allocated) {
+        frames++;
+        paintedArea += paintedPixels;
+        fullArea += panelArea;
+        renderNanos += nanos;
+        allocatedBytes += allocated;
+        lastFrameAllocatedBytes = allocated;
+
+        fpsWindowFrames++;
+        long now = System.nanoTime();
+        if (now - fpsWindowStart >= 1_000_000_000L) {
+            fps = fpsWindowFrames;
+            fpsWindowFrames = 0;
+            fpsWindowStart = now;
+            windowSerial++;
+        }
+    }
+
+    public void recordInputLatency(long nanos) {
+        inputSamples++;
+        inputLatencyNanos += nanos;
+        maxInputLatencyNanos = Math.max(maxInputLatencyNanos, nanos);
+    }
+
+    public long getFrames() { return frames; }
+    public int getFps() { return fps; }
+    // Bumped once per second; lets readers refresh derived text without polling every frame
+    public long getWindowSerial() { return windowSerial; }
+    public long getLastFrameAllocatedBytes() { return lastFrameAllocatedBytes; }
+
+    public long getAverageAllocatedBytesPerFrame() {
+        return frames == 0 ? 0 : allocatedBytes / frames;
+    }
+
+    // Percentage of the panel surface that dirty-region repaints did not touch
+    public int getSkippedAreaPercent() {
+        if (fullArea == 0) return 0;
+        return (int) (100 - (paintedArea * 100 / fullArea));
+    }
+
+    public long getAverageRenderMicros() {
+        return frames == 0 ? 0 : renderNanos / frames / 1000;
+    }
+
+    public long getAverageInputLatencyMicros() {
+        return inputSamples == 0 ? 0 : inputLatencyNanos / inputSamples / 1000;
+    }
+
+    public long getMaxInputLatencyMicros() { return maxInputLatencyNanos / 1000; }
+
+    public void reset() {
+        frames = 0;
+        paintedArea = 0;
+        fullArea = 0;
+        renderNanos = 0;
+        allocatedBytes = 0;
+        lastFrameAllocatedBytes = 0;
+        inputSamples = 0;
+        inputLatencyNanos = 0;
+        maxInputLatencyNanos = 0;
+    }
+}
@@ -0,0 +1,219 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.awt.event.KeyEvent;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+// Dedicated game thread: fixed-rate simulation ticks plus active rendering at a target FPS.
+// Key events arrive on the EDT and are handed over through a lock-free queue, so all game
+// state is only ever touched from this thread.
+//
+// With more than one core, rendering moves to a second thread: the game thread publishes a
+// RenderSnapshot after each batch of ticks and the render thread draws the newest one, so
+// neither waits for the other (-Dmaze.renderThread=true|false overrides the choice).
+public class GameLoop implements Runnable {
+    public static final int TICK_MS = 20; // 50 simulation ticks per second
+    private static final long TICK_NANOS = TICK_MS * 1_000_000L;
+    private static final int MAX_TICKS_PER_FRAME = 5; // don't spiral after a long stall
+    public static final boolean RENDER_THREAD = Boolean.parseBoolean(System.getProperty("maze.renderThread",
+            String.valueOf(Runtime.getRuntime().availableProcessors() > 1)));
+
+    private final GraphicalMazeGameEnhanced game;
+    private final GamePanel panel;
+    private final ConcurrentLinkedQueue<PendingKey> input = new ConcurrentLinkedQueue<>();
+    private volatile boolean running = false;
+    private volatile int targetFps;
+    private volatile Thread thread;
+    private Thread renderThread;
+    private final SnapshotExchange snapshots;
+
+    private static class PendingKey {
+        final KeyEvent event;
+        final long receivedNanos;
+
+        PendingKey(KeyEvent event, long receivedNanos) {
+            this.event = event;
+            this.receivedNanos = receivedNanos;
+        }
+    }
+
+    // targetFps <= 0 renders uncapped
+    public GameLoop(GraphicalMazeGameEnhanced game, GamePanel panel, int targetFps) {
+        this.game = game;
+        this.panel = panel;
+        this.targetFps = targetFps;
+        snapshots = RENDER_THREAD ? new SnapshotExchange(game.getParticles().getCapacity()) : null;
+    }
+
+    public void start() {
+        if (running) return;
+        running = true;
+        if (snapshots != null) {
+            // Before either thread runs: the render thread's first frame is a snapshot, and
+            // the game thread's marks never reach the panel it draws from
+            panel.useSnapshots();
+            game.publishSnapshot(snapshots, 0);
+        }
+        thread = new Thread(this, "game-loop");
+        thread.setDaemon(true);
+        thread.start();
+        if (snapshots != null) {
+            renderThread = new Thread(this::renderLoop, "render-loop");
+            renderThread.setDaemon(true);
+            renderThread.start();
+        }
+    }
+
+    public void stop() {
+        running = false;
+        if (thread != null && thread != Thread.currentThread()) {
+            LockSupport.unpark(thread);
+        }
+        if (renderThread != null && renderThread != Thread.currentThread()) {
+            LockSupport.unpark(renderThread);
+        }
+    }
+
+    public void setTargetFps(int fps) { targetFps = fps; }
+    public int getTargetFps() { return targetFps; }
+
+    // Called on the EDT
+    public void submitKey(KeyEvent e) {
+        input.add(new PendingKey(e, System.nanoTime()));
+        Thread t = thread;
+        if (t != null) LockSupport.unpark(t);
+    }
+
+    @Override
+    public void run() {
+        if (snapshots != null) {
+            simulationLoop();
+            return;
+        }
+        long previous = System.nanoTime();
+        long lag = 0;
+        long oldestInput = 0; // receive time of the oldest key not yet on screen, 0 if none
+
+        while (running) {
+            long frameStart = System.nanoTime();
+            lag += frameStart - previous;
+            previous = frameStart;
+
+            PendingKey key;
+            while ((key = input.poll()) != null) {
+                if (oldestInput == 0) oldestInput = key.receivedNanos;
+                game.handleKeyPress(key.event);
+                if (!running) return;
+            }
+
+            int ticks = 0;
+            while (lag >= TICK_NANOS && ticks < MAX_TICKS_PER_FRAME) {
+                game.simulationTick();
+                lag -= TICK_NANOS;
+                ticks++;
+                if (!running) return;
+            }
+            if (ticks == MAX_TICKS_PER_FRAME) lag = 0;
+
+            boolean shown = panel.renderFrame();
+            if (oldestInput != 0) {
+                // Keys that changed nothing on screen have no photon to wait for
+                if (shown) panel.getFrameStats().recordInputLatency(System.nanoTime() - oldestInput);
+                oldestInput = 0;
+            }
+
+            int fps = targetFps;
+            long frameNanos = fps > 0 ? 1_000_000_000L / fps : 0;
+            long sleepUntil;
+            if (frameNanos > 0) {
+                sleepUntil = frameStart + frameNanos;
+            } else if (!shown) {
+                sleepUntil = frameStart + 1_000_000L; // uncapped but idle: don't spin a core
+            } else {
+                continue;
+            }
+            // Wake early for the next simulation tick or a key press
+            long nextTick = frameStart + (TICK_NANOS - lag);
+            sleepUntil = Math.min(sleepUntil, nextTick);
+            long wait;
+            while (running && input.isEmpty() && (wait = sleepUntil - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, wait);
+            }
+        }
+    }
+
+    // Game thread when rendering is split off: input and ticks, then one snapshot for them
+    private void simulationLoop() {
+        long previous = System.nanoTime();
+        long lag = 0;
+        long oldestInput = 0;
+
+        while (running) {
+            long now = System.nanoTime();
+            lag += now - previous;
+            previous = now;
+
+            boolean changed = false;
+            PendingKey key;
+            while ((key = input.poll()) != null) {
+                if (oldestInput == 0) oldestInput = key.receivedNanos;
+                game.handleKeyPress(key.event);
+                changed = true;
+                if (!running) return;
+            }
+
+            int ticks = 0;
+            while (lag >= TICK_NANOS && ticks < MAX_TICKS_PER_FRAME) {
+                game.simulationTick();
+                lag -= TICK_NANOS;
+                ticks++;
+                if (!running) return;
+            }
+            if (ticks == MAX_TICKS_PER_FRAME) lag = 0;
+
+            if (changed || ticks > 0) {
+                game.publishSnapshot(snapshots, oldestInput);
+                oldestInput = 0;
+            }
+
+            long sleepUntil = now + (TICK_NANOS - lag);
+            long wait;
+            while (running && input.isEmpty() && (wait = sleepUntil - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, wait);
+            }
+        }
+    }
+
+    // Render thread: draws the newest snapshot at the target FPS; never touches game state
+    private void renderLoop() {
+        while (running) {
+            long frameStart = System.nanoTime();
+            RenderSnapshot next = snapshots.take();
+            long inputNanos = 0;
+            if (next != null) {
+                inputNanos = next.getInputNanos();
+                panel.applySnapshot(next);
+            } else if (!panel.hasSnapshot()) {
+                LockSupport.parkNanos(this, 1_000_000L); // nothing of our own to draw yet
+                continue;
+            }
+            boolean shown = panel.renderFrame();
+            if (shown && inputNanos != 0) panel.getFrameStats().recordInputLatency(System.nanoTime() - inputNanos);
+
+            int fps = targetFps;
+            long frameNanos = fps > 0 ? 1_000_000_000L / fps : 0;
+            long sleepUntil;
+            if (frameNanos > 0) {
+                sleepUntil = frameStart + frameNanos;
+            } else if (!shown) {
+                sleepUntil = frameStart + 1_000_000L; // uncapped but idle: don't spin a core
+            } else {
+                continue;
+            }
+            long wait;
+            while (running && (wait = sleepUntil - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, wait);
+            }
+        }
+    }
+}
@@ -1,234 +1,551 @@
-package com.mycompany.graphicalmazegameenhanced;
-
-import javax.swing.*;
-import java.awt.*;
-import java.util.Random;
-
-public class GamePanel extends JPanel {
-    private final GraphicalMazeGameEnhanced game;
-    private final MonsterManager monsterManager;
-    private final StoryManager storyManager;
-    private final Random random = new Random();
-
-    public GamePanel(GraphicalMazeGameEnhanced game, MonsterManager mm, StoryManager sm) {
-        this.game = game;
-        this.monsterManager = mm;
-        this.storyManager = sm;
-        setPreferredSize(new Dimension(GraphicalMazeGameEnhanced.COLS * GraphicalMazeGameEnhanced.CELL_SIZE,
-                                       GraphicalMazeGameEnhanced.ROWS * GraphicalMazeGameEnhanced.CELL_SIZE));
-    }
-
-    @Override
-    protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
-        Graphics2D g2d = (Graphics2D) g;
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-
-        // Draw the game as normal
-        char[][] maze = game.getMaze();
-        if (maze == null) return;
-        int ROWS = GraphicalMazeGameEnhanced.ROWS;
-        int COLS = GraphicalMazeGameEnhanced.COLS;
-        int CELL_SIZE = GraphicalMazeGameEnhanced.CELL_SIZE;
-        float glowAlpha = game.getGlowAlpha();
-        int playerX = game.getPlayerX();
-        int playerY = game.getPlayerY();
-        int playerFacing = game.getPlayerFacing();
-        int currentLevel = game.getCurrentLevel();
-
-        for (int i = 0; i < ROWS; i++) {
-            for (int j = 0; j < COLS; j++) {
-                int x = j * CELL_SIZE;
-                int y = i * CELL_SIZE;
-
-                // Ground with patterns (same colors as original)
-                if (currentLevel == 1) {
-                    g2d.setPaint(new GradientPaint(x, y, new Color(144, 238, 144), x + CELL_SIZE, y + CELL_SIZE, new Color(100, 200, 100)));
-                    g2d.fillRect(x, y, CELL_SIZE, CELL_SIZE);
-                    g2d.setColor(new Color(80, 160, 80, 100));
-                    g2d.fillOval(x + 10, y + 10, 5, 5);
-                } else if (currentLevel == 2) {
-                    g2d.setPaint(new GradientPaint(x, y, new Color(50, 150, 50), x + CELL_SIZE, y + CELL_SIZE, new Color(30, 100, 30)));
-                    g2d.fillRect(x, y, CELL_SIZE, CELL_SIZE);
-                    g2d.setColor(new Color(100, 80, 60, 100));
-                    g2d.fillRect(x + 15, y + 15, 5, 5);
-                } else {
-                    g2d.setPaint(new GradientPaint(x, y, new Color(0, 50, 100), x + CELL_SIZE, y + CELL_SIZE, new Color(0, 20, 50)));
-                    g2d.fillRect(x, y, CELL_SIZE, CELL_SIZE);
-                    g2d.setColor(new Color(255, 255, 255, 100));
-                    g2d.fillOval(x + 20, y + 20, 3, 3);
-                }
-
-                char cell = maze[i][j];
-                if (cell == '#' || cell == 'W') {
-                    boolean isBuilding = currentLevel == 1 && (i + j) % 2 == 0;
-                    drawWall(g2d, x, y, cell == 'W' ? false : isBuilding, currentLevel);
-                } else if (cell == 'T') {
-                    drawDecoration(g2d, x, y, currentLevel);
-                } else if (cell == 'A' || cell == 'S' || cell == 'C') {
-                    if (!game.hasObjectiveItem() && Math.abs(game.getPlayerX() - i) <= 2 && Math.abs(game.getPlayerY() - j) <= 2) {
-                        g2d.setColor(new Color(1.0f, 1.0f, 0.0f, glowAlpha * 0.5f));
-                        g2d.fillOval(x - 20, y - 20, CELL_SIZE + 40, CELL_SIZE + 40);
-                        g2d.setColor(new Color(1.0f, 1.0f, 0.0f, glowAlpha));
-                        g2d.fillOval(x - 15, y - 15, CELL_SIZE + 30, CELL_SIZE + 30);
-                        drawParticles(g2d, x, y);
-                    }
-                    drawObjectiveItem(g2d, x, y, cell);
-                } else if (cell == 'E') {
-                    drawExit(g2d, x, y, glowAlpha);
-                } else if (cell == 'G') {
-                    drawPerson(g2d, x, y, Color.MAGENTA, 2, true, currentLevel);
-                } else if (cell == 'P') {
-                    drawPerson(g2d, x, y, Color.BLUE, playerFacing, false, currentLevel);
-                } else if (cell == 'M' || cell == 'B') {
-                    if (cell == 'M') {
-                        drawPerson(g2d, x, y, currentLevel == 1 ? Color.RED : currentLevel == 2 ? new Color(0,100,0) : new Color(0,150,255), 2, false, currentLevel);
-                    } else {
-                        drawPerson(g2d, x, y, new Color(120, 0, 120), 2, false, currentLevel);
-                        g2d.setColor(new Color(200, 0, 200, 50));
-                        g2d.fillOval(x + 5, y - 5, CELL_SIZE - 10, CELL_SIZE + 10);
-                    }
-                }
-
-                if (cell == '.' || cell == 'T' || cell == 'P' || cell == 'M' || cell == 'B') {
-                    if ((i + j) % 3 == 0) {
-                        g2d.setColor(currentLevel == 1 ? new Color(169, 169, 169) : new Color(139, 69, 19));
-                        g2d.fillRect(x + 10, y + 20, CELL_SIZE - 20, 10);
-                    }
-                }
-            }
-        }
-
-        // Draw speech bubble if exists
-        if (storyManager.hasActiveSpeech()) {
-            storyManager.drawSpeechBubble(g2d, game.getPlayerX(), game.getPlayerY(), game.getCellSize());
-        }
-
-        // NEW: Pause overlay (drawn on top)
-        if (game.isPaused()) {
-            // Dark semi-transparent overlay
-            g2d.setColor(new Color(0, 0, 0, 150));
-            g2d.fillRect(0, 0, getWidth(), getHeight());
-            // "PAUSED" text (centered, large, white)
-            g2d.setColor(Color.WHITE);
-            g2d.setFont(new Font("Arial", Font.BOLD, 48));
-            FontMetrics fm = g2d.getFontMetrics();
-            String pausedText = "PAUSED";
-            int textX = (getWidth() - fm.stringWidth(pausedText)) / 2;
-            int textY = (getHeight() / 2) - (fm.getHeight() / 2) + fm.getAscent();
-            g2d.drawString(pausedText, textX, textY);
-            // Instructions
-            g2d.setFont(new Font("Arial", Font.PLAIN, 18));
-            String resumeText = "Press P to resume";
-            textX = (getWidth() - fm.stringWidth(resumeText)) / 2;
-            g2d.drawString(resumeText, textX, textY + 40);
-        }
-    }
-
-    // All drawing helper methods (unchanged)
-    private void drawWall(Graphics2D g, int x, int y, boolean isBuilding, int currentLevel) {
-        int CELL_SIZE = GraphicalMazeGameEnhanced.CELL_SIZE;
-        if (currentLevel == 2 || !isBuilding) {
-            g.setPaint(new GradientPaint(x, y, new Color(60, 160, 60), x + CELL_SIZE, y + CELL_SIZE, new Color(30, 100, 30)));
-            g.fillOval(x, y, CELL_SIZE, CELL_SIZE);
-            g.setColor(new Color(0, 120, 0, 150));
-            g.fillOval(x + 10, y + 10, CELL_SIZE - 20, CELL_SIZE - 20);
-            g.setColor(new Color(0, 80, 0, 100));
-            g.drawLine(x + 15, y + 15, x + 35, y + 35);
-        } else if (currentLevel == 3) {
-            g.setPaint(new GradientPaint(x, y, new Color(120, 120, 180), x + CELL_SIZE, y + CELL_SIZE, new Color(70, 70, 120)));
-            g.fillRect(x, y, CELL_SIZE, CELL_SIZE);
-            g.setColor(new Color(200, 200, 255, 150));
-            g.fillOval(x + 5, y + 5, 10, 10);
-            g.fillOval(x + 35, y + 35, 10, 10);
-            g.setColor(new Color(255, 255, 255, 50));
-            g.drawRect(x + 2, y + 2, CELL_SIZE - 4, CELL_SIZE - 4);
-        } else {
-            g.setPaint(new GradientPaint(x, y, new Color(139, 69, 19), x + CELL_SIZE, y + CELL_SIZE, new Color(100, 50, 10)));
-            g.fillRect(x, y, CELL_SIZE, CELL_SIZE);
-            g.setColor(new Color(80, 40, 0));
-            g.drawLine(x + 2, y + 2, x + CELL_SIZE - 2, y + 2);
-            g.drawLine(x + 2, y + 2, x + 2, y + CELL_SIZE - 2);
-            g.setColor(Color.YELLOW);
-            g.fillRect(x + 10, y + 10, 10, 10);
-            g.fillRect(x + 30, y + 30, 10, 10);
-        }
-    }
-
-    private void drawDecoration(Graphics2D g, int x, int y, int currentLevel) {
-        if (currentLevel == 3) {
-            g.setColor(new Color(0, 200, 255, 150));
-            g.fillOval(x + 15, y + 15, 20, 20);
-            g.setColor(new Color(255, 255, 255, 100));
-            g.fillOval(x + 20, y + 20, 10, 10);
-        } else {
-            g.setColor(new Color(139, 69, 19));
-            g.fillRect(x + 20, y + 30, 10, 20);
-            g.setColor(Color.GREEN);
-            g.fillOval(x + 5, y + 5, 40, 40);
-        }
-    }
-
-    private void drawObjectiveItem(Graphics2D g, int x, int y, char type) {
-        g.setColor(type == 'A' ? Color.YELLOW : type == 'S' ? Color.WHITE : new Color(255, 200, 0));
-        int[] xp = {x + 25, x + 10, x + 40};
-        int[] yp = {y + 10, y + 40, y + 40};
-        g.fillPolygon(xp, yp, 3);
-    }
-
-    private void drawExit(Graphics2D g, int x, int y, float glowAlpha) {
-        g.setPaint(new GradientPaint(x, y, new Color(0, 100, 0), x + 40, y + 40, new Color(0, 150, 0)));
-        g.fillRect(x + 10, y + 10, 30, 40);
-        g.setColor(new Color(255, 215, 0));
-        g.drawRect(x + 8, y + 8, 34, 44);
-        g.setColor(new Color(255, 255, 0, (int)(glowAlpha * 255)));
-        g.fillOval(x + 20, y + 30, 5, 5);
-    }
-
-    private void drawPerson(Graphics2D g, int x, int y, Color color, int facing, boolean isSage, int currentLevel) {
-        g.setColor(color);
-        g.fillOval(x + 15, y + 5, 20, 20);
-        g.setColor(new Color(255, 220, 200));
-        g.fillOval(x + 18, y + 8, 14, 14);
-        g.setColor(color);
-        g.fillRect(x + 22, y + 25, 6, 15);
-        g.drawLine(x + 25, y + 28, x + 15, y + 23);
-        g.drawLine(x + 25, y + 28, x + 35, y + 23);
-        g.drawLine(x + 24, y + 40, x + 20, y + 45);
-        g.drawLine(x + 26, y + 40, x + 30, y + 45);
-        if (isSage) {
-            g.setColor(new Color(200, 0, 200, 150));
-            g.fillPolygon(new int[]{x + 15, x + 25, x + 35}, new int[]{y + 25, y + 40, y + 25}, 3);
-            g.setColor(Color.GRAY);
-            g.fillRect(x + 23, y + 10, 4, 10);
-        } else {
-            g.setColor(new Color(150, 150, 150, 150));
-            g.fillRect(x + 20, y + 25, 10, 10);
-            g.setColor(Color.BLACK);
-            g.fillRect(x + 22, y + 30, 6, 2);
-        }
-        if (currentLevel == 3 && !isSage && color != Color.BLUE) {
-            g.setColor(new Color(0, 255, 255, 100));
-            g.fillOval(x + 10, y, 30, 30);
-            g.setColor(Color.WHITE);
-            g.fillOval(x + 20, y + 10, 4, 4);
-            g.fillOval(x + 26, y + 10, 4, 4);
-        }
-        g.setColor(Color.BLACK);
-        switch (facing) {
-            case 0: g.drawLine(x + 25, y + 15, x + 25, y + 5); break;
-            case 1: g.drawLine(x + 25, y + 15, x + 35, y + 15); break;
-            case 2: g.drawLine(x + 25, y + 15, x + 25, y + 25); break;
-            case 3: g.drawLine(x + 25, y + 15, x + 15, y + 15); break;
-        }
-    }
-
-    private void drawParticles(Graphics2D g, int x, int y) {
-        g.setColor(new Color(1.0f, 1.0f, 0.0f, 0.5f));
-        for (int i = 0; i < 8; i++) {
-            int px = x + 25 + random.nextInt(20) - 10;
-            int py = y + 25 + random.nextInt(20) - 10;
-            g.fillOval(px, py, 5, 5);
-        }
-    }
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.awt.*;
+import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+// Actively rendered by GameLoop through a BufferStrategy; AWT repaints only flag a full redraw.
+//
+// Either the game thread renders and marks what changed as it goes, or a render thread
+// draws RenderSnapshots (see applySnapshot). In snapshot mode the game's marks are ignored
+// and the panel works out what changed by comparing each snapshot with the last one drawn.
+public class GamePanel extends Canvas {
+    private RenderState game; // the live game, or in snapshot mode the panel's own copy
+    private RenderSnapshot shown;
+    private volatile boolean fromSnapshots = false;
+    private volatile int viewSpan = Math.max(GraphicalMazeGameEnhanced.VIEW_ROWS, GraphicalMazeGameEnhanced.VIEW_COLS);
+    private final StoryManager storyManager;
+    // Static tiles live in chunk images; a margin around the viewport is kept rasterized
+    // so scrolling rarely waits on a rebuild
+    private final TileChunkCache chunkCache = new TileChunkCache(GraphicalMazeGameEnhanced.CELL_SIZE);
+    private final TileChunkCache.Chunk[] visibleChunks = new TileChunkCache.Chunk[64];
+    private int visibleChunkCount = 0;
+    private static final int CHUNK_MARGIN = TileChunkCache.CHUNK_CELLS / 2;
+    private final SpriteCache sprites = new SpriteCache();
+    // Fog of war: cells the player can't see are shaded and their actors hidden
+    public static final int FOG_RADIUS = Integer.getInteger("maze.fogRadius", 6);
+    private final FieldOfView fog = new FieldOfView(FOG_RADIUS);
+    private volatile boolean fogOfWar = false;
+
+    // Camera: top-left visible cell, snapped to whole cells and following the player
+    private int camRow = 0, camCol = 0;
+
+    // Dirty-region repaint state
+    private final DirtyRegionTracker dirtyRegions = new DirtyRegionTracker(GraphicalMazeGameEnhanced.CELL_SIZE);
+    private final FrameStats frameStats = new FrameStats();
+    private boolean speechWasShown = false;
+    private volatile boolean showStats = false; // toggled from the game thread
+    private boolean statsShown = false;
+    private static final Rectangle STATS_BOUNDS = new Rectangle(4, 4, 492, 48); // up to three lines, viewport wide
+    private static final Color BACKGROUND = new Color(238, 238, 238);
+    private final int[] dirtyRects = new int[64 * 4];
+    private final Rectangle clipScratch = new Rectangle();
+    private final Rectangle bubbleScratch = new Rectangle();
+    private final Rectangle particleBounds = new Rectangle();
+    private boolean hadParticles = false;
+    // Particles are blended into this viewport-sized layer once per frame, then drawn as one image
+    private BufferedImage particleLayer;
+    private int[] particlePixels;
+    private final Rectangle particlePainted = new Rectangle();
+    private boolean particlesPainted = false;
+    private String statsText = "";
+    private String chunkStatsText = ""; // streamed worlds only
+    private String saveStatsText = "";
+    private long statsSerial = -1;
+    private final TextLayoutCache overlayText = new TextLayoutCache(8);
+    // Overlay text, drawn into images when it changes: frames only blit
+    private BufferedImage statsImage, pauseImage;
+    private int pauseImageY, pausePanelHeight;
+
+    // Dynamic-only palette, created once: the per-frame render path must not allocate
+    private static final Color STONE_GREY = new Color(169, 169, 169);
+    private static final Color BROWN = new Color(139, 69, 19);
+    private static final Color PAUSE_SHADE = new Color(0, 0, 0, 150);
+    private static final Color FOG_SHADE = new Color(10, 10, 20, 190);
+    private static final Color STATS_SHADE = new Color(0, 0, 0, 160);
+    private static final Font PAUSE_FONT = new Font("Arial", Font.BOLD, 48);
+    private static final Font PAUSE_HINT_FONT = new Font("Arial", Font.PLAIN, 18);
+    private static final Font STATS_FONT = new Font("Monospaced", Font.PLAIN, 12);
+    private volatile boolean exposed = true; // set from the EDT when AWT asks for a paint
+    private long framePaintedArea = 0;
+
+    public GamePanel(RenderState game, StoryManager sm) {
+        this.game = game;
+        this.storyManager = sm;
+        setPreferredSize(new Dimension(GraphicalMazeGameEnhanced.VIEW_COLS * GraphicalMazeGameEnhanced.CELL_SIZE,
+                                       GraphicalMazeGameEnhanced.VIEW_ROWS * GraphicalMazeGameEnhanced.CELL_SIZE));
+        setIgnoreRepaint(true);
+        setFocusable(false); // key input stays with the frame
+    }
+
+    // Window exposed or resized: the game loop redraws everything on its next frame
+    @Override
+    public void paint(Graphics g) {
+        exposed = true;
+    }
+
+    @Override
+    public void update(Graphics g) {
+        exposed = true;
+    }
+
+    // Static tiles (ground, walls, decorations, sage, exit door) are rasterized once into
+    // chunk images; only actors, the objective glow and the exit pulse are drawn per frame.
+    public void invalidateStaticLayer() {
+        if (!fromSnapshots) chunkCache.invalidateAll();
+    }
+
+    // A single tile changed: only its chunk is rasterized again
+    public void invalidateStaticCell(int r, int c) {
+        if (!fromSnapshots) chunkCache.invalidateCell(r, c);
+    }
+
+    // Before the render thread starts: from here on the game's marks are ignored and frames
+    // are drawn only from snapshots
+    public void useSnapshots() {
+        fromSnapshots = true;
+    }
+
+    // Render thread: whether a snapshot has been applied, so frames no longer read the live game
+    public boolean hasSnapshot() {
+        return shown != null;
+    }
+
+    // Render thread: next is the newest snapshot from the exchange. It's copied into the
+    // panel's own, and everything that differs from the previous one is marked the way the
+    // game would have marked it.
+    public void applySnapshot(RenderSnapshot next) {
+        fromSnapshots = true;
+        RenderSnapshot prev = shown;
+        if (prev == null) prev = shown = new RenderSnapshot(next.getParticles().getCapacity());
+        boolean first = game != prev;
+        RenderSnapshot.MazeWindow a = prev.getWindow(), b = next.getWindow();
+        boolean glowTicked = next.getGlowTicks() != prev.getGlowTicks();
+        if (first || a == null || b == null || next.getStaticEpoch() != prev.getStaticEpoch()
+                || next.getCurrentLevel() != prev.getCurrentLevel()) {
+            chunkCache.invalidateAll();
+            dirtyRegions.markAll();
+        } else {
+            if (next.isPaused() != prev.isPaused()) dirtyRegions.markAll();
+            // Cells both windows hold; the rest are far from the player, where nothing changes
+            // without a static epoch bump
+            int r0 = Math.max(a.getRow0(), b.getRow0()), r1 = Math.min(a.getRow1(), b.getRow1());
+            int c0 = Math.max(a.getCol0(), b.getCol0()), c1 = Math.min(a.getCol1(), b.getCol1());
+            for (int r = r0; r < r1; r++) {
+                for (int c = c0; c < c1; c++) {
+                    if (a.getTerrain(r, c) != b.getTerrain(r, c)) {
+                        chunkCache.invalidateCell(r, c);
+                        dirtyRegions.markCell(r - camRow, c - camCol);
+                    }
+                    int was = a.getOccupant(r, c), is = b.getOccupant(r, c);
+                    if (was == is) continue;
+                    if (was == MazeGrid.BOSS || is == MazeGrid.BOSS) dirtyRegions.markArea(r - camRow, c - camCol, 1);
+                    else dirtyRegions.markCell(r - camRow, c - camCol);
+                }
+            }
+            if (next.getPlayerX() != prev.getPlayerX() || next.getPlayerY() != prev.getPlayerY()) {
+                markBubbleMoved(prev.getPlayerX(), prev.getPlayerY());
+            }
+            if (next.hasObjectiveItem() != prev.hasObjectiveItem() || next.getPlayerFacing() != prev.getPlayerFacing()) {
+                dirtyRegions.markCell(next.getPlayerX() - camRow, next.getPlayerY() - camCol);
+            }
+        }
+        next.copyTo(prev);
+        game = prev;
+        if (glowTicked) markAnimated();
+        markParticles();
+    }
+
+    public FrameStats getFrameStats() { return frameStats; }
+
+    // May be called from any thread; the next frame picks it up
+    public void setFogOfWar(boolean on) {
+        fogOfWar = on;
+        exposed = true;
+    }
+
+    public boolean isFogOfWar() { return fogOfWar; }
+
+    // Cells within this distance of the player are all a frame can draw or cache, whatever
+    // the camera clamp: the viewport, the cache margin and chunk rounding
+    public int getSnapshotRadius() {
+        return viewSpan + CHUNK_MARGIN + TileChunkCache.CHUNK_CELLS;
+    }
+
+    // Marks take maze coordinates; the tracker works in viewport cells and ignores off-screen ones.
+    // In snapshot mode these come from the game thread and are dropped.
+    public void markCellDirty(int r, int c) {
+        if (!fromSnapshots) dirtyRegions.markCell(r - camRow, c - camCol);
+    }
+
+    public void markAreaDirty(int r, int c, int radius) {
+        if (!fromSnapshots) dirtyRegions.markArea(r - camRow, c - camCol, radius);
+    }
+
+    public void markAllDirty() {
+        if (!fromSnapshots) dirtyRegions.markAll();
+    }
+
+    private void markWorldRect(Rectangle b) {
+        int CELL_SIZE = GraphicalMazeGameEnhanced.CELL_SIZE;
+        dirtyRegions.markRect(b.x - camCol * CELL_SIZE, b.y - camRow * CELL_SIZE, b.width + 1, b.height + 1);
+    }
+
+    // Centre the camera on the player, clamped to the maze; any scroll redraws the viewport
+    private void updateCamera(MazeGrid maze) {
+        int CELL_SIZE = GraphicalMazeGameEnhanced.CELL_SIZE;
+        int viewRows = (getHeight() + CELL_SIZE - 1) / CELL_SIZE;
+        int viewCols = (getWidth() + CELL_SIZE - 1) / CELL_SIZE;
+        dirtyRegions.resizeIfNeeded(viewRows, viewCols);
+        viewSpan = Math.max(viewRows, viewCols);
+        // What the player sees changed: the fog moves everywhere it reaches
+        if (fogOfWar && fog.update(maze, game.getPlayerX(), game.getPlayerY())) dirtyRegions.markAll();
+        int row = Math.max(0, Math.min(game.getPlayerX() - viewRows / 2, maze.getRows() - getHeight() / CELL_SIZE));
+        int col = Math.max(0, Math.min(game.getPlayerY() - viewCols / 2, maze.getCols() - getWidth() / CELL_SIZE));
+        if (row != camRow || col != camCol) {
+            camRow = row;
+            camCol = col;
+            dirtyRegions.markAll();
+        }
+    }
+
+    // Bring the chunks under the viewport (plus margin) up to date, in parallel when several are stale
+    private void prepareStaticChunks(MazeGrid maze) {
+        int CELL_SIZE = GraphicalMazeGameEnhanced.CELL_SIZE;
+        int viewRows = (getHeight() + CELL_SIZE - 1) / CELL_SIZE;
+        int viewCols = (getWidth() + CELL_SIZE - 1) / CELL_SIZE;
+        chunkCache.ensure(maze, game.getCurrentLevel(), camRow - CHUNK_MARGIN, camCol - CHUNK_MARGIN,
+                viewRows + 2 * CHUNK_MARGIN, viewCols + 2 * CHUNK_MARGIN, getGraphicsConfiguration());
+        visibleChunkCount = chunkCache.collect(camRow, camCol, viewRows, viewCols, visibleChunks);
+    }
+
+    // May be called from any thread; the next frame picks it up
+    public void toggleStats() {
+        showStats = !showStats;
+    }
+
+    // Glow tick: only the objective glow, exit pulse, speech bubble and overlay animate
+    public void markAnimatedDirty() {
+        if (!fromSnapshots) markAnimated();
+    }
+
+    private void markAnimated() {
+        MazeGrid maze = game.getMaze();
+        if (maze == null) return;
+        int cols = maze.getCols();
+        for (int n = 0; n < visibleChunkCount; n++) {
+            int[] animated = visibleChunks[n].animated;
+            for (int k = 0; k < animated.length; k++) {
+                int r = animated[k] / cols, c = animated[k] % cols;
+                if (maze.getTerrain(r, c) == 'E') dirtyRegions.markCell(r - camRow, c - camCol);
+                else dirtyRegions.markArea(r - camRow, c - camCol, 1);
+            }
+        }
+        boolean speech = storyManager.hasActiveSpeech();
+        if (speech || speechWasShown) {
+            markWorldRect(storyManager.getSpeechBubbleBounds(game.getPlayerX(), game.getPlayerY(), game.getCellSize(), bubbleScratch));
+        }
+        speechWasShown = speech;
+        if (statsShown) dirtyRegions.markRect(STATS_BOUNDS.x, STATS_BOUNDS.y, STATS_BOUNDS.width, STATS_BOUNDS.height);
+    }
+
+    // Particles moved this tick: clear where they were and draw where they are
+    public void markParticlesDirty() {
+        if (!fromSnapshots) markParticles();
+    }
+
+    private void markParticles() {
+        if (hadParticles) markWorldRect(particleBounds);
+        hadParticles = game.getParticles().getBounds(particleBounds);
+        if (hadParticles) markWorldRect(particleBounds);
+    }
+
+    public void markPlayerMoved(int oldR, int oldC, int newR, int newC) {
+        if (fromSnapshots) return;
+        markCellDirty(oldR, oldC);
+        markCellDirty(newR, newC);
+        markBubbleMoved(oldR, oldC);
+    }
+
+    // The bubble follows the player, so its old spot needs clearing too
+    private void markBubbleMoved(int oldR, int oldC) {
+        if (storyManager.hasActiveSpeech()) {
+            markWorldRect(storyManager.getSpeechBubbleBounds(oldR, oldC, game.getCellSize(), bubbleScratch));
+        }
+    }
+
+    // The overlay was toggled since the last frame
+    private void updateStatsShown() {
+        boolean stats = showStats;
+        if (stats == statsShown) return;
+        statsShown = stats;
+        dirtyRegions.markRect(STATS_BOUNDS.x, STATS_BOUNDS.y, STATS_BOUNDS.width, STATS_BOUNDS.height);
+    }
+
+    // Called from the game loop thread. Redraws only the dirty rectangles into the back
+    // buffer (a blitted back buffer keeps the previous frame); returns false when nothing
+    // needed drawing and no frame was shown.
+    public boolean renderFrame() {
+        if (!isDisplayable() || getWidth() <= 0 || getHeight() <= 0) return false;
+        updateStatsShown();
+        MazeGrid maze = game.getMaze();
+        if (maze != null) {
+            updateCamera(maze);
+            prepareStaticChunks(maze);
+        }
+        BufferStrategy bs = getBufferStrategy();
+        if (bs == null) {
+            createBufferStrategy(2);
+            bs = getBufferStrategy();
+            exposed = true;
+        }
+        if (exposed) {
+            exposed = false;
+            dirtyRegions.markAll();
+        }
+        if (dirtyRegions.isEmpty()) return false;
+
+        BufferCapabilities caps = bs.getCapabilities();
+        boolean backBufferRetained = !caps.isPageFlipping()
+                || caps.getFlipContents() == BufferCapabilities.FlipContents.COPIED;
+        int n = dirtyRegions.drain(dirtyRects);
+        boolean full = n < 0 || !backBufferRetained;
+        long start = System.nanoTime();
+        long allocStart = AllocationMeter.currentThreadAllocatedBytes();
+        framePaintedArea = 0;
+        rasterizeParticles();
+        do {
+            do {
+                Graphics2D g2d = (Graphics2D) bs.getDrawGraphics();
+                try {
+                    if (full) {
+                        clipScratch.setBounds(0, 0, getWidth(), getHeight());
+                        render(g2d, clipScratch);
+                    } else {
+                        for (int k = 0; k < n; k++) {
+                            clipScratch.setBounds(dirtyRects[k * 4], dirtyRects[k * 4 + 1], dirtyRects[k * 4 + 2], dirtyRects[k * 4 + 3]);
+                            render(g2d, clipScratch);
+                        }
+                    }
+                } finally {
+                    g2d.dispose();
+                }
+                if (bs.contentsRestored()) full = true;
+            } while (bs.contentsRestored());
+            bs.show();
+            if (bs.contentsLost()) full = true;
+        } while (bs.contentsLost());
+        Toolkit.getDefaultToolkit().sync();
+        long allocated = allocStart < 0 ? 0 : AllocationMeter.currentThreadAllocatedBytes() - allocStart;
+        frameStats.recordFrame(framePaintedArea, getWidth() * getHeight(), System.nanoTime() - start, allocated);
+        return true;
+    }
+
+    // Offscreen rendering (benchmarks, golden images): a full frame at the panel's size, into
+    // the top-left of g
+    public void renderTo(Graphics2D g2d) {
+        updateStatsShown();
+        MazeGrid maze = game.getMaze();
+        if (maze != null) {
+            updateCamera(maze);
+            prepareStaticChunks(maze);
+        }
+        dirtyRegions.drain(dirtyRects); // offscreen frames are always complete
+        long allocStart = AllocationMeter.currentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        framePaintedArea = 0;
+        rasterizeParticles();
+        clipScratch.setBounds(0, 0, getWidth(), getHeight());
+        render(g2d, clipScratch);
+        long allocated = allocStart < 0 ? 0 : AllocationMeter.currentThreadAllocatedBytes() - allocStart;
+        frameStats.recordFrame(framePaintedArea, getWidth() * getHeight(), System.nanoTime() - start, allocated);
+    }
+
+    // Clears what the previous frame wrote and blends the live particles for this camera
+    private void rasterizeParticles() {
+        int w = getWidth(), h = getHeight();
+        if (particleLayer == null || particleLayer.getWidth() != w || particleLayer.getHeight() != h) {
+            particleLayer = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB_PRE);
+            particlePixels = ((DataBufferInt) particleLayer.getRaster().getDataBuffer()).getData();
+            particlesPainted = false;
+        }
+        if (particlesPainted) {
+            Rectangle p = particlePainted;
+            for (int y = p.y; y < p.y + p.height; y++) {
+                Arrays.fill(particlePixels, y * w + p.x, y * w + p.x + p.width, 0);
+            }
+        }
+        int CELL_SIZE = GraphicalMazeGameEnhanced.CELL_SIZE;
+        particlesPainted = game.getParticles().rasterize(particlePixels, w, h,
+                camCol * CELL_SIZE, camRow * CELL_SIZE, particlePainted);
+    }
+
+    // Draws everything inside clip (viewport coordinates; moved as rendering goes). Nothing
+    // here sets a clip on g2d, which would allocate: every image and rectangle is cut to the
+    // clip by SpriteCache.blit and fill, and everything else is a cached image.
+    private void render(Graphics2D g2d, Rectangle clip) {
+        // Also keeps translucent fills (fog, pause shade) off the allocating non-AA mask path
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setColor(BACKGROUND);
+        g2d.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+        MazeGrid maze = game.getMaze();
+        if (maze == null) return;
+        int CELL_SIZE = GraphicalMazeGameEnhanced.CELL_SIZE;
+        float glowAlpha = game.getGlowAlpha();
+        int playerFacing = game.getPlayerFacing();
+        int currentLevel = game.getCurrentLevel();
+        boolean fogged = fogOfWar;
+
+        framePaintedArea += clip.width * clip.height;
+
+        // World coordinates from here on; the clip follows the translation
+        int camX = camCol * CELL_SIZE, camY = camRow * CELL_SIZE;
+        g2d.translate(-camX, -camY);
+        clip.translate(camX, camY);
+        for (int n = 0; n < visibleChunkCount; n++) {
+            TileChunkCache.Chunk chunk = visibleChunks[n];
+            SpriteCache.blit(g2d, chunk.image, chunk.col0 * CELL_SIZE, chunk.row0 * CELL_SIZE,
+                    chunk.cols * CELL_SIZE, chunk.rows * CELL_SIZE, clip);
+        }
+
+        // Only cells under the clip (plus one ring for glow spill-over) need dynamic drawing
+        int rows = maze.getRows(), cols = maze.getCols();
+        int firstRow = Math.max(0, clip.y / CELL_SIZE - 1);
+        int lastRow = Math.min(rows - 1, (clip.y + clip.height) / CELL_SIZE + 1);
+        int firstCol = Math.max(0, clip.x / CELL_SIZE - 1);
+        int lastCol = Math.min(cols - 1, (clip.x + clip.width) / CELL_SIZE + 1);
+        int glow = SpriteCache.alphaIndex(glowAlpha);
+        int pulse = Math.max(0, Math.min(255, (int) (glowAlpha * 255)));
+
+        // Dynamic parts only
+        for (int i = firstRow; i <= lastRow; i++) {
+            for (int j = firstCol; j <= lastCol; j++) {
+                char cell = maze.getTerrain(i, j);
+                int occupant = maze.getOccupant(i, j);
+                int x = j * CELL_SIZE;
+                int y = i * CELL_SIZE;
+
+                if (cell == 'A' || cell == 'S' || cell == 'C') {
+                    if (!game.hasObjectiveItem() && Math.abs(game.getPlayerX() - i) <= 2 && Math.abs(game.getPlayerY() - j) <= 2) {
+                        SpriteCache.blitCell(g2d, sprites.glow(glow), x, y, clip);
+                    }
+                    SpriteCache.blitCell(g2d, sprites.objective(cell), x, y, clip);
+                } else if (cell == 'E') {
+                    SpriteCache.blitCell(g2d, sprites.exitPulse(pulse), x, y, clip);
+                }
+                // Actors stand on the terrain drawn above, where the player can see them
+                if (occupant != MazeGrid.NONE && (!fogged || fog.isVisible(i, j))) {
+                    BufferedImage sprite = occupant == MazeGrid.PLAYER ? sprites.player(playerFacing)
+                            : occupant == MazeGrid.MONSTER ? sprites.monster(currentLevel) : sprites.boss(currentLevel);
+                    SpriteCache.blitCell(g2d, sprite, x, y, clip);
+                    // Stones were always painted over actors; keep that layering
+                    if ((i + j) % 3 == 0) {
+                        g2d.setColor(currentLevel == 1 ? STONE_GREY : BROWN);
+                        SpriteCache.fill(g2d, x + 10, y + 20, CELL_SIZE - 20, 10, clip);
+                    }
+                }
+            }
+        }
+
+        if (fogged) drawFog(g2d, firstRow, lastRow, firstCol, lastCol, clip);
+
+        // All live particles in one image, above the actors
+        if (particlesPainted) {
+            int x0 = Math.max(clip.x, camX + particlePainted.x), y0 = Math.max(clip.y, camY + particlePainted.y);
+            int x1 = Math.min(clip.x + clip.width, camX + particlePainted.x + particlePainted.width);
+            int y1 = Math.min(clip.y + clip.height, camY + particlePainted.y + particlePainted.height);
+            if (x0 < x1 && y0 < y1) {
+                g2d.drawImage(particleLayer, x0, y0, x1, y1, x0 - camX, y0 - camY, x1 - camX, y1 - camY, null);
+            }
+        }
+
+        // Draw speech bubble if exists
+        storyManager.drawSpeechBubble(g2d, game.getPlayerX(), game.getPlayerY(), game.getCellSize(), clip);
+        g2d.translate(camX, camY);
+        clip.translate(-camX, -camY);
+
+        // NEW: Pause overlay (drawn on top)
+        if (game.isPaused()) {
+            // Dark semi-transparent overlay
+            g2d.setColor(PAUSE_SHADE);
+            g2d.fillRect(clip.x, clip.y, clip.width, clip.height);
+            if (pauseImage == null || pauseImage.getWidth() != getWidth() || pausePanelHeight != getHeight()) buildPauseImage();
+            SpriteCache.blit(g2d, pauseImage, 0, pauseImageY, pauseImage.getWidth(), pauseImage.getHeight(), clip);
+        }
+
+        if (statsShown) drawStats(g2d, clip);
+    }
+
+    // "PAUSED" and how to resume, white and centred, in an image as wide as the panel
+    private void buildPauseImage() {
+        Graphics2D measure = SpriteCache.antialiased(new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB_PRE));
+        TextLayoutCache.Layout paused = overlayText.get(measure, "PAUSED", PAUSE_FONT, 0);
+        TextLayoutCache.Layout hint = overlayText.get(measure, "Press P to resume", PAUSE_HINT_FONT, 0);
+        // Instructions, centred as the title-sized text always was
+        int resumeTextX = (getWidth() - overlayText.get(measure, "Press P to resume", PAUSE_FONT, 0).getWidth()) / 2;
+        measure.dispose();
+        int pausedTextY = (getHeight() / 2) - (paused.getLineHeight() / 2) + paused.getAscent();
+        pausePanelHeight = getHeight();
+        pauseImageY = pausedTextY - paused.getAscent();
+        int bottom = pausedTextY + 40 + hint.getLineHeight() - hint.getAscent();
+        pauseImage = new BufferedImage(getWidth(), bottom - pauseImageY, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = SpriteCache.antialiased(pauseImage);
+        g.translate(0, -pauseImageY);
+        g.setColor(Color.WHITE);
+        paused.draw(g, (getWidth() - paused.getWidth()) / 2, pausedTextY);
+        hint.draw(g, resumeTextX, pausedTextY + 40);
+        g.dispose();
+    }
+
+    // Shade the unseen cells in the given range, one rectangle per run along a row
+    private void drawFog(Graphics2D g, int firstRow, int lastRow, int firstCol, int lastCol, Rectangle clip) {
+        int CELL_SIZE = GraphicalMazeGameEnhanced.CELL_SIZE;
+        g.setColor(FOG_SHADE);
+        for (int i = firstRow; i <= lastRow; i++) {
+            for (int j = firstCol; j <= lastCol; j++) {
+                if (fog.isVisible(i, j)) continue;
+                int run = j;
+                while (j < lastCol && !fog.isVisible(i, j + 1)) j++;
+                SpriteCache.fill(g, run * CELL_SIZE, i * CELL_SIZE, (j - run + 1) * CELL_SIZE, CELL_SIZE, clip);
+            }
+        }
+    }
+
+    private void drawStats(Graphics2D g, Rectangle clip) {
+        // Text is rebuilt once per stats window, not per frame
+        if (statsSerial != frameStats.getWindowSerial() || statsImage == null) {
+            statsSerial = frameStats.getWindowSerial();
+            statsText = "fps " + frameStats.getFps() + "  skip " + frameStats.getSkippedAreaPercent()
+                    + "%  in " + frameStats.getAverageInputLatencyMicros() / 1000.0 + "ms  "
+                    + frameStats.getLastFrameAllocatedBytes() + "B/f  p " + game.getParticles().getLiveCount()
+                    + "/" + game.getParticles().getPeakCount() + "  ai " + game.getAiTickMicros() + "us"
+                    + (game.getAiBacklog() > 0 ? " +" + game.getAiBacklog() + " waiting" : "");
+            chunkStatsText = game.getWorldStats();
+            saveStatsText = game.getSaveStats();
+            buildStatsImage();
+        }
+        SpriteCache.blit(g, statsImage, STATS_BOUNDS.x, STATS_BOUNDS.y, STATS_BOUNDS.width, STATS_BOUNDS.height, clip);
+    }
+
+    private void buildStatsImage() {
+        if (statsImage == null) {
+            statsImage = new BufferedImage(STATS_BOUNDS.width, STATS_BOUNDS.height, BufferedImage.TYPE_INT_ARGB_PRE);
+        }
+        Graphics2D g = SpriteCache.antialiased(statsImage);
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(0, 0, STATS_BOUNDS.width, STATS_BOUNDS.height);
+        g.setComposite(AlphaComposite.SrcOver);
+        g.setColor(STATS_SHADE);
+        int lines = 1 + (chunkStatsText.isEmpty() ? 0 : 1) + (saveStatsText.isEmpty() ? 0 : 1);
+        g.fillRect(0, 0, STATS_BOUNDS.width, 6 + 14 * lines);
+        g.setColor(Color.WHITE);
+        int y = 14;
+        overlayText.get(g, statsText, STATS_FONT, 0).draw(g, 4, y);
+        if (!chunkStatsText.isEmpty()) overlayText.get(g, chunkStatsText, STATS_FONT, 0).draw(g, 4, y += 14);
+        if (!saveStatsText.isEmpty()) overlayText.get(g, saveStatsText, STATS_FONT, 0).draw(g, 4, y += 14);
+        g.dispose();
+    }
 }
\ No newline at end of file
@@ -3,29 +3,47 @@ package com.mycompany.graphicalmazegameenhanced;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.Arrays;
 
-public class GraphicalMazeGameEnhanced extends JFrame implements ActionListener {
+public class GraphicalMazeGameEnhanced extends JFrame implements RenderState, MonsterHost, ChunkedWorld.Listener {
 
     public static final int CELL_SIZE = 50;
-    public static final int ROWS = 10;
-    public static final int COLS = 10;
+    // Visible viewport in cells; the maze itself can be any size
+    public static final int VIEW_ROWS = 10;
+    public static final int VIEW_COLS = 10;
     private static final int MONSTER_MOVE_DELAY = 300;
     private static final int GLOW_ANIMATION_SPEED = 80;
     private static final int CHECKPOINT_INTERVAL = 10;
+    private static final int REWIND_CHECKPOINTS = 5; // R goes back this many checkpoints at once
+    private static final int TARGET_FPS = Integer.getInteger("maze.fps", 60); // 0 = uncapped
+    // -Dmaze.size=N plays generated N x N levels instead of the hand-made ones
+    private static final int GENERATED_SIZE = Integer.getInteger("maze.size", 0);
+    // -Dmaze.pack=FILE plays the levels of a binary level pack (see LevelPack)
+    private static final String LEVEL_PACK = System.getProperty("maze.pack");
+    // Packed levels with more cells than this are streamed in chunks under a heap budget
+    private static final long STREAM_CELLS = Long.getLong("maze.streamCells", 1L << 22);
+    private static final long CHUNK_BUDGET = Long.getLong("maze.chunkBudgetMB", 8) << 20;
+    // Autosave period in seconds (0 = off); the write happens off the game thread
+    private static final int AUTOSAVE_SECONDS = Integer.getInteger("maze.autosaveSeconds", 60);
+    // Fog of war beyond what the player can see; F toggles it
+    private static final boolean FOG_OF_WAR = Boolean.parseBoolean(System.getProperty("maze.fog", "true"));
 
     // state
     private int currentLevel = 1;
-    private final int MAX_LEVEL = 4;
-    private char[][] maze;
+    private int maxLevel = MazeData.LEVEL_COUNT;
+    private LevelPack levelPack;
+    private MazeGrid maze;
+    private ChunkedWorld world; // the maze when it's streamed, else null
     private int playerX = 1;
     private int playerY = 1;
     private int playerFacing = 2;
 
     // Pause and checkpoint state
     private boolean isPaused = false;
-    private final List<Checkpoint> checkpoints = new ArrayList<>();
+    private CheckpointStore checkpoints = new CheckpointStore(CheckpointStore.GAME_CHECKPOINTS, CheckpointStore.GAME_LOG_BYTES);
     private int moveCount = 0;
 
     // managers
@@ -38,10 +56,24 @@ public class GraphicalMazeGameEnhanced extends JFrame implements ActionListener
     private boolean hasObjectiveItem = false;
     private int sageInteractionStage = 0;
     private String currentObjective = "Find the Sage for guidance on the curse.";
-    private Timer monsterTimer;
-    private Timer glowTimer;
+    private GameLoop gameLoop;
+    private long tickCount = 0;
     private float glowAlpha = 0.5f;
     private boolean glowIncreasing = true;
+    // Render snapshots carry these so a render thread can tell what the marks would have said
+    private long staticEpoch = 0, glowTicks = 0;
+    private static final int MAX_PARTICLES = 16384;
+    private final ParticleSystem particles = new ParticleSystem(MAX_PARTICLES, System.nanoTime());
+    // Emitter cells, found once per level instead of scanning the maze every tick (-1 = none)
+    private int objectiveRow = -1, objectiveCol = -1, exitRow = -1, exitCol = -1;
+    private int sageRow = -1, sageCol = -1;
+    // A monster within this many cells of the player gets a warning in the quest log
+    private static final int DANGER_RADIUS = 3;
+    private static final int HINT_STEPS = 12; // O lights up this much of the way ahead
+    private static final String CONTROLS = "Controls: WASD/Arrows to move, SPACE to interact, P to pause/resume, C to load checkpoint, R to rewind further, H for help, V to save, L to load it, K to continue from the autosave, F to toggle the fog, O to show the way, F3 for frame stats.\n";
+    private boolean dangerNear = false;
+    // Drives level generation and decorations; logged so a report can be replayed with -Dmaze.seed
+    private long seed = Long.getLong("maze.seed", System.nanoTime());
 
     // UI
     private GamePanel gamePanel;
@@ -55,48 +87,46 @@ public class GraphicalMazeGameEnhanced extends JFrame implements ActionListener
         monsterManager = new MonsterManager(this);
         storyManager = new StoryManager();
         saveLoadManager = new SaveLoadManager();
+        monsterManager.setJournal(saveLoadManager.getJournal());
+        // Let a save in flight reach the disk before the JVM goes
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> saveLoadManager.flush(2000), "save-flush"));
         soundManager = new SoundManager();
 
         // Game panel
-        gamePanel = new GamePanel(this, monsterManager, storyManager);
+        gamePanel = new GamePanel(this, storyManager);
+        gamePanel.setFogOfWar(FOG_OF_WAR);
         add(gamePanel, BorderLayout.CENTER);
 
         // Quest log
         logScrollPane = storyManager.createLogScrollPane();
-        logScrollPane.setPreferredSize(new Dimension(COLS * CELL_SIZE, 150));
+        logScrollPane.setPreferredSize(new Dimension(VIEW_COLS * CELL_SIZE, 150));
         add(logScrollPane, BorderLayout.SOUTH);
 
-        setSize(COLS * CELL_SIZE + 16, (ROWS * CELL_SIZE + 150) + 39);
+        setSize(VIEW_COLS * CELL_SIZE + 16, (VIEW_ROWS * CELL_SIZE + 150) + 39);
         setDefaultCloseOperation(EXIT_ON_CLOSE);
         setResizable(false);
 
+        gameLoop = new GameLoop(this, gamePanel, TARGET_FPS);
         addKeyListener(new KeyAdapter() {
             @Override
             public void keyPressed(KeyEvent e) {
-                handleKeyPress(e);
+                gameLoop.submitKey(e);
             }
         });
         setFocusable(true);
 
-        loadLevel(1);
-
-        monsterTimer = new Timer(MONSTER_MOVE_DELAY, this);
-        monsterTimer.start();
-        glowTimer = new Timer(GLOW_ANIMATION_SPEED, e -> {
-            if (!isPaused) {
-                if (glowIncreasing) {
-                    glowAlpha += 0.07f;
-                    if (glowAlpha >= 0.9f) glowIncreasing = false;
-                } else {
-                    glowAlpha -= 0.07f;
-                    if (glowAlpha <= 0.3f) glowIncreasing = true;
-                }
+        if (LEVEL_PACK != null) {
+            try {
+                levelPack = LevelPack.open(Paths.get(LEVEL_PACK));
+                maxLevel = levelPack.getLevelCount();
+            } catch (IOException e) {
+                storyManager.appendToLog("Could not open level pack " + LEVEL_PACK + ": " + e.getMessage() + "\n");
             }
-            gamePanel.repaint();
-        });
-        glowTimer.start();
+        }
+        loadLevel(1);
 
         setVisible(true);
+        gameLoop.start();
 
         // NEW: Start background music
         soundManager.startBackgroundMusic();
@@ -107,8 +137,8 @@ public class GraphicalMazeGameEnhanced extends JFrame implements ActionListener
 
     // Expose state
     public int getCurrentLevel() { return currentLevel; }
-    public int getRows() { return ROWS; }
-    public int getCols() { return COLS; }
+    public int getRows() { return maze == null ? 0 : maze.getRows(); }
+    public int getCols() { return maze == null ? 0 : maze.getCols(); }
     public int getCellSize() { return CELL_SIZE; }
     public float getGlowAlpha() { return glowAlpha; }
     public boolean hasObjectiveItem() { return hasObjectiveItem; }
@@ -116,69 +146,141 @@ public class GraphicalMazeGameEnhanced extends JFrame implements ActionListener
     public int getPlayerX() { return playerX; }
     public int getPlayerY() { return playerY; }
     public int getPlayerFacing() { return playerFacing; }
-    public char[][] getMaze() { return maze; }
+    public MazeGrid getMaze() { return maze; }
+    public ParticleSystem getParticles() { return particles; }
+    public long getAiTickMicros() { return monsterManager.getLastTickMicros(); }
+    public int getAiBacklog() { return monsterManager.getScheduler().getBacklog(); }
+
+    public String getWorldStats() {
+        if (world == null) return "";
+        return "chunks " + world.getResidentCount() + "/" + world.getCapacity() + "  hit "
+                + world.getHits() + "  miss " + world.getMisses() + "  ahead " + world.getPrefetches()
+                + "  evict " + world.getEvictions() + "  load " + world.getAverageLoadMicros() + "us";
+    }
+
+    public String getSaveStats() { return saveLoadManager.getStatsLine(); }
+
+    // Game thread, render thread mode: copy the frame's state out for the renderer
+    public void publishSnapshot(SnapshotExchange snapshots, long inputNanos) {
+        snapshots.back().capture(this, gamePanel.getSnapshotRadius(), staticEpoch, glowTicks, inputNanos);
+        snapshots.publish();
+    }
     public MonsterManager getMonsterManager() { return monsterManager; }
     public StoryManager getStoryManager() { return storyManager; }
     public SoundManager getSoundManager() { return soundManager; }
 
-    // Checkpoint class (inner)
-    public static class Checkpoint {
-        int level;
-        int playerX, playerY, playerFacing;
-        boolean hasObjectiveItem;
-        char[][] maze;
-        List<int[]> monsterPositions; // {x, y, facing}
-
-        public Checkpoint(int level, int px, int py, int pf, boolean hasItem, char[][] m, List<int[]> mons) {
-            this.level = level;
-            this.playerX = px; this.playerY = py; this.playerFacing = pf;
-            this.hasObjectiveItem = hasItem;
-            this.maze = cloneMaze(m);
-            this.monsterPositions = new ArrayList<>(mons);
-        }
+    // Static tiles changed under the cached layer (pickup, decoration trampled, restore)
+    public void markStaticTilesDirty() {
+        staticEpoch++;
+        if (gamePanel != null) gamePanel.invalidateStaticLayer();
+    }
+
+    public void markStaticCellDirty(int r, int c) {
+        if (gamePanel != null) gamePanel.invalidateStaticCell(r, c);
+    }
 
-        private static char[][] cloneMaze(char[][] src) {
-            char[][] dest = new char[src.length][src[0].length];
-            for (int i = 0; i < src.length; i++) dest[i] = src[i].clone();
-            return dest;
+    // Cells whose contents changed this tick; redrawn on the next rendered frame
+    public void markCellDirty(int r, int c) {
+        if (gamePanel != null) gamePanel.markCellDirty(r, c);
+    }
+
+    public void markAreaDirty(int r, int c, int radius) {
+        if (gamePanel != null) gamePanel.markAreaDirty(r, c, radius);
+    }
+
+    // One fixed simulation step, run on the game loop thread every GameLoop.TICK_MS
+    public void simulationTick() {
+        tickCount++;
+        if (world != null) world.update(playerX, playerY, playerFacing);
+        if (tickCount % (GLOW_ANIMATION_SPEED / GameLoop.TICK_MS) == 0) {
+            if (!isPaused) {
+                if (glowIncreasing) {
+                    glowAlpha += 0.07f;
+                    if (glowAlpha >= 0.9f) glowIncreasing = false;
+                } else {
+                    glowAlpha -= 0.07f;
+                    if (glowAlpha <= 0.3f) glowIncreasing = true;
+                }
+            }
+            glowTicks++;
+            gamePanel.markAnimatedDirty();
+        }
+        if (!isPaused) {
+            emitParticles();
+            particles.update(GameLoop.TICK_MS / 1000f);
+            gamePanel.markParticlesDirty();
+        }
+        if (AUTOSAVE_SECONDS > 0 && !isPaused && tickCount % (AUTOSAVE_SECONDS * 1000L / GameLoop.TICK_MS) == 0) {
+            // The journal keeps the autosave current; the timer folds it into the base
+            if (world != null) saveLoadManager.autosave(this);
+            else journal().requestCompaction();
+        }
+        if (tickCount % (MONSTER_MOVE_DELAY / GameLoop.TICK_MS) == 0 && !isPaused) {
+            monsterManager.moveMonsters();
+            checkStoryTriggers();
+            if (isPlayerOnMonster() || monsterManager.hasCaughtPlayer()) {
+                loseGame();
+            } else {
+                boolean near = monsterManager.isMonsterNear(playerX, playerY, DANGER_RADIUS);
+                if (near && !dangerNear) storyManager.appendToLog("Something stirs in the dark nearby...\n");
+                dangerNear = near;
+            }
         }
     }
 
-    // Save checkpoint
+    // Save checkpoint (a small delta against the previous one)
     private void saveCheckpoint() {
-        List<int[]> mons = monsterManager.getAllMonsterPositions();
-        checkpoints.add(new Checkpoint(currentLevel, playerX, playerY, playerFacing, hasObjectiveItem, maze, mons));
-        if (checkpoints.size() > 5) checkpoints.remove(0); // Keep last 5
+        if (world != null) return; // actor slots shift as a streamed world pages chunks in and out
+        checkpoints.save(playerX, playerY, playerFacing, hasObjectiveItem, currentObjective,
+                monsterManager.getActors());
+        saveLoadManager.getJournal().checkpoint();
         storyManager.appendToLog("Checkpoint saved.\n");
     }
 
-    // Load last checkpoint
-    private void loadLastCheckpoint() {
-        if (checkpoints.isEmpty()) {
+    // The autosave journal, with a base taken first if it has none for this level yet. Called
+    // before the game changes, so the base is the game as it was.
+    private SaveJournal journal() {
+        SaveJournal journal = saveLoadManager.getJournal();
+        if (world == null && journal.wantsBase()) journal.rebase(captureSave(), storyManager);
+        return journal;
+    }
+
+    // Back to the last checkpoint (steps = 1) or further; repeated presses keep going back
+    private void rewindCheckpoints(int steps) {
+        SaveJournal journal = journal();
+        int fromX = playerX, fromY = playerY;
+        if (world == null) maze.setOccupant(fromX, fromY, MazeGrid.NONE); // a restored actor may stand here
+        CheckpointStore.State cp = world == null ? checkpoints.rewind(steps, maze, monsterManager.getActors()) : null;
+        if (cp == null) {
+            if (world == null) maze.setOccupant(fromX, fromY, MazeGrid.PLAYER);
             storyManager.appendToLog("No checkpoints available.\n");
             soundManager.playEvent("locked");
             return;
         }
-        Checkpoint cp = checkpoints.remove(checkpoints.size() - 1);
-        currentLevel = cp.level;
+        journal.rewind(steps);
         playerX = cp.playerX; playerY = cp.playerY; playerFacing = cp.playerFacing;
         hasObjectiveItem = cp.hasObjectiveItem;
-        maze = cp.maze;
-        monsterManager.setAllMonsterPositions(cp.monsterPositions);
-        // Replace P in maze
-        for (int i = 0; i < maze.length; i++) {
-            for (int j = 0; j < maze[i].length; j++) {
-                if (maze[i][j] == 'P') maze[i][j] = '.';
-            }
+        currentObjective = cp.objective;
+        maze.setOccupant(playerX, playerY, MazeGrid.PLAYER);
+        monsterManager.actorsRewound(checkpoints);
+        // Only the cells the rewind put back; all of them are picked-up objectives
+        for (int k = 0; k < checkpoints.getRestoredCellCount(); k++) {
+            int r = checkpoints.getRestoredCell(k) / maze.getCols(), c = checkpoints.getRestoredCell(k) % maze.getCols();
+            monsterManager.getPathfinder().cellChanged(r, c);
+            markStaticCellDirty(r, c);
+            char t = maze.getTerrain(r, c);
+            if (t == 'A' || t == 'S' || t == 'C') { objectiveRow = r; objectiveCol = c; }
         }
-        maze[playerX][playerY] = 'P';
-        storyManager.appendToLog("Loaded from last checkpoint.\n");
+        if (checkpoints.getRestoredCellCount() > 0) staticEpoch++; // a snapshot only compares cells near the player
+        particles.clear();
+        storyManager.appendToLog(steps == 1 ? "Loaded from last checkpoint.\n"
+                : "Rewound " + steps + " checkpoints (" + checkpoints.getCount() + " left).\n");
         soundManager.playEvent("pickup");
-        gamePanel.repaint();
+        gamePanel.markAllDirty();
     }
 
-    // Key press handling
-    private void handleKeyPress(KeyEvent e) {
+    // Key press handling (game loop thread)
+    public void handleKeyPress(KeyEvent e) {
         if (isPaused) {
             if (e.getKeyCode() == KeyEvent.VK_P) {
                 resumeGame();
@@ -198,28 +300,42 @@ public class GraphicalMazeGameEnhanced extends JFrame implements ActionListener
             case KeyEvent.VK_S, KeyEvent.VK_DOWN -> { newX++; newFacing = 2; }
             case KeyEvent.VK_D, KeyEvent.VK_RIGHT -> { newY++; newFacing = 1; }
             case KeyEvent.VK_P -> { pauseGame(); return; }
-            case KeyEvent.VK_C -> { loadLastCheckpoint(); return; }
+            case KeyEvent.VK_C -> { rewindCheckpoints(1); return; }
+            case KeyEvent.VK_R -> { rewindCheckpoints(REWIND_CHECKPOINTS); return; }
             case KeyEvent.VK_SPACE -> { interactWithSageOrBoss(); return; }
             case KeyEvent.VK_V -> { saveLoadManager.saveGame(this); return; }
             case KeyEvent.VK_L -> { saveLoadManager.loadGame(this); return; }
+            case KeyEvent.VK_K -> { saveLoadManager.continueGame(this); return; }
             case KeyEvent.VK_H -> { showHelp(); return; }
+            case KeyEvent.VK_O -> { showPathHint(); return; }
+            case KeyEvent.VK_F -> { gamePanel.setFogOfWar(!gamePanel.isFogOfWar()); return; }
+            case KeyEvent.VK_F3 -> { gamePanel.toggleStats(); return; }
             default -> { return; }
         }
 
         if (isValidMove(newX, newY)) {
-            char targetCell = maze[newX][newY];
-            if ((currentLevel == 1 && targetCell == 'A') || (currentLevel == 2 && targetCell == 'S') || (currentLevel == 3 && targetCell == 'C')) {
+            SaveJournal journal = journal();
+            char targetCell = maze.getTerrain(newX, newY);
+            // Objectives are identified by their tile, so packed and generated levels beyond 4 work too
+            if (targetCell == 'A' || targetCell == 'S' || targetCell == 'C') {
                 hasObjectiveItem = true;
-                maze[newX][newY] = '.';
-                String itemName = currentLevel == 1 ? "Crystal of Eternity" : currentLevel == 2 ? "Ancient Altar Seal" : "Celestial Spire Placement";
+                checkpoints.terrainChanged(maze.index(newX, newY), targetCell);
+                maze.setTerrain(newX, newY, '.');
+                monsterManager.getPathfinder().cellChanged(newX, newY);
+                markStaticCellDirty(newX, newY);
+                objectiveRow = objectiveCol = -1;
+                String itemName = targetCell == 'A' ? "Crystal of Eternity" : targetCell == 'S' ? "Ancient Altar Seal" : "Celestial Spire Placement";
                 storyManager.appendToLog("You acquired the " + itemName + "!\nNew Objective: Find the exit door.\n");
                 currentObjective = "Find the exit door.";
+                journal.terrain(maze.index(newX, newY), '.');
+                journal.item(true);
+                journal.objective(currentObjective);
                 soundManager.playEvent("pickup");
             }
 
             if (targetCell == 'E') {
                 if (hasObjectiveItem) {
-                    if (currentLevel < MAX_LEVEL) loadLevel(currentLevel + 1);
+                    if (currentLevel < maxLevel) loadLevel(currentLevel + 1);
                     else winGame();
                     return;
                 } else {
@@ -234,10 +350,10 @@ public class GraphicalMazeGameEnhanced extends JFrame implements ActionListener
                 return;
             }
 
-            char underlying = maze[playerX][playerY];
-            maze[playerX][playerY] = (underlying == 'P') ? '.' : underlying;
+            maze.moveOccupant(playerX, playerY, newX, newY);
+            gamePanel.markPlayerMoved(playerX, playerY, newX, newY);
             playerX = newX; playerY = newY; playerFacing = newFacing;
-            maze[playerX][playerY] = 'P';
+            journal.step(newFacing);
 
             if (isPlayerOnMonster()) loseGame();
 
@@ -246,45 +362,28 @@ public class GraphicalMazeGameEnhanced extends JFrame implements ActionListener
             if (moveCount % CHECKPOINT_INTERVAL == 0) {
                 saveCheckpoint();
             }
-
-            gamePanel.repaint();
         }
     }
 
     // Pause/Resume methods
     private void pauseGame() {
         isPaused = true;
-        monsterTimer.stop();
-        glowTimer.stop();
         soundManager.pauseBackgroundMusic(); // NEW: Pause background music
         storyManager.appendToLog("Game paused. Press P to resume.\n");
         soundManager.playEvent("locked");
-        gamePanel.repaint();
+        gamePanel.markAllDirty();
     }
 
     public void resumeGame() {
         isPaused = false;
-        monsterTimer.start();
-        glowTimer.start();
         soundManager.resumeBackgroundMusic(); // NEW: Resume background music
         storyManager.appendToLog("Game resumed.\n");
         soundManager.playEvent("pickup");
-        gamePanel.repaint();
-    }
-
-    @Override
-    public void actionPerformed(ActionEvent e) {
-        if (!isPaused) {
-            monsterManager.moveMonsters();
-            checkStoryTriggers();
-            if (isPlayerOnMonster()) loseGame();
-        }
-        gamePanel.repaint();
+        gamePanel.markAllDirty();
     }
 
     private void interactWithSageOrBoss() {
-        int[] sagePos = MazeData.getSagePositionForLevel(currentLevel);
-        int sx = sagePos[0], sy = sagePos[1];
+        int sx = sageRow, sy = sageCol;
         int dx = Math.abs(playerX - sx);
         int dy = Math.abs(playerY - sy);
         if (dx <= 1 && dy <= 1 && (dx + dy > 0)) {
@@ -299,13 +398,15 @@ public class GraphicalMazeGameEnhanced extends JFrame implements ActionListener
                 dx = Math.abs(playerX - bx); dy = Math.abs(playerY - by);
                 if (dx <= 1 && dy <= 1 && (dx + dy > 0)) {
                     if (hasObjectiveItem) {
+                        SaveJournal journal = journal();
                         monsterManager.killBoss();
                         storyManager.appendToLog("You used the Crystal's power to shatter the Corrupted Warden.\n");
                         soundManager.playEvent("boss_defeat");
-                        maze[bx][by] = '.';
+                        markAreaDirty(bx, by, 1);
+                        particles.emitBurst(by * CELL_SIZE + CELL_SIZE / 2f, bx * CELL_SIZE + CELL_SIZE / 2f, 400);
                         currentObjective = "Place the Crystal at the Spire to finish.";
+                        journal.objective(currentObjective);
                         storyManager.appendToLog("New Objective: " + currentObjective + "\n");
-                        gamePanel.repaint();
                     } else {
                         loseGame();
                     }
@@ -318,59 +419,208 @@ public class GraphicalMazeGameEnhanced extends JFrame implements ActionListener
     }
 
     public void loadLevel(int level) {
+        SaveJournal journal = saveLoadManager.getJournal();
+        journal.level(level);
         try {
             currentLevel = level;
             hasObjectiveItem = false;
             sageInteractionStage = 0;
-            monsterManager.resetMonstersForLevel(level);
-
-            maze = MazeData.getMazeClone(level);
+            long levelSeed = MazeGenerator.levelSeed(seed, level);
+            MazeData.LevelInfo info;
+            if (world != null) world.close();
+            world = null;
+            if (levelPack != null) {
+                if ((long) levelPack.getRows(level) * levelPack.getCols(level) > STREAM_CELLS) {
+                    world = ChunkedWorld.open(levelPack, level, CHUNK_BUDGET);
+                    world.setListener(this);
+                    maze = world;
+                } else {
+                    maze = levelPack.loadGrid(level);
+                }
+                info = levelPack.getInfo(level);
+            } else {
+                maze = GENERATED_SIZE > 0
+                        ? MazeGenerator.generate(levelSeed, GENERATED_SIZE, GENERATED_SIZE, level)
+                        : MazeData.getLevelGrid(level);
+                info = MazeData.getLevelInfo(level);
+            }
+            locateEmitters();
+            monsterManager.setSeed(levelSeed);
+            monsterManager.resetMonsters(maze);
 
+            currentObjective = info.objective;
+            storyManager.appendToLog(info.intro);
             if (level == 1) {
-                currentObjective = "Find the Sage for guidance on the curse.";
-                storyManager.appendToLog("Level 1: The Cursed Labyrinth\nJournal Entry: I am Elara, seeking the Crystal of Eternity.\n");
-                storyManager.appendToLog("Controls: WASD/Arrows to move, SPACE to interact, P to pause/resume, C to load checkpoint, H for help, V to save, L to load.\n");
-                storyManager.appendToLog("Current Objective: " + currentObjective + "\n");
-                MazeData.addRandomDecorations(maze, 5);
-            } else if (level == 2) {
-                currentObjective = "Find the Ancient Altar ('S') to seal the curse.";
-                storyManager.appendToLog("Level 2: The Enchanted Forest\nSeal the Altar and find the exit.\n");
-                storyManager.appendToLog("Current Objective: " + currentObjective + "\n");
-                MazeData.addRandomDecorations(maze, 10);
-            } else if (level == 3) {
-                currentObjective = "Place the Crystal at the Celestial Spire ('C').";
-                storyManager.appendToLog("Level 3: The Celestial Ruins\nPlace the Crystal to end the curse.\n");
-                storyManager.appendToLog("Current Objective: " + currentObjective + "\n");
-                MazeData.addRandomDecorations(maze, 8);
-            } else if (level == 4) {
-                currentObjective = "Confront the Corrupted Warden ('B') and restore the Spire.";
-                storyManager.appendToLog("Level 4: The Warden's Vault\nDefeat the Warden and place the Crystal.\n");
-                storyManager.appendToLog("Current Objective: " + currentObjective + "\n");
-                MazeData.addRandomDecorations(maze, 6);
+                storyManager.appendToLog(CONTROLS);
             }
+            storyManager.appendToLog("Current Objective: " + currentObjective + "\n");
+            if (level == 1) storyManager.appendToLog("Seed: " + seed + "\n");
+            // Generated levels come decorated already; streamed ones are left as packed
+            if (GENERATED_SIZE <= 0 && world == null) MazeData.addRandomDecorations(maze, info.decorations, levelSeed);
+            // Path search over a streamed world would page in all of it
+            if (world == null) monsterManager.getPathfinder().build(maze);
+            else monsterManager.getPathfinder().clear();
 
             playerX = 1; playerY = 1; playerFacing = 2;
+            maze.setOccupant(playerX, playerY, MazeGrid.PLAYER);
+            if (world != null) world.update(playerX, playerY, playerFacing);
             storyManager.appendToLog("Entered Level " + level + ".\n");
 
-            // Clear checkpoints when loading new level
-            checkpoints.clear();
+            // The level as loaded is the keyframe for its checkpoints
+            checkpoints.reset(playerX, playerY, playerFacing, hasObjectiveItem, currentObjective,
+                    monsterManager.getActors());
             moveCount = 0;
+            dangerNear = false;
+            // The old base can't replay into a new level; take another (streamed: full autosaves)
+            if (journal.isRecording()) {
+                if (world == null) journal.rebase(captureSave(), storyManager);
+                else journal.suspend();
+            }
 
-            gamePanel.repaint();
+            markStaticTilesDirty();
+            gamePanel.markAllDirty();
         } catch (Exception e) {
             storyManager.appendToLog("Error loading level: " + e.getMessage() + "\n");
         }
     }
 
+    // Everything a save file holds, copied (game loop thread)
+    public SaveLoadManager.Snapshot captureSave() {
+        SaveLoadManager.Snapshot s = new SaveLoadManager.Snapshot();
+        s.seed = seed;
+        s.level = currentLevel;
+        s.moveCount = moveCount;
+        s.playerX = playerX;
+        s.playerY = playerY;
+        s.playerFacing = playerFacing;
+        s.hasObjectiveItem = hasObjectiveItem;
+        s.sageInteractionStage = sageInteractionStage;
+        s.objective = currentObjective;
+        s.monsterSeed = monsterManager.getSeed();
+        s.monsterTick = monsterManager.getTick();
+        s.hunting = monsterManager.isHunting();
+        s.rows = maze.getRows();
+        s.cols = maze.getCols();
+        s.actors = new EntityStore();
+        // A streamed world's actors page in with its chunks, so they come back from the pack
+        if (world == null) {
+            s.terrain = maze.terrainBytes().clone();
+            monsterManager.getActors().copyTo(s.actors);
+        }
+        ByteBuffer history = ByteBuffer.allocate(checkpoints.getSaveSize());
+        checkpoints.writeTo(history);
+        s.checkpoints = Arrays.copyOf(history.array(), history.position());
+        return s;
+    }
+
+    // Put the game back exactly as captureSave found it (game loop thread)
+    public void restoreSave(SaveLoadManager.Snapshot s) throws IOException {
+        // Everything is checked before anything is replaced
+        MazeGrid restored = s.terrain == null ? null : MazeGrid.fromTerrain(s.rows, s.cols, s.terrain);
+        CheckpointStore history = null;
+        if (restored == null) {
+            // A streamed level comes back from the pack, so the player is checked against it
+            if (levelPack == null || s.level < 1 || s.level > levelPack.getLevelCount()) {
+                throw new IllegalArgumentException("Saved level " + s.level + " isn't in the level pack");
+            }
+            if (!levelPack.isPassable(s.level, s.playerX, s.playerY)) {
+                throw new IllegalArgumentException("Player outside the saved level");
+            }
+        } else {
+            if (!restored.isPassable(s.playerX, s.playerY)) throw new IllegalArgumentException("Player outside the saved maze");
+            for (int slot = 0; slot < s.actors.size(); slot++) {
+                if (!restored.inBounds(s.actors.getX(slot), s.actors.getY(slot))) {
+                    throw new IllegalArgumentException("Actor " + s.actors.getId(slot) + " outside the saved maze");
+                }
+            }
+            // Decoded on the side: a bad history must not reach the live checkpoints
+            history = new CheckpointStore(CheckpointStore.GAME_CHECKPOINTS, CheckpointStore.GAME_LOG_BYTES);
+            history.readFrom(ByteBuffer.wrap(s.checkpoints));
+        }
+        seed = s.seed;
+        if (restored == null) {
+            loadLevel(s.level);
+            maze.moveOccupant(playerX, playerY, s.playerX, s.playerY);
+        } else {
+            if (world != null) world.close();
+            world = null;
+            currentLevel = s.level;
+            maze = restored;
+            checkpoints = history;
+            maze.setOccupant(s.playerX, s.playerY, MazeGrid.PLAYER);
+            s.actors.copyTo(monsterManager.getActors());
+            monsterManager.actorsRestored();
+            monsterManager.getPathfinder().build(maze);
+        }
+        monsterManager.setSeed(s.monsterSeed);
+        monsterManager.setTick(s.monsterTick);
+        monsterManager.setHunting(s.hunting);
+        playerX = s.playerX;
+        playerY = s.playerY;
+        playerFacing = s.playerFacing;
+        hasObjectiveItem = s.hasObjectiveItem;
+        sageInteractionStage = s.sageInteractionStage;
+        currentObjective = s.objective;
+        moveCount = s.moveCount;
+        dangerNear = false;
+        locateEmitters();
+        if (world != null) world.update(playerX, playerY, playerFacing);
+        saveLoadManager.getJournal().suspend(); // the next move takes a base from the restored game
+        markStaticTilesDirty();
+        gamePanel.markAllDirty();
+    }
+
+    // Emitters and the Sage, found once per level; a streamed world reports them chunk by chunk
+    private void locateEmitters() {
+        objectiveRow = objectiveCol = exitRow = exitCol = sageRow = sageCol = -1;
+        particles.clear();
+        if (world == null) scanLandmarks(maze, 0, 0);
+    }
+
+    private void scanLandmarks(MazeGrid cells, int row0, int col0) {
+        for (int i = 0; i < cells.getRows(); i++) {
+            for (int j = 0; j < cells.getCols(); j++) {
+                char c = cells.getTerrain(i, j);
+                if (c == 'A' || c == 'S' || c == 'C') { objectiveRow = row0 + i; objectiveCol = col0 + j; }
+                else if (c == 'E') { exitRow = row0 + i; exitCol = col0 + j; }
+                else if (c == 'G') { sageRow = row0 + i; sageCol = col0 + j; }
+            }
+        }
+    }
+
+    // Streamed chunks paging in and out (game loop thread)
+    @Override
+    public void chunkLoaded(MazeGrid cells, int row0, int col0) {
+        monsterManager.chunkLoaded(cells, row0, col0);
+        scanLandmarks(cells, row0, col0);
+    }
+
+    @Override
+    public void chunkEvicted(MazeGrid cells, int row0, int col0) {
+        monsterManager.chunkEvicted(cells, row0, col0);
+    }
+
+    // Objective sparks while the player is close, and a slow trickle from the exit door
+    private void emitParticles() {
+        if (objectiveRow >= 0 && !hasObjectiveItem
+                && Math.abs(playerX - objectiveRow) <= 2 && Math.abs(playerY - objectiveCol) <= 2) {
+            particles.emitGlow(objectiveCol * CELL_SIZE + CELL_SIZE / 2f, objectiveRow * CELL_SIZE + CELL_SIZE / 2f, 2);
+        }
+        if (exitRow >= 0 && tickCount % 4 == 0) {
+            particles.emitPulse(exitCol * CELL_SIZE + CELL_SIZE / 2f, exitRow * CELL_SIZE + CELL_SIZE / 2f, 1);
+        }
+    }
+
     private void interactWithSage() {
         storyManager.appendToLog("You speak with the Sage.\n");
         storyManager.showSpeechBubble("Seek the Crystal to break the curse!");
         soundManager.playEvent("sage");
+        journal().sage();
         sageInteractionStage++;
     }
 
     private boolean isValidMove(int x, int y) {
-        return x >= 0 && x < ROWS && y >= 0 && y < COLS && maze[x][y] != '#' && maze[x][y] != 'W' && maze[x][y] != 'G';
+        return maze.isPassable(x, y);
     }
 
     private void checkStoryTriggers() {
@@ -381,23 +631,47 @@ public class GraphicalMazeGameEnhanced extends JFrame implements ActionListener
         return monsterManager.isMonsterAt(playerX, playerY);
     }
 
+    // Sparks along the first steps of the way to the objective, or to the exit once it's found
+    private void showPathHint() {
+        HierarchicalPathfinder pathfinder = monsterManager.getPathfinder();
+        boolean toExit = hasObjectiveItem || objectiveRow < 0;
+        int[] path = (toExit ? exitRow : objectiveRow) < 0 ? null
+                : pathfinder.findPath(playerX, playerY, toExit ? exitRow : objectiveRow, toExit ? exitCol : objectiveCol);
+        if (path == null) {
+            storyManager.appendToLog("You can't make out a way from here.\n");
+            return;
+        }
+        int cols = maze.getCols();
+        for (int k = 0; k < Math.min(HINT_STEPS, path.length); k++) {
+            particles.emitGlow((path[k] % cols) * CELL_SIZE + CELL_SIZE / 2f, (path[k] / cols) * CELL_SIZE + CELL_SIZE / 2f, 3);
+        }
+        storyManager.appendToLog("The way " + (toExit ? "out" : "to the objective") + " glows: " + path.length
+                + " steps (found in " + pathfinder.getLastQueryMicros() + " us).\n");
+    }
+
     private void showHelp() {
-        storyManager.appendToLog("Controls: WASD/Arrows to move, SPACE to interact, P to pause/resume, C to load checkpoint, H for help, V to save, L to load.\n");
+        storyManager.appendToLog(CONTROLS);
     }
 
     private void winGame() {
         storyManager.appendToLog("Congratulations! You have restored the Crystal and broken the curse!\n");
         soundManager.playEvent("win");
         soundManager.stopBackgroundMusic(); // NEW: Stop background music
-        JOptionPane.showMessageDialog(this, "You Win! The Crystal of Eternity shines brightly.");
-        System.exit(0);
+        gameLoop.stop();
+        SwingUtilities.invokeLater(() -> {
+            JOptionPane.showMessageDialog(this, "You Win! The Crystal of Eternity shines brightly.");
+            System.exit(0);
+        });
     }
 
     private void loseGame() {
         storyManager.appendToLog("You have been defeated by a monster or trap!\n");
         soundManager.playEvent("lose");
         soundManager.stopBackgroundMusic(); // NEW: Stop background music
-        JOptionPane.showMessageDialog(this, "Game Over! You were defeated.");
-        System.exit(0);
+        gameLoop.stop();
+        SwingUtilities.invokeLater(() -> {
+            JOptionPane.showMessageDialog(this, "Game Over! You were defeated.");
+            System.exit(0);
+        });
     }
 }
\ No newline at end of file
@@ -0,0 +1,524 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// Hierarchical path-finding (HPA*) for levels too big to search cell by cell. The maze is
+// cut into CLUSTER x CLUSTER clusters; where two clusters share open border cells they get
+// an entrance (one in the middle of a short opening, one at each end of a long one), with
+// a node on each side. Walking distances between the nodes of a cluster are worked out
+// once, so a query is an A* over the few nodes between start and goal, and the path is
+// then filled in one cluster at a time.
+//
+// A changed cell only stales its own cluster and, on a border, the neighbour across it;
+// stale clusters are redone the next time a search reaches them. Traps ('X') count as
+// blocked, so a path never leads through one. A path can come out a little longer than
+// the shortest where it has to pass through an entrance off the straight line.
+//
+// A search can also be run in slices, startSearch and then resume against a deadline each
+// tick, so an AI time budget can spread a long one over several ticks.
+//
+//   java ...HierarchicalPathfinder [size] [queries]   random queries, checked against BFS
+public class HierarchicalPathfinder {
+    public static final int PENDING = 0, FOUND = 1, NO_PATH = 2; // search status
+    public static final int CLUSTER = Integer.getInteger("maze.clusterSize", 32);
+    private static final int STRIDE = 4 * CLUSTER; // most nodes a cluster can have
+
+    private MazeGrid maze;
+    private int rows, cols, clusterRows, clusterCols, clusters;
+    // Per cluster: entrance cells on its east and south borders (its own side)
+    private int[][] east, south;
+    private boolean[] bordersStale;
+    // Per cluster: node cells, the cell across the border from each, the node id last found
+    // there, and for node i the (node, distance) pairs it reaches inside the cluster at
+    // edges[2 * edgeStart[i]] up to edges[2 * edgeStart[i + 1]]
+    private int[][] nodes, partners, links, edgeStart, edges;
+    private boolean[] stale;
+
+    // A* state, by node id (cluster * STRIDE + index, then START and GOAL), stamped per search
+    private int start, goal;
+    private int[] g, parent, seen, closed;
+    private long[] open = new long[256]; // binary heap of f << 32 | id
+    private int openSize, search;
+    private final int[] startDist = new int[STRIDE], goalDist = new int[STRIDE];
+    private int direct; // start to goal inside one cluster, or -1
+    private int from, target; // cells
+    private int status = NO_PATH, searchSerial = 0;
+    private long searchNanos = 0, slices = 0;
+
+    // One cluster's breadth-first search, by local cell
+    private final int[] localDist = new int[CLUSTER * CLUSTER], localParent = new int[CLUSTER * CLUSTER];
+    private final int[] localStamp = new int[CLUSTER * CLUSTER], localQueue = new int[CLUSTER * CLUSTER];
+    private int localGen = 0, localR0, localC0, localRows, localCols;
+
+    private int[] path = new int[256];
+    private int pathLength;
+    private long builds = 0, clusterBuilds = 0, queries = 0;
+    private long lastBuildNanos = 0, lastQueryNanos = 0;
+    private int lastExpanded = 0;
+
+    public long getClusterBuilds() { return clusterBuilds; }
+    public long getQueries() { return queries; }
+    public long getSlices() { return slices; }
+    public long getLastBuildMicros() { return lastBuildNanos / 1000; }
+    // Time spent on the latest search so far, over all its slices
+    public long getLastQueryMicros() { return lastQueryNanos / 1000; }
+    public int getLastExpanded() { return lastExpanded; }
+    public boolean isBuilt() { return maze != null; }
+
+    // Precompute every cluster of a freshly loaded level
+    public void build(MazeGrid maze) {
+        long t0 = System.nanoTime();
+        cancel();
+        this.maze = maze;
+        rows = maze.getRows();
+        cols = maze.getCols();
+        clusterRows = (rows + CLUSTER - 1) / CLUSTER;
+        clusterCols = (cols + CLUSTER - 1) / CLUSTER;
+        clusters = clusterRows * clusterCols;
+        east = new int[clusters][];
+        south = new int[clusters][];
+        nodes = new int[clusters][];
+        partners = new int[clusters][];
+        links = new int[clusters][];
+        edgeStart = new int[clusters][];
+        edges = new int[clusters][];
+        bordersStale = new boolean[clusters];
+        stale = new boolean[clusters];
+        Arrays.fill(bordersStale, true);
+        Arrays.fill(stale, true);
+        int ids = clusters * STRIDE + 2;
+        start = ids - 2;
+        goal = ids - 1;
+        g = new int[ids];
+        parent = new int[ids];
+        seen = new int[ids];
+        closed = new int[ids];
+        search = 0;
+        for (int k = 0; k < clusters; k++) ensure(k);
+        builds++;
+        lastBuildNanos = System.nanoTime() - t0;
+    }
+
+    // Forget the level (a streamed world is never precomputed)
+    public void clear() {
+        maze = null;
+        cancel();
+    }
+
+    // Node ids held by a paused search would go stale with the clusters
+    private void cancel() {
+        if (status != PENDING) return;
+        status = NO_PATH;
+        searchSerial++;
+    }
+
+    // The walkability of (r, c) may have changed
+    public void cellChanged(int r, int c) {
+        if (maze == null || !maze.inBounds(r, c)) return;
+        cancel();
+        int cr = r / CLUSTER, cc = c / CLUSTER, k = cr * clusterCols + cc;
+        stale[k] = true;
+        bordersStale[k] = true;
+        // A cell on the west or north edge also belongs to the neighbour's border
+        if (c % CLUSTER == 0 && cc > 0) {
+            bordersStale[k - 1] = true;
+            stale[k - 1] = true;
+        }
+        if (r % CLUSTER == 0 && cr > 0) {
+            bordersStale[k - clusterCols] = true;
+            stale[k - clusterCols] = true;
+        }
+        if (c % CLUSTER == CLUSTER - 1 && cc + 1 < clusterCols) stale[k + 1] = true;
+        if (r % CLUSTER == CLUSTER - 1 && cr + 1 < clusterRows) stale[k + clusterCols] = true;
+    }
+
+    // Terrain changed in unknown places (a checkpoint rewind): every cluster is redone lazily
+    public void invalidateAll() {
+        if (maze == null) return;
+        cancel();
+        Arrays.fill(bordersStale, true);
+        Arrays.fill(stale, true);
+    }
+
+    public static boolean isWalkable(MazeGrid maze, int r, int c) {
+        return maze.isPassable(r, c) && maze.getTerrain(r, c) != 'X';
+    }
+
+    // Cells from (fromR, fromC) to (toR, toC) as maze indices, start excluded, goal included;
+    // null when there's no way through or nothing is built. Cancels a search in progress.
+    public int[] findPath(int fromR, int fromC, int toR, int toC) {
+        startSearch(fromR, fromC, toR, toC);
+        return resume(Long.MAX_VALUE) == FOUND ? getPath() : null;
+    }
+
+    // Begin a search to be run in slices by resume, cancelling any other; returns its serial
+    public int startSearch(int fromR, int fromC, int toR, int toC) {
+        long t0 = System.nanoTime();
+        queries++;
+        searchSerial++;
+        searchNanos = 0;
+        pathLength = 0;
+        status = NO_PATH;
+        if (maze == null || !maze.inBounds(fromR, fromC) || !maze.inBounds(toR, toC) || !isWalkable(maze, toR, toC)) {
+            lastQueryNanos = System.nanoTime() - t0;
+            return searchSerial;
+        }
+        from = fromR * cols + fromC;
+        target = toR * cols + toC;
+        status = from == target ? FOUND : PENDING;
+        if (status == PENDING) {
+            startClusters();
+            openSize = 0;
+            lastExpanded = 0;
+            relax(start, -1, 0, from, target);
+        }
+        searchNanos = System.nanoTime() - t0;
+        lastQueryNanos = searchNanos;
+        return searchSerial;
+    }
+
+    // Carry on with the current search until it ends or the clock passes deadlineNanos;
+    // PENDING when it stopped for time. The serial changes when a search is cancelled
+    // (another started, or the level's terrain changed under it).
+    public int resume(long deadlineNanos) {
+        if (status != PENDING) return status;
+        long t0 = System.nanoTime();
+        try {
+            int sk = clusterOf(from), gk = clusterOf(target), to = target, steps = 0;
+            while (openSize > 0) {
+                // Always some progress, however late the call
+                if ((++steps & 63) == 0 && System.nanoTime() >= deadlineNanos) return PENDING;
+                int id = pop();
+                if (closed[id] == search) continue;
+                closed[id] = search;
+                lastExpanded++;
+                if (id == goal) {
+                    refine();
+                    return status = FOUND;
+                }
+                if (id == start) {
+                    for (int i = 0; i < nodes[sk].length; i++) {
+                        if (startDist[i] >= 0) relax(sk * STRIDE + i, id, startDist[i], nodes[sk][i], to);
+                    }
+                    if (direct >= 0) relax(goal, id, direct, to, to);
+                    continue;
+                }
+                int k = id / STRIDE, i = id % STRIDE, base = g[id];
+                int[] out = edges[k];
+                for (int e = 2 * edgeStart[k][i]; e < 2 * edgeStart[k][i + 1]; e += 2) {
+                    relax(k * STRIDE + out[e], id, base + out[e + 1], nodes[k][out[e]], to);
+                }
+                if (k == gk && goalDist[i] >= 0) relax(goal, id, base + goalDist[i], to, to);
+                int link = link(k, i);
+                if (link >= 0) relax(link, id, base + 1, partners[k][i], to);
+            }
+            return status = NO_PATH;
+        } finally {
+            searchNanos += System.nanoTime() - t0;
+            lastQueryNanos = searchNanos;
+            slices++;
+        }
+    }
+
+    public int getSearchSerial() { return searchSerial; }
+    public int getStatus() { return status; }
+
+    // The last search's path, when it was FOUND
+    public int[] getPath() {
+        return status == FOUND ? Arrays.copyOf(path, pathLength) : null;
+    }
+
+    // A* runs from a START node wired into its cluster to a GOAL node wired into its own
+    private void startClusters() {
+        int sk = clusterOf(from), gk = clusterOf(target);
+        ensure(sk);
+        ensure(gk);
+        if (++search == Integer.MAX_VALUE) {
+            Arrays.fill(seen, 0);
+            Arrays.fill(closed, 0);
+            search = 1;
+        }
+        localSearch(gk, target);
+        for (int i = 0; i < nodes[gk].length; i++) goalDist[i] = localDistance(nodes[gk][i]);
+        localSearch(sk, from);
+        for (int i = 0; i < nodes[sk].length; i++) startDist[i] = localDistance(nodes[sk][i]);
+        direct = sk == gk ? localDistance(target) : -1;
+    }
+
+    // Id of the node across the border from node i of cluster k; the answer is remembered
+    // and checked on the way out, as the other cluster may have been redone since
+    private int link(int k, int i) {
+        int across = partners[k][i], cell = nodes[k][i], pk = clusterOf(across);
+        ensure(pk);
+        int id = links[k][i], j = id % STRIDE;
+        if (id >= 0 && id / STRIDE == pk && j < nodes[pk].length && nodes[pk][j] == across && partners[pk][j] == cell) {
+            return id;
+        }
+        for (j = 0; j < nodes[pk].length; j++) {
+            if (nodes[pk][j] == across && partners[pk][j] == cell) return links[k][i] = pk * STRIDE + j;
+        }
+        return -1;
+    }
+
+    private void relax(int id, int from, int cost, int cell, int to) {
+        if (seen[id] == search && g[id] <= cost) return;
+        seen[id] = search;
+        g[id] = cost;
+        parent[id] = from;
+        int r = cell / cols, c = cell % cols;
+        int h = Math.abs(r - to / cols) + Math.abs(c - to % cols);
+        push((long) (cost + h) << 32 | id);
+    }
+
+    // The node chain back from GOAL, each hop filled in cell by cell
+    private void refine() {
+        int hops = 0;
+        for (int id = goal; id != -1; id = parent[id]) hops++;
+        int[] chain = new int[hops];
+        for (int id = goal, k = hops - 1; id != -1; id = parent[id], k--) {
+            chain[k] = id == start ? from : id == goal ? target : nodes[id / STRIDE][id % STRIDE];
+        }
+        pathLength = 0;
+        for (int k = 1; k < hops; k++) {
+            int a = chain[k - 1], b = chain[k];
+            if (a == b) continue;
+            if (clusterOf(a) != clusterOf(b)) {
+                append(b); // across a border: neighbours
+                continue;
+            }
+            localSearch(clusterOf(a), a);
+            int mark = pathLength;
+            for (int cell = b; cell != a; cell = localParentCell(cell)) append(cell);
+            reverse(mark, pathLength);
+        }
+    }
+
+    private void append(int cell) {
+        if (pathLength == path.length) path = Arrays.copyOf(path, pathLength * 2);
+        path[pathLength++] = cell;
+    }
+
+    private void reverse(int from, int to) {
+        for (int i = from, j = to - 1; i < j; i++, j--) {
+            int t = path[i];
+            path[i] = path[j];
+            path[j] = t;
+        }
+    }
+
+    private int clusterOf(int cell) {
+        return (cell / cols / CLUSTER) * clusterCols + (cell % cols) / CLUSTER;
+    }
+
+    // Bring cluster k's nodes and distances up to date with the maze
+    private void ensure(int k) {
+        if (!stale[k]) return;
+        int cr = k / clusterCols, cc = k % clusterCols;
+        borders(k);
+        if (cc > 0) borders(k - 1);
+        if (cr > 0) borders(k - clusterCols);
+        int[] cells = new int[STRIDE], across = new int[STRIDE];
+        int n = 0;
+        for (int e : east[k]) { cells[n] = e; across[n++] = e + 1; }
+        for (int e : south[k]) { cells[n] = e; across[n++] = e + cols; }
+        if (cc > 0) for (int e : east[k - 1]) { cells[n] = e + 1; across[n++] = e; }
+        if (cr > 0) for (int e : south[k - clusterCols]) { cells[n] = e + cols; across[n++] = e; }
+        nodes[k] = Arrays.copyOf(cells, n);
+        partners[k] = Arrays.copyOf(across, n);
+        links[k] = new int[n];
+        Arrays.fill(links[k], -1);
+        int[] start = new int[n + 1], out = new int[2 * n * n];
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            start[i] = m;
+            localSearch(k, cells[i]);
+            for (int j = 0; j < n; j++) {
+                int d = localDistance(cells[j]);
+                if (j == i || d < 0) continue;
+                out[2 * m] = j;
+                out[2 * m + 1] = d;
+                m++;
+            }
+        }
+        start[n] = m;
+        edgeStart[k] = start;
+        edges[k] = Arrays.copyOf(out, 2 * m);
+        stale[k] = false;
+        clusterBuilds++;
+    }
+
+    // Entrances on cluster k's east and south borders
+    private void borders(int k) {
+        if (!bordersStale[k]) return;
+        int r0 = k / clusterCols * CLUSTER, c0 = k % clusterCols * CLUSTER;
+        int r1 = Math.min(rows, r0 + CLUSTER), c1 = Math.min(cols, c0 + CLUSTER);
+        east[k] = c1 < cols ? entrances(r0, r1, c1 - 1, true) : new int[0];
+        south[k] = r1 < rows ? entrances(c0, c1, r1 - 1, false) : new int[0];
+        bordersStale[k] = false;
+    }
+
+    // Openings along one border line, from its cells on the near side (column 'line' going
+    // down when vertical, row 'line' going across otherwise)
+    private int[] entrances(int from, int to, int line, boolean vertical) {
+        int[] out = new int[CLUSTER];
+        int n = 0, run = -1;
+        for (int i = from; i <= to; i++) {
+            boolean open = i < to && (vertical
+                    ? isWalkable(maze, i, line) && isWalkable(maze, i, line + 1)
+                    : isWalkable(maze, line, i) && isWalkable(maze, line + 1, i));
+            if (open && run < 0) run = i;
+            if (open || run < 0) continue;
+            if (i - run < 6) {
+                out[n++] = cellOnLine((run + i - 1) / 2, line, vertical);
+            } else {
+                out[n++] = cellOnLine(run, line, vertical);
+                out[n++] = cellOnLine(i - 1, line, vertical);
+            }
+            run = -1;
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private int cellOnLine(int i, int line, boolean vertical) {
+        return vertical ? i * cols + line : line * cols + i;
+    }
+
+    // Breadth-first search of cluster k from a cell, for localDistance and localParentCell
+    private void localSearch(int k, int fromCell) {
+        localR0 = k / clusterCols * CLUSTER;
+        localC0 = k % clusterCols * CLUSTER;
+        localRows = Math.min(rows, localR0 + CLUSTER) - localR0;
+        localCols = Math.min(cols, localC0 + CLUSTER) - localC0;
+        if (++localGen == Integer.MAX_VALUE) {
+            Arrays.fill(localStamp, 0);
+            localGen = 1;
+        }
+        int src = local(fromCell);
+        int head = 0, tail = 0;
+        localStamp[src] = localGen;
+        localDist[src] = 0;
+        localQueue[tail++] = src;
+        while (head < tail) {
+            int i = localQueue[head++];
+            int lr = i / CLUSTER, lc = i % CLUSTER;
+            for (int dir = 0; dir < 4; dir++) {
+                int nr = lr + MazeGrid.DIR_ROW[dir], nc = lc + MazeGrid.DIR_COL[dir];
+                if (nr < 0 || nc < 0 || nr >= localRows || nc >= localCols) continue;
+                int n = nr * CLUSTER + nc;
+                if (localStamp[n] == localGen || !isWalkable(maze, localR0 + nr, localC0 + nc)) continue;
+                localStamp[n] = localGen;
+                localDist[n] = localDist[i] + 1;
+                localParent[n] = i;
+                localQueue[tail++] = n;
+            }
+        }
+    }
+
+    private int local(int cell) {
+        return (cell / cols - localR0) * CLUSTER + (cell % cols - localC0);
+    }
+
+    private int localDistance(int cell) {
+        int i = local(cell);
+        return localStamp[i] == localGen ? localDist[i] : -1;
+    }
+
+    private int localParentCell(int cell) {
+        int i = localParent[local(cell)];
+        return (localR0 + i / CLUSTER) * cols + localC0 + i % CLUSTER;
+    }
+
+    private void push(long entry) {
+        if (openSize == open.length) open = Arrays.copyOf(open, openSize * 2);
+        int i = openSize++;
+        while (i > 0) {
+            int up = (i - 1) >> 1;
+            if (open[up] <= entry) break;
+            open[i] = open[up];
+            i = up;
+        }
+        open[i] = entry;
+    }
+
+    private int pop() {
+        long top = open[0], last = open[--openSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= openSize) break;
+            if (child + 1 < openSize && open[child + 1] < open[child]) child++;
+            if (open[child] >= last) break;
+            open[i] = open[child];
+            i = child;
+        }
+        open[i] = last;
+        return (int) top;
+    }
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1025;
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        MazeGrid maze = MazeGenerator.generate(7L, size, size, 1);
+        maze.clearOccupants();
+        HierarchicalPathfinder finder = new HierarchicalPathfinder();
+        finder.build(maze);
+        System.out.println(size + "x" + size + ": built " + finder.clusters + " clusters in "
+                + finder.getLastBuildMicros() / 1000.0 + " ms");
+
+        SplittableRandom random = new SplittableRandom(11);
+        int[] bfs = new int[size * size], queue = new int[size * size];
+        long[] times = new long[count], bfsTimes = new long[count];
+        long expanded = 0, found = 0, extra = 0, shortest = 0;
+        int failures = 0;
+        for (int q = 0; q < count; q++) {
+            int fr, fc, tr, tc;
+            do { fr = random.nextInt(size); fc = random.nextInt(size); } while (!isWalkable(maze, fr, fc));
+            do { tr = random.nextInt(size); tc = random.nextInt(size); } while (!isWalkable(maze, tr, tc));
+            int[] path = finder.findPath(fr, fc, tr, tc);
+            times[q] = finder.lastQueryNanos;
+            expanded += finder.getLastExpanded();
+            // Check against a plain breadth-first search
+            long t0 = System.nanoTime();
+            Arrays.fill(bfs, -1);
+            int head = 0, tail = 0;
+            bfs[fr * size + fc] = 0;
+            queue[tail++] = fr * size + fc;
+            while (head < tail && bfs[tr * size + tc] < 0) {
+                int i = queue[head++];
+                for (int dir = 0; dir < 4; dir++) {
+                    int nr = i / size + MazeGrid.DIR_ROW[dir], nc = i % size + MazeGrid.DIR_COL[dir];
+                    if (!isWalkable(maze, nr, nc) || bfs[nr * size + nc] >= 0) continue;
+                    bfs[nr * size + nc] = bfs[i] + 1;
+                    queue[tail++] = nr * size + nc;
+                }
+            }
+            int best = bfs[tr * size + tc];
+            bfsTimes[q] = System.nanoTime() - t0;
+            boolean valid = (path == null) == (best < 0);
+            for (int k = 0; valid && path != null && k < path.length; k++) {
+                int prev = k == 0 ? fr * size + fc : path[k - 1];
+                valid = Math.abs(prev / size - path[k] / size) + Math.abs(prev % size - path[k] % size) == 1
+                        && isWalkable(maze, path[k] / size, path[k] % size);
+            }
+            if (path != null && valid) valid = path.length == 0 ? best == 0 : path[path.length - 1] == tr * size + tc;
+            if (!valid) {
+                failures++;
+            } else if (path != null) {
+                found++;
+                extra += path.length - best;
+                shortest += best;
+            }
+        }
+        Arrays.sort(times);
+        Arrays.sort(bfsTimes);
+        System.out.printf("%d queries: p50 %.1f us  p99 %.1f us  max %.1f us  %.1f nodes expanded%n", count,
+                times[count / 2] / 1e3, times[Math.min(count - 1, (int) (count * 0.99))] / 1e3,
+                times[count - 1] / 1e3, (double) expanded / count);
+        System.out.printf("plain BFS: p50 %.1f us  p99 %.1f us%n", bfsTimes[count / 2] / 1e3,
+                bfsTimes[Math.min(count - 1, (int) (count * 0.99))] / 1e3);
+        System.out.printf("%d found, %.2f%% longer than shortest, %d wrong%n", found,
+                shortest == 0 ? 0 : 100.0 * extra / shortest, failures);
+        if (failures > 0) System.exit(1);
+    }
+}
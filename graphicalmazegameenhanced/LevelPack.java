@@ -0,0 +1,276 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// Binary level pack, memory-mapped read-only. Opening a pack only reads its header; a level
+// is copied out of the mapping when it is loaded, so hundreds of levels cost neither
+// startup time nor heap until they're played.
+//
+// Layout (big-endian):
+//   header   int magic 'MZPK', short version, short reserved, int levelCount
+//   index    per level: long offset, int length, int rows, int cols, int spawnCount, int crc32,
+//            int reserved
+//   level    terrain nibbles as MazeGrid keeps them, padded to 8 bytes
+//            passability words (long per 64 cells)
+//            spawns: int row, int col, int kind (MazeGrid occupant)
+//            intro, objective: int length + UTF-8; int decorations
+//
+//   java ...LevelPack convert OUT                  built-in levels 1-4
+//   java ...LevelPack generate OUT COUNT SIZE SEED generated levels
+//   java ...LevelPack list PACK
+public class LevelPack {
+    private static final int MAGIC = 0x4D5A504B; // "MZPK"
+    private static final short VERSION = 1;
+    private static final int HEADER_BYTES = 12;
+    private static final int INDEX_BYTES = 32;
+
+    private final MappedByteBuffer buffer;
+    private final int levelCount;
+
+    // One level's contents, for writing
+    public static class Entry {
+        final MazeGrid grid;
+        final MazeData.LevelInfo info;
+
+        public Entry(MazeGrid grid, MazeData.LevelInfo info) {
+            this.grid = grid;
+            this.info = info;
+        }
+    }
+
+    private LevelPack(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC) throw new IOException("Not a level pack");
+        short version = buffer.getShort(4);
+        if (version != VERSION) throw new IOException("Unsupported level pack version " + version);
+        levelCount = buffer.getInt(8);
+        if (levelCount < 0 || HEADER_BYTES + (long) levelCount * INDEX_BYTES > buffer.limit()) {
+            throw new IOException("Corrupt level pack index");
+        }
+    }
+
+    // The mapping stays valid after the channel is closed
+    public static LevelPack open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            return new LevelPack(buffer);
+        }
+    }
+
+    public int getLevelCount() { return levelCount; }
+
+    private int indexAt(int level) {
+        if (level < 1 || level > levelCount) throw new IllegalArgumentException("No level " + level + " in pack");
+        return HEADER_BYTES + (level - 1) * INDEX_BYTES;
+    }
+
+    public int getRows(int level) { return buffer.getInt(indexAt(level) + 12); }
+    public int getCols(int level) { return buffer.getInt(indexAt(level) + 16); }
+
+    // A thread-private view of one level's bytes, checked against its CRC when verify is set.
+    // The CRC doesn't cover the index, so its sizes are checked against the level's length.
+    private ByteBuffer levelSlice(int level, boolean verify) throws IOException {
+        int idx = indexAt(level);
+        long offset = buffer.getLong(idx);
+        int length = buffer.getInt(idx + 8);
+        if (offset < 0 || length < 0 || offset + length > buffer.limit()) throw new IOException("Level " + level + " out of range");
+        int rows = buffer.getInt(idx + 12), cols = buffer.getInt(idx + 16), spawns = buffer.getInt(idx + 20);
+        if (rows <= 0 || cols <= 0 || (long) rows * cols > Integer.MAX_VALUE || spawns < 0
+                || gridBytes(rows, cols) + spawns * 12L > length) {
+            throw new IOException("Corrupt level pack: level " + level + " is " + rows + "x" + cols
+                    + " with " + spawns + " spawns in " + length + " bytes");
+        }
+        ByteBuffer slice = buffer.duplicate();
+        slice.position((int) offset).limit((int) offset + length);
+        slice = slice.slice().order(ByteOrder.BIG_ENDIAN);
+        if (!verify) return slice;
+        CRC32 crc = new CRC32();
+        crc.update(slice.duplicate());
+        if ((int) crc.getValue() != buffer.getInt(idx + 24)) throw new IOException("Level " + level + " is corrupt");
+        return slice;
+    }
+
+    // Terrain and passability are bulk-copied out of the mapping; spawns become occupants
+    public MazeGrid loadGrid(int level) throws IOException {
+        ByteBuffer in = levelSlice(level, true);
+        int idx = indexAt(level);
+        int rows = buffer.getInt(idx + 12), cols = buffer.getInt(idx + 16);
+        int spawns = buffer.getInt(idx + 20);
+        int cells = rows * cols;
+        byte[] terrain = new byte[(cells + 1) / 2];
+        in.get(terrain);
+        in.position(pad8(terrain.length));
+        long[] passable = new long[(cells + 63) / 64];
+        in.asLongBuffer().get(passable);
+        in.position(in.position() + passable.length * 8);
+        MazeGrid grid = new MazeGrid(rows, cols, terrain, passable);
+        for (int k = 0; k < spawns; k++) {
+            int r = in.getInt(), c = in.getInt(), kind = in.getInt();
+            if (grid.inBounds(r, c)) grid.setOccupant(r, c, kind & 3);
+        }
+        return grid;
+    }
+
+    // Not checksummed here; loadGrid verifies the whole level before it's played
+    public MazeData.LevelInfo getInfo(int level) throws IOException {
+        ByteBuffer in = levelSlice(level, false);
+        in.position(spawnTableOffset(level) + buffer.getInt(indexAt(level) + 20) * 12);
+        String intro = readString(in);
+        String objective = readString(in);
+        return new MazeData.LevelInfo(intro, objective, in.getInt());
+    }
+
+    // Read-only views straight into the mapping for ChunkedWorld, which pages a level in
+    // piece by piece. They skip the CRC pass, which would touch every page of the level.
+    ByteBuffer terrainView(int level) throws IOException {
+        ByteBuffer in = levelSlice(level, false);
+        int cells = getRows(level) * getCols(level);
+        in.limit((cells + 1) / 2);
+        return in.slice().asReadOnlyBuffer();
+    }
+
+    // One cell's passability straight from the mapping; false outside the level
+    boolean isPassable(int level, int r, int c) throws IOException {
+        ByteBuffer in = levelSlice(level, false);
+        int rows = getRows(level), cols = getCols(level);
+        if (r < 0 || r >= rows || c < 0 || c >= cols) return false;
+        int i = r * cols + c;
+        return (in.getLong(pad8((int) (((long) rows * cols + 1) / 2)) + (i >>> 6) * 8) >>> i & 1) != 0;
+    }
+
+    // Spawns as (row, col, kind) int triples in row-major order
+    ByteBuffer spawnView(int level) throws IOException {
+        ByteBuffer in = levelSlice(level, false);
+        int start = spawnTableOffset(level);
+        in.position(start).limit(start + buffer.getInt(indexAt(level) + 20) * 12);
+        return in.slice().order(ByteOrder.BIG_ENDIAN).asReadOnlyBuffer();
+    }
+
+    // Only after levelSlice has checked the level's sizes
+    private int spawnTableOffset(int level) {
+        return (int) gridBytes(getRows(level), getCols(level));
+    }
+
+    // Terrain (padded) and passability bytes; in long, so a bad index can't overflow it
+    private static long gridBytes(int rows, int cols) {
+        long cells = (long) rows * cols;
+        return ((cells + 1) / 2 + 7 & ~7L) + (cells + 63) / 64 * 8;
+    }
+
+    private static int pad8(int n) {
+        return (n + 7) & ~7;
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Writes next to the target and renames, so a reader never maps a half-written pack
+    public static void write(Path file, List<Entry> levels) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer index = ByteBuffer.allocate(HEADER_BYTES + levels.size() * INDEX_BYTES);
+            index.putInt(MAGIC).putShort(VERSION).putShort((short) 0).putInt(levels.size());
+            long offset = index.capacity();
+            out.position(offset);
+            for (Entry e : levels) {
+                ByteBuffer block = encode(e);
+                CRC32 crc = new CRC32();
+                crc.update(block.duplicate());
+                index.putLong(offset).putInt(block.remaining())
+                        .putInt(e.grid.getRows()).putInt(e.grid.getCols()).putInt(spawnCount(e.grid))
+                        .putInt((int) crc.getValue()).putInt(0);
+                while (block.hasRemaining()) offset += out.write(block);
+            }
+            index.flip();
+            out.position(0);
+            while (index.hasRemaining()) out.write(index);
+            out.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int spawnCount(MazeGrid grid) {
+        int n = 0;
+        for (int i = grid.nextOccupied(0); i >= 0; i = grid.nextOccupied(i + 1)) n++;
+        return n;
+    }
+
+    private static ByteBuffer encode(Entry e) {
+        MazeGrid grid = e.grid;
+        byte[] terrain = grid.terrainBytes();
+        long[] passable = grid.passableWords();
+        byte[] intro = e.info.intro.getBytes(StandardCharsets.UTF_8);
+        byte[] objective = e.info.objective.getBytes(StandardCharsets.UTF_8);
+        int spawns = spawnCount(grid);
+        ByteBuffer block = ByteBuffer.allocate(pad8(terrain.length) + passable.length * 8 + spawns * 12
+                + 4 + intro.length + 4 + objective.length + 4);
+        block.put(terrain);
+        block.position(pad8(terrain.length));
+        for (long w : passable) block.putLong(w);
+        int cols = grid.getCols();
+        for (int i = grid.nextOccupied(0); i >= 0; i = grid.nextOccupied(i + 1)) {
+            block.putInt(i / cols).putInt(i % cols).putInt(grid.getOccupant(i / cols, i % cols));
+        }
+        block.putInt(intro.length).put(intro);
+        block.putInt(objective.length).put(objective);
+        block.putInt(e.info.decorations);
+        block.flip();
+        return block;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 2 && args[0].equals("convert")) {
+            List<Entry> levels = new ArrayList<>();
+            for (int level = 1; level <= MazeData.LEVEL_COUNT; level++) {
+                levels.add(new Entry(MazeData.getLevelGrid(level), MazeData.getLevelInfo(level)));
+            }
+            write(Paths.get(args[1]), levels);
+            System.out.println("Wrote " + levels.size() + " levels to " + args[1]);
+        } else if (args.length >= 5 && args[0].equals("generate")) {
+            int count = Integer.parseInt(args[2]), size = Integer.parseInt(args[3]);
+            long seed = Long.parseLong(args[4]);
+            List<Entry> levels = new ArrayList<>();
+            for (int n = 1; n <= count; n++) {
+                int rules = (n - 1) % MazeData.LEVEL_COUNT + 1; // cycle through the four level themes
+                MazeData.LevelInfo base = MazeData.getLevelInfo(rules);
+                levels.add(new Entry(MazeGenerator.generate(MazeGenerator.levelSeed(seed, n), size, size, rules),
+                        new MazeData.LevelInfo(base.intro, base.objective, 0)));
+            }
+            write(Paths.get(args[1]), levels);
+            System.out.println("Wrote " + count + " generated " + size + "x" + size + " levels to " + args[1]);
+        } else if (args.length >= 2 && args[0].equals("list")) {
+            long t0 = System.nanoTime();
+            LevelPack pack = open(Paths.get(args[1]));
+            System.out.printf("%d levels, opened in %.2f ms%n", pack.getLevelCount(), (System.nanoTime() - t0) / 1e6);
+            for (int level = 1; level <= pack.getLevelCount(); level++) {
+                long t1 = System.nanoTime();
+                MazeGrid grid = pack.loadGrid(level);
+                long t2 = System.nanoTime();
+                String title = pack.getInfo(level).intro.split("\n")[0];
+                System.out.printf("%4d  %5dx%-5d  loaded in %.2f ms  %s%n",
+                        level, grid.getRows(), grid.getCols(), (t2 - t1) / 1e6, title);
+            }
+        } else {
+            System.err.println("usage: LevelPack convert OUT | generate OUT COUNT SIZE SEED | list PACK");
+            System.exit(2);
+        }
+    }
+}
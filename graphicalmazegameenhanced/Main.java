@@ -1,9 +1,9 @@
-package com.mycompany.graphicalmazegameenhanced;
-
-public class Main {
-    public static void main(String[] args) {
-        javax.swing.SwingUtilities.invokeLater(() -> {
-            new GraphicalMazeGameEnhanced();
-        });
-    }
+package com.mycompany.graphicalmazegameenhanced;
+
+public class Main {
+    public static void main(String[] args) {
+        javax.swing.SwingUtilities.invokeLater(() -> {
+            new GraphicalMazeGameEnhanced();
+        });
+    }
 }
\ No newline at end of file
@@ -1,85 +1,109 @@
-package com.mycompany.graphicalmazegameenhanced;
-
-import java.util.Random;
-
-public class MazeData {
-    private static final Random random = new Random();
-
-    public static final char[][] LEVEL1 = {
-        {'#', '#', '#', '#', '#', '#', '#', '#', '#', '#'},
-        {'#', 'P', '.', '.', '#', '.', '.', '.', '.', '#'},
-        {'#', '.', '#', '.', '.', 'M', '#', '#', '.', '#'},
-        {'#', '.', '#', '#', '#', '.', '#', '.', '.', '#'},
-        {'#', '.', 'A', 'G', '#', '.', '#', '.', '#', '#'},
-        {'#', '#', '.', '.', '#', '.', '.', '.', '.', '#'},
-        {'#', '.', '#', '#', '#', '#', '#', '.', '#', '#'},
-        {'#', '.', '.', '.', '.', '.', '#', '.', '.', '#'},
-        {'#', '#', '#', '#', '#', '.', '#', 'M', 'E', '#'},
-        {'#', '#', '#', '#', '#', '#', '#', '#', '#', '#'}
-    };
-
-    public static final char[][] LEVEL2 = {
-        {'W', 'W', 'W', 'W', 'W', 'W', 'W', 'W', 'W', 'W'},
-        {'W', 'P', 'T', '.', 'W', '.', 'T', '.', '.', 'W'},
-        {'W', '.', 'W', '.', '.', 'M', 'W', 'W', 'T', 'W'},
-        {'W', 'T', 'W', 'W', 'W', '.', 'W', '.', '.', 'W'},
-        {'W', '.', '.', 'G', 'W', 'T', 'W', '.', 'W', 'W'},
-        {'W', 'W', '.', '.', 'W', '.', '.', 'T', '.', 'W'},
-        {'W', '.', 'W', 'W', 'W', 'W', 'W', '.', 'W', 'W'},
-        {'W', '.', 'T', '.', '.', '.', 'W', 'M', '.', 'W'},
-        {'W', 'W', 'W', 'W', 'W', '.', 'W', 'E', 'S', 'W'},
-        {'W', 'W', 'W', 'W', 'W', 'W', 'W', 'W', 'W', 'W'}
-    };
-
-    public static final char[][] LEVEL3 = {
-        {'#', '#', '#', '#', '#', '#', '#', '#', '#', '#'},
-        {'#', 'P', '.', 'T', '#', '.', '.', '.', '.', '#'},
-        {'#', '.', '#', '.', '.', 'M', '#', 'T', '.', '#'},
-        {'#', 'T', '#', '#', '#', '.', '#', '.', '.', '#'},
-        {'#', '.', '.', 'G', '#', 'T', '#', '.', '#', '#'},
-        {'#', '#', '.', '.', '#', '.', '.', 'T', '.', '#'},
-        {'#', '.', '#', '#', '#', '#', '#', '.', '#', '#'},
-        {'#', '.', 'T', '.', '.', '.', '#', 'M', '.', '#'},
-        {'#', '#', '#', '#', '#', '.', '#', 'M', 'C', '#'},
-        {'#', '#', '#', '#', '#', '#', '#', '#', '#', '#'}
-    };
-
-    public static final char[][] LEVEL4 = {
-        {'#', '#', '#', '#', '#', '#', '#', '#', '#', '#'},
-        {'#', 'P', '.', '.', '#', '.', '.', '.', '.', '#'},
-        {'#', '.', '#', '.', '.', 'M', '#', '#', '.', '#'},
-        {'#', '.', '#', '#', '#', '.', '#', '.', '.', '#'},
-        {'#', '.', 'T', 'G', '#', 'B', '#', 'T', '#', '#'},
-        {'#', '#', '.', '.', '#', '.', '.', '.', '.', '#'},
-        {'#', '.', '#', 'X', '#', '#', '#', '.', '#', '#'},
-        {'#', '.', '.', '.', '.', '.', '#', '.', '.', '#'},
-        {'#', '#', '#', '#', '#', '.', '#', '.', 'E', '#'},
-        {'#', '#', '#', '#', '#', '#', '#', '#', '#', '#'}
-    };
-
-    public static char[][] getMazeClone(int level) {
-        char[][] src;
-        if (level == 1) src = LEVEL1;
-        else if (level == 2) src = LEVEL2;
-        else if (level == 3) src = LEVEL3;
-        else src = LEVEL4;
-
-        char[][] out = new char[src.length][src[0].length];
-        for (int i = 0; i < src.length; i++) out[i] = src[i].clone();
-        return out;
-    }
-
-    public static int[] getSagePositionForLevel(int level) {
-        return new int[]{4, 3};
-    }
-
-    public static void addRandomDecorations(char[][] maze, int count) {
-        for (int i = 0; i < count; i++) {
-            int rx = random.nextInt(maze.length);
-            int ry = random.nextInt(maze[0].length);
-            if (maze[rx][ry] == '.' && !(rx == 4 && ry == 2) && !(rx == 8 && ry == 8) && !(rx == 8 && ry == 7)) {
-                maze[rx][ry] = 'T';
-            }
-        }
-    }
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.util.SplittableRandom;
+
+public class MazeData {
+    public static final char[][] LEVEL1 = {
+        {'#', '#', '#', '#', '#', '#', '#', '#', '#', '#'},
+        {'#', 'P', '.', '.', '#', '.', '.', '.', '.', '#'},
+        {'#', '.', '#', '.', '.', 'M', '#', '#', '.', '#'},
+        {'#', '.', '#', '#', '#', '.', '#', '.', '.', '#'},
+        {'#', '.', 'A', 'G', '#', '.', '#', '.', '#', '#'},
+        {'#', '#', '.', '.', '#', '.', '.', '.', '.', '#'},
+        {'#', '.', '#', '#', '#', '#', '#', '.', '#', '#'},
+        {'#', '.', '.', '.', '.', '.', '#', '.', '.', '#'},
+        {'#', '#', '#', '#', '#', '.', '#', 'M', 'E', '#'},
+        {'#', '#', '#', '#', '#', '#', '#', '#', '#', '#'}
+    };
+
+    public static final char[][] LEVEL2 = {
+        {'W', 'W', 'W', 'W', 'W', 'W', 'W', 'W', 'W', 'W'},
+        {'W', 'P', 'T', '.', 'W', '.', 'T', '.', '.', 'W'},
+        {'W', '.', 'W', '.', '.', 'M', 'W', 'W', 'T', 'W'},
+        {'W', 'T', 'W', 'W', 'W', '.', 'W', '.', '.', 'W'},
+        {'W', '.', '.', 'G', 'W', 'T', 'W', '.', 'W', 'W'},
+        {'W', 'W', '.', '.', 'W', '.', '.', 'T', '.', 'W'},
+        {'W', '.', 'W', 'W', 'W', 'W', 'W', '.', 'W', 'W'},
+        {'W', '.', 'T', '.', '.', '.', 'W', 'M', '.', 'W'},
+        {'W', 'W', 'W', 'W', 'W', '.', 'W', 'E', 'S', 'W'},
+        {'W', 'W', 'W', 'W', 'W', 'W', 'W', 'W', 'W', 'W'}
+    };
+
+    public static final char[][] LEVEL3 = {
+        {'#', '#', '#', '#', '#', '#', '#', '#', '#', '#'},
+        {'#', 'P', '.', 'T', '#', '.', '.', '.', '.', '#'},
+        {'#', '.', '#', '.', '.', 'M', '#', 'T', '.', '#'},
+        {'#', 'T', '#', '#', '#', '.', '#', '.', '.', '#'},
+        {'#', '.', '.', 'G', '#', 'T', '#', '.', '#', '#'},
+        {'#', '#', '.', '.', '#', '.', '.', 'T', '.', '#'},
+        {'#', '.', '#', '#', '#', '#', '#', '.', '#', '#'},
+        {'#', '.', 'T', '.', '.', '.', '#', 'M', '.', '#'},
+        {'#', '#', '#', '#', '#', '.', '#', 'M', 'C', '#'},
+        {'#', '#', '#', '#', '#', '#', '#', '#', '#', '#'}
+    };
+
+    public static final char[][] LEVEL4 = {
+        {'#', '#', '#', '#', '#', '#', '#', '#', '#', '#'},
+        {'#', 'P', '.', '.', '#', '.', '.', '.', '.', '#'},
+        {'#', '.', '#', '.', '.', 'M', '#', '#', '.', '#'},
+        {'#', '.', '#', '#', '#', '.', '#', '.', '.', '#'},
+        {'#', '.', 'T', 'G', '#', 'B', '#', 'T', '#', '#'},
+        {'#', '#', '.', '.', '#', '.', '.', '.', '.', '#'},
+        {'#', '.', '#', 'X', '#', '#', '#', '.', '#', '#'},
+        {'#', '.', '.', '.', '.', '.', '#', '.', '.', '#'},
+        {'#', '#', '#', '#', '#', '.', '#', '.', 'E', '#'},
+        {'#', '#', '#', '#', '#', '#', '#', '#', '#', '#'}
+    };
+
+    // Story text and decoration count for a level, from the built-in set or a level pack
+    public static class LevelInfo {
+        public final String intro;
+        public final String objective;
+        public final int decorations;
+
+        public LevelInfo(String intro, String objective, int decorations) {
+            this.intro = intro;
+            this.objective = objective;
+            this.decorations = decorations;
+        }
+    }
+
+    private static final LevelInfo[] LEVEL_INFO = {
+        new LevelInfo("Level 1: The Cursed Labyrinth\nJournal Entry: I am Elara, seeking the Crystal of Eternity.\n",
+                "Find the Sage for guidance on the curse.", 5),
+        new LevelInfo("Level 2: The Enchanted Forest\nSeal the Altar and find the exit.\n",
+                "Find the Ancient Altar ('S') to seal the curse.", 10),
+        new LevelInfo("Level 3: The Celestial Ruins\nPlace the Crystal to end the curse.\n",
+                "Place the Crystal at the Celestial Spire ('C').", 8),
+        new LevelInfo("Level 4: The Warden's Vault\nDefeat the Warden and place the Crystal.\n",
+                "Confront the Corrupted Warden ('B') and restore the Spire.", 6)
+    };
+
+    public static final int LEVEL_COUNT = LEVEL_INFO.length;
+
+    public static LevelInfo getLevelInfo(int level) {
+        return LEVEL_INFO[Math.max(1, Math.min(LEVEL_COUNT, level)) - 1];
+    }
+
+    // A fresh grid for the level; actors in the level text become occupants
+    public static MazeGrid getLevelGrid(int level) {
+        char[][] src;
+        if (level == 1) src = LEVEL1;
+        else if (level == 2) src = LEVEL2;
+        else if (level == 3) src = LEVEL3;
+        else src = LEVEL4;
+        return MazeGrid.fromChars(src);
+    }
+
+    // Same seed, same decorations; only empty floor is ever decorated
+    public static void addRandomDecorations(MazeGrid maze, int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < count; i++) {
+            int rx = random.nextInt(maze.getRows());
+            int ry = random.nextInt(maze.getCols());
+            if (maze.getTerrain(rx, ry) == '.' && !maze.isOccupied(rx, ry)) {
+                maze.setTerrain(rx, ry, 'T');
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,238 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.util.SplittableRandom;
+
+// Seeded procedural levels of any size. The same (seed, size, level) always produces the
+// same maze, so a player's reported seed reproduces their level exactly.
+//
+// Rooms sit on odd coordinates and are carved with an iterative depth-first search over an
+// int stack (no recursion, no per-cell objects). The result is a spanning tree, so every
+// floor cell is reachable; a few extra walls are knocked out afterwards for loops. The DFS
+// stack depth is the tree distance from the start, which places the exit at the farthest
+// room and the objective at a deep dead end. The Sage and traps only go on dead ends,
+// which are leaves of the tree, so they never cut a route.
+//
+//   java ...MazeGenerator [seed] [rows] [cols] [level]   prints build time and checks the level
+public class MazeGenerator {
+    private static final int LEAF_SAMPLES = 64;
+    private static final int ROOMS_PER_MONSTER = 400;
+    private static final int ROOMS_PER_LOOP = 20;
+    private static final int ROOMS_PER_DECORATION = 12;
+    private static final int MIN_MONSTER_DISTANCE = 5;
+
+    // Mixes a game seed with a level number so each level gets its own stream
+    public static long levelSeed(long seed, int level) {
+        long z = seed + level * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    public static MazeGrid generate(long seed, int rows, int cols, int level) {
+        if (rows < 7 || cols < 7) throw new IllegalArgumentException("Maze too small: " + rows + "x" + cols);
+        SplittableRandom random = new SplittableRandom(seed);
+        MazeGrid maze = new MazeGrid(rows, cols);
+        maze.fill(level == 2 ? 'W' : '#');
+        int roomRows = (rows - 1) / 2, roomCols = (cols - 1) / 2;
+
+        // Carve, then place the landmarks the search found
+        Carving carving = carve(maze, random);
+        int start = maze.index(1, 1);
+        int[] leafCells = carving.leafCells, leafDepths = carving.leafDepths;
+        int leavesSeen = carving.leavesSeen;
+        int deepestCell = carving.deepestCell, shallowLeafCell = carving.shallowLeafCell;
+
+        // Exit at the farthest room, objective at the deepest other sampled dead end
+        int exit = deepestCell;
+        int objective = -1, objectiveDepth = -1;
+        int samples = Math.min(leavesSeen, LEAF_SAMPLES);
+        for (int k = 0; k < samples; k++) {
+            if (leafCells[k] != exit && leafDepths[k] > objectiveDepth) {
+                objective = leafCells[k];
+                objectiveDepth = leafDepths[k];
+            }
+        }
+        if (objective < 0) objective = farthestOther(maze, exit, start);
+        maze.setTerrain(exit / cols, exit % cols, 'E');
+        if (objective != exit) maze.setTerrain(objective / cols, objective % cols, level == 1 ? 'A' : level == 2 ? 'S' : 'C');
+        if (shallowLeafCell >= 0 && shallowLeafCell != exit && shallowLeafCell != objective) {
+            maze.setTerrain(shallowLeafCell / cols, shallowLeafCell % cols, 'G');
+        }
+
+        // Traps on the remaining sampled dead ends (the Warden's vault only)
+        if (level == 4) {
+            for (int k = 0; k < samples; k += 2) {
+                int cell = leafCells[k];
+                if (maze.getTerrain(cell / cols, cell % cols) == '.') maze.setTerrain(cell / cols, cell % cols, 'X');
+            }
+        }
+
+        // Loops: knock out walls that separate two rooms
+        int loops = roomRows * roomCols / ROOMS_PER_LOOP;
+        for (int k = 0; k < loops; k++) {
+            int r = 1 + random.nextInt(rows - 2), c = 1 + random.nextInt(cols - 2);
+            boolean between = (r % 2 == 1 && c % 2 == 0 && c + 1 < cols - 1) || (r % 2 == 0 && c % 2 == 1 && r + 1 < rows - 1);
+            if (between && !maze.isPassable(r, c)) maze.setTerrain(r, c, '.');
+        }
+
+        // Decorations and actors on plain floor
+        int decorations = roomRows * roomCols / ROOMS_PER_DECORATION;
+        for (int k = 0; k < decorations; k++) {
+            int r = 1 + random.nextInt(rows - 2), c = 1 + random.nextInt(cols - 2);
+            if (maze.getTerrain(r, c) == '.' && !(r == 1 && c == 1)) maze.setTerrain(r, c, 'T');
+        }
+        maze.setOccupant(1, 1, MazeGrid.PLAYER);
+        int monsters = Math.max(2, roomRows * roomCols / ROOMS_PER_MONSTER);
+        for (int k = 0, tries = 0; k < monsters && tries < monsters * 20; tries++) {
+            int r = 1 + random.nextInt(rows - 2), c = 1 + random.nextInt(cols - 2);
+            if (r + c < MIN_MONSTER_DISTANCE * 2 || !maze.isFree(r, c)) continue;
+            char t = maze.getTerrain(r, c);
+            if (t != '.' && t != 'T') continue;
+            maze.setOccupant(r, c, MazeGrid.MONSTER);
+            k++;
+        }
+        if (level == 4) {
+            // The Warden waits on the way to the exit
+            int[] around = new int[4];
+            int n = maze.passableNeighbors(exit / cols, exit % cols, around);
+            for (int k = 0; k < n; k++) {
+                int cell = around[k];
+                if (!maze.isOccupied(cell / cols, cell % cols)) {
+                    maze.setOccupant(cell / cols, cell % cols, MazeGrid.BOSS);
+                    break;
+                }
+            }
+        }
+        return maze;
+    }
+
+    // What the depth-first search learned about the tree it carved
+    private static class Carving {
+        final int[] leafCells = new int[LEAF_SAMPLES];  // uniform sample of dead ends
+        final int[] leafDepths = new int[LEAF_SAMPLES];
+        int leavesSeen = 0;
+        int deepestCell = 0, deepestDepth = -1;
+        int shallowLeafCell = -1, shallowLeafDepth = Integer.MAX_VALUE;
+    }
+
+    // The stack holds room cell indices; its height is the distance from the start
+    private static Carving carve(MazeGrid maze, SplittableRandom random) {
+        int rows = maze.getRows(), cols = maze.getCols();
+        Carving out = new Carving();
+        int[] stack = new int[((rows - 1) / 2) * ((cols - 1) / 2)];
+        int[] options = new int[4];
+        maze.setTerrain(1, 1, '.');
+        stack[0] = maze.index(1, 1);
+        int top = 0;
+        boolean advanced = true; // the top room was just pushed
+        while (top >= 0) {
+            int cell = stack[top];
+            int r = cell / cols, c = cell % cols;
+            int n = 0;
+            for (int d = 0; d < 4; d++) {
+                int nr = r + 2 * MazeGrid.DIR_ROW[d], nc = c + 2 * MazeGrid.DIR_COL[d];
+                if (nr > 0 && nr < rows - 1 && nc > 0 && nc < cols - 1 && !maze.isPassableIndex(nr * cols + nc)) {
+                    options[n++] = d;
+                }
+            }
+            if (n == 0) {
+                if (advanced && top > 0) recordLeaf(out, cell, top, random);
+                if (top > out.deepestDepth) {
+                    out.deepestDepth = top;
+                    out.deepestCell = cell;
+                }
+                advanced = false;
+                top--;
+                continue;
+            }
+            int d = options[random.nextInt(n)];
+            maze.setTerrain(r + MazeGrid.DIR_ROW[d], c + MazeGrid.DIR_COL[d], '.');
+            int nr = r + 2 * MazeGrid.DIR_ROW[d], nc = c + 2 * MazeGrid.DIR_COL[d];
+            maze.setTerrain(nr, nc, '.');
+            stack[++top] = nr * cols + nc;
+            advanced = true;
+        }
+        return out;
+    }
+
+    // Reservoir sampling keeps the dead-end sample uniform however many there are
+    private static void recordLeaf(Carving out, int cell, int depth, SplittableRandom random) {
+        if (out.leavesSeen < LEAF_SAMPLES) {
+            out.leafCells[out.leavesSeen] = cell;
+            out.leafDepths[out.leavesSeen] = depth;
+        } else {
+            int k = random.nextInt(out.leavesSeen + 1);
+            if (k < LEAF_SAMPLES) {
+                out.leafCells[k] = cell;
+                out.leafDepths[k] = depth;
+            }
+        }
+        out.leavesSeen++;
+        if (depth < out.shallowLeafDepth) {
+            out.shallowLeafDepth = depth;
+            out.shallowLeafCell = cell;
+        }
+    }
+
+    // Tiny mazes can run out of sampled dead ends; any other room will do
+    private static int farthestOther(MazeGrid maze, int exit, int start) {
+        int cols = maze.getCols();
+        for (int r = maze.getRows() - 2; r > 0; r -= 2) {
+            for (int c = cols - 2; c > 0; c -= 2) {
+                int cell = r * cols + c;
+                if (cell != exit && cell != start && maze.getTerrain(r, c) == '.') return cell;
+            }
+        }
+        return exit;
+    }
+
+    // Flood fill from the start over passable, trap-free cells; true when the objective and exit are reached
+    static boolean isSolvable(MazeGrid maze) {
+        int rows = maze.getRows(), cols = maze.getCols();
+        int[] queue = new int[rows * cols];
+        long[] seen = new long[(rows * cols + 63) / 64];
+        int[] around = new int[4];
+        int head = 0, tail = 0;
+        queue[tail++] = maze.index(1, 1);
+        seen[queue[0] >> 6] |= 1L << queue[0];
+        boolean objective = true, exit = false;
+        for (int r = 0; r < rows && objective; r++) {
+            for (int c = 0; c < cols; c++) {
+                char t = maze.getTerrain(r, c);
+                if (t == 'A' || t == 'S' || t == 'C') { objective = false; break; }
+            }
+        }
+        while (head < tail) {
+            int cell = queue[head++];
+            char t = maze.getTerrain(cell / cols, cell % cols);
+            if (t == 'E') { exit = true; continue; }
+            if (t == 'A' || t == 'S' || t == 'C') objective = true;
+            int n = maze.passableNeighbors(cell / cols, cell % cols, around);
+            for (int k = 0; k < n; k++) {
+                int next = around[k];
+                if ((seen[next >> 6] & (1L << next)) != 0) continue;
+                seen[next >> 6] |= 1L << next;
+                if (maze.getTerrain(next / cols, next % cols) != 'X') queue[tail++] = next;
+            }
+        }
+        return objective && exit;
+    }
+
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 1L;
+        int rows = args.length > 1 ? Integer.parseInt(args[1]) : 4096;
+        int cols = args.length > 2 ? Integer.parseInt(args[2]) : rows;
+        int level = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+        for (int run = 0; run < 5; run++) {
+            long t0 = System.nanoTime();
+            MazeGrid maze = generate(seed, rows, cols, level);
+            long t1 = System.nanoTime();
+            long hash = 17;
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < cols; c++) hash = hash * 31 + maze.charAt(r, c);
+            }
+            System.out.printf("seed %d  %dx%d level %d  built in %.1f ms  hash %016x  solvable %b%n",
+                    seed, rows, cols, level, (t1 - t0) / 1e6, hash, isSolvable(maze));
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.util.Arrays;
+
+// The maze as flat, bit-packed layers indexed by r * cols + c:
+//   terrain    4 bits per cell ('.', '#', 'W', 'T', 'G', 'A', 'S', 'C', 'E', 'X')
+//   passable   1 bit per cell, kept in sync with terrain, tested one long word at a time
+//   occupants  2 bits per cell (player, monster, boss) on top of the terrain
+// Actors never overwrite terrain, so moving one is just clearing and setting its bits.
+public class MazeGrid {
+    public static final int NONE = 0, PLAYER = 1, MONSTER = 2, BOSS = 3;
+    private static final String TERRAIN_CHARS = ".#WTGASCEX";
+    private static final String OCCUPANT_CHARS = " PMB";
+    private static final byte[] TERRAIN_CODES = new byte[128]; // char -> code, -1 if unknown
+    private static final char[] CODE_CHARS = new char[16];     // code -> char, wall if unused
+    static {
+        Arrays.fill(TERRAIN_CODES, (byte) -1);
+        Arrays.fill(CODE_CHARS, '#');
+        for (int k = 0; k < TERRAIN_CHARS.length(); k++) {
+            TERRAIN_CODES[TERRAIN_CHARS.charAt(k)] = (byte) k;
+            CODE_CHARS[k] = TERRAIN_CHARS.charAt(k);
+        }
+    }
+
+    // Passability bits for each byte of the terrain layer, low cell first
+    private static final byte[] PASSABLE_PAIRS = new byte[256];
+    static {
+        for (int b = 0; b < 256; b++) {
+            PASSABLE_PAIRS[b] = (byte) ((isPassableTerrain(terrainChar(b & 0xF)) ? 1 : 0)
+                    | (isPassableTerrain(terrainChar(b >>> 4)) ? 2 : 0));
+        }
+    }
+
+    private static int terrainCode(char t) {
+        return t < 128 ? TERRAIN_CODES[t] : -1;
+    }
+
+    // Terrain for a raw nibble code; codes no level uses read as wall
+    static char terrainChar(int code) {
+        return CODE_CHARS[code];
+    }
+
+    // Row/column steps in facing order: up, right, down, left
+    public static final int[] DIR_ROW = {-1, 0, 1, 0};
+    public static final int[] DIR_COL = {0, 1, 0, -1};
+
+    private final int rows, cols;
+    private final byte[] terrain;    // two cells per byte, low nibble first
+    private final long[] passable;   // 64 cells per word
+    private final long[] occupants;  // 32 cells per word
+    private long wallVersion = 0;    // bumped whenever a cell starts or stops blocking sight
+
+    // All floor, nobody on it
+    public MazeGrid(int rows, int cols) {
+        if (rows <= 0 || cols <= 0) throw new IllegalArgumentException("Empty maze " + rows + "x" + cols);
+        this.rows = rows;
+        this.cols = cols;
+        int cells = rows * cols;
+        terrain = new byte[(cells + 1) / 2];
+        passable = new long[(cells + 63) / 64];
+        occupants = new long[(cells + 31) / 32];
+        Arrays.fill(passable, -1L);
+    }
+
+    private MazeGrid(MazeGrid src) {
+        rows = src.rows;
+        cols = src.cols;
+        terrain = src.terrain.clone();
+        passable = src.passable.clone();
+        occupants = src.occupants.clone();
+    }
+
+    // Level text: 'P', 'M' and 'B' become occupants standing on floor
+    public static MazeGrid fromChars(char[][] src) {
+        MazeGrid grid = new MazeGrid(src.length, src[0].length);
+        for (int r = 0; r < src.length; r++) {
+            if (src[r].length != grid.cols) throw new IllegalArgumentException("Ragged maze row " + r);
+            for (int c = 0; c < grid.cols; c++) {
+                char ch = src[r][c];
+                int occupant = ch == ' ' ? -1 : OCCUPANT_CHARS.indexOf(ch);
+                if (occupant > 0) {
+                    grid.setOccupant(r, c, occupant);
+                } else {
+                    grid.setTerrain(r, c, ch);
+                }
+            }
+        }
+        return grid;
+    }
+
+    // Wraps layers read in bulk from a level pack; the arrays must match the dimensions
+    MazeGrid(int rows, int cols, byte[] terrain, long[] passable) {
+        int cells = rows * cols;
+        if (terrain.length != (cells + 1) / 2 || passable.length != (cells + 63) / 64) {
+            throw new IllegalArgumentException("Layer sizes don't match " + rows + "x" + cols);
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.terrain = terrain;
+        this.passable = passable;
+        this.occupants = new long[(cells + 31) / 32];
+    }
+
+    // For subclasses that keep their cells elsewhere (ChunkedWorld); these layers stay empty
+    MazeGrid(int rows, int cols, boolean unbacked) {
+        this.rows = rows;
+        this.cols = cols;
+        terrain = new byte[0];
+        passable = new long[0];
+        occupants = new long[0];
+    }
+
+    // Terrain layer as terrainBytes() gives it, from a save file; passability is derived
+    static MazeGrid fromTerrain(int rows, int cols, byte[] terrain) {
+        long cells = (long) rows * cols;
+        if (rows <= 0 || cols <= 0 || cells > Integer.MAX_VALUE || terrain.length != (cells + 1) / 2) {
+            throw new IllegalArgumentException("Terrain doesn't match " + rows + "x" + cols);
+        }
+        long[] passable = new long[(int) ((cells + 63) / 64)];
+        for (int b = 0; b < terrain.length; b++) {
+            int i = b << 1; // a byte's two cells never straddle a word
+            passable[i >> 6] |= (long) PASSABLE_PAIRS[terrain[b] & 0xFF] << i;
+        }
+        return new MazeGrid(rows, cols, terrain, passable);
+    }
+
+    public MazeGrid copy() { return new MazeGrid(this); }
+
+    // Raw layers for the level pack writer; callers must not modify them
+    byte[] terrainBytes() { return terrain; }
+    long[] passableWords() { return passable; }
+
+    // Every cell becomes terrain t (generators start from solid rock)
+    public void fill(char t) {
+        int code = terrainCode(t);
+        if (code < 0) throw new IllegalArgumentException("Unknown terrain '" + t + "'");
+        Arrays.fill(terrain, (byte) (code | code << 4));
+        Arrays.fill(passable, isPassableTerrain(t) ? -1L : 0L);
+        wallVersion++;
+    }
+
+    public int getRows() { return rows; }
+    public int getCols() { return cols; }
+    public int index(int r, int c) { return r * cols + c; }
+
+    public boolean inBounds(int r, int c) {
+        return r >= 0 && r < rows && c >= 0 && c < cols;
+    }
+
+    public static boolean isPassableTerrain(char t) {
+        return t != '#' && t != 'W' && t != 'G';
+    }
+
+    // Walls block sight; everything else, gates and trees included, can be seen past
+    public static boolean isOpaqueTerrain(char t) {
+        return t == '#' || t == 'W';
+    }
+
+    // Changes whenever the wall layer does, so sight computed from it can be cached
+    public long getWallVersion() { return wallVersion; }
+
+    void wallsChanged() { wallVersion++; }
+
+    public char getTerrain(int r, int c) {
+        int i = r * cols + c;
+        return CODE_CHARS[(terrain[i >> 1] >> ((i & 1) << 2)) & 0xF];
+    }
+
+    public void setTerrain(int r, int c, char t) {
+        int code = terrainCode(t);
+        if (code < 0) throw new IllegalArgumentException("Unknown terrain '" + t + "' at " + r + "," + c);
+        int i = r * cols + c;
+        int shift = (i & 1) << 2;
+        if (isOpaqueTerrain(terrainChar((terrain[i >> 1] >> shift) & 0xF)) != isOpaqueTerrain(t)) wallVersion++;
+        terrain[i >> 1] = (byte) ((terrain[i >> 1] & ~(0xF << shift)) | (code << shift));
+        if (isPassableTerrain(t)) passable[i >> 6] |= 1L << i;
+        else passable[i >> 6] &= ~(1L << i);
+    }
+
+    // Out-of-bounds cells are never passable
+    public boolean isPassable(int r, int c) {
+        return r >= 0 && r < rows && c >= 0 && c < cols && isPassableIndex(r * cols + c);
+    }
+
+    public boolean isPassableIndex(int i) {
+        return (passable[i >> 6] & (1L << i)) != 0;
+    }
+
+    public int getOccupant(int r, int c) {
+        int i = r * cols + c;
+        return (int) (occupants[i >> 5] >>> ((i & 31) << 1)) & 3;
+    }
+
+    public boolean isOccupied(int r, int c) {
+        return getOccupant(r, c) != NONE;
+    }
+
+    public void setOccupant(int r, int c, int kind) {
+        int i = r * cols + c;
+        int shift = (i & 31) << 1;
+        occupants[i >> 5] = (occupants[i >> 5] & ~(3L << shift)) | ((long) kind << shift);
+    }
+
+    public void moveOccupant(int fromR, int fromC, int toR, int toC) {
+        int kind = getOccupant(fromR, fromC);
+        setOccupant(fromR, fromC, NONE);
+        setOccupant(toR, toC, kind);
+    }
+
+    // First occupied cell index at or after from, or -1; skips empty words 32 cells at a time
+    public int nextOccupied(int from) {
+        int cells = rows * cols;
+        if (from >= cells) return -1;
+        int w = from >> 5;
+        long word = occupants[w] & (-1L << ((from & 31) << 1));
+        while (word == 0) {
+            if (++w == occupants.length) return -1;
+            word = occupants[w];
+        }
+        int i = (w << 5) + (Long.numberOfTrailingZeros(word) >> 1);
+        return i < cells ? i : -1;
+    }
+
+    public void clearOccupants() {
+        Arrays.fill(occupants, 0L);
+    }
+
+    // Passable and nobody standing there
+    public boolean isFree(int r, int c) {
+        return isPassable(r, c) && getOccupant(r, c) == NONE;
+    }
+
+    // Passable 4-neighbours of (r, c) as cell indices, in facing order; returns the count
+    public int passableNeighbors(int r, int c, int[] out) {
+        int n = 0;
+        for (int d = 0; d < 4; d++) {
+            int nr = r + DIR_ROW[d], nc = c + DIR_COL[d];
+            if (isPassable(nr, nc)) out[n++] = nr * cols + nc;
+        }
+        return n;
+    }
+
+    // What the old char[][] would have held: the occupant if any, else the terrain
+    public char charAt(int r, int c) {
+        int occupant = getOccupant(r, c);
+        return occupant != NONE ? OCCUPANT_CHARS.charAt(occupant) : getTerrain(r, c);
+    }
+}
@@ -0,0 +1,12 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+// What MonsterManager needs from the game: the maze, the player and redraw notifications.
+// Implemented by the live game and by the headless AiBenchmark scenes.
+public interface MonsterHost {
+    MazeGrid getMaze();
+    int getPlayerX();
+    int getPlayerY();
+    void markCellDirty(int r, int c);
+    void markAreaDirty(int r, int c, int radius);
+    StoryManager getStoryManager();
+}
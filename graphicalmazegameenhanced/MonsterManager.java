@@ -1,166 +1,469 @@
-package com.mycompany.graphicalmazegameenhanced;
-
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Random;
-
-public class MonsterManager {
-    private final GraphicalMazeGameEnhanced game;
-    private final List<int[]> monsters = new ArrayList<>();
-    private final Random random = new Random();
-    private int[] boss = null; // boss coordinates {x,y,dir}
-    private boolean bossAlive = false;
-
-    public MonsterManager(GraphicalMazeGameEnhanced game) {
-        this.game = game;
-    }
-
-    public void resetMonstersForLevel(int level) {
-        monsters.clear();
-        boss = null;
-        bossAlive = false;
-        char[][] maze = MazeData.getMazeClone(level);
-
-        // find M monsters in the maze and register them
-        for (int i = 0; i < maze.length; i++) {
-            for (int j = 0; j < maze[i].length; j++) {
-                if (maze[i][j] == 'M') {
-                    monsters.add(new int[]{i, j, 2});
-                } else if (maze[i][j] == 'B') {
-                    boss = new int[]{i, j, 2};
-                    bossAlive = true;
-                }
-            }
-        }
-        // copy monsters into the current game maze so painting can show them
-        char[][] gm = game.getMaze();
-        if (gm != null) {
-            for (int[] m : monsters) {
-                if (gm[m[0]][m[1]] != 'A' && gm[m[0]][m[1]] != 'S' && gm[m[0]][m[1]] != 'C' && gm[m[0]][m[1]] != 'E') {
-                    gm[m[0]][m[1]] = 'M';
-                }
-            }
-            if (bossAlive && boss != null) {
-                gm[boss[0]][boss[1]] = 'B';
-            }
-        }
-    }
-
-    public void moveMonsters() {
-        try {
-            char[][] maze = game.getMaze();
-            if (maze == null) return;
-            int[][] directions = {{-1, 0, 0}, {0, 1, 1}, {1, 0, 2}, {0, -1, 3}};
-
-            // move normal monsters
-            for (int[] monster : monsters) {
-                if (maze[monster[0]][monster[1]] == 'M') maze[monster[0]][monster[1]] = '.';
-
-                int dirIdx = random.nextInt(directions.length);
-                int[] dir = directions[dirIdx];
-                int newX = monster[0] + dir[0];
-                int newY = monster[1] + dir[1];
-                int newFacing = dir[2];
-
-                if (isValidMove(maze, newX, newY) && !isMonsterAt(newX, newY) && !isPlayerAt(newX, newY) && maze[newX][newY] != 'G') {
-                    monster[0] = newX;
-                    monster[1] = newY;
-                    monster[2] = newFacing;
-                }
-                if (maze[monster[0]][monster[1]] != 'A' && maze[monster[0]][monster[1]] != 'S' && maze[monster[0]][monster[1]] != 'C' && maze[monster[0]][monster[1]] != 'E') {
-                    maze[monster[0]][monster[1]] = 'M';
-                }
-            }
-
-            // move boss (if alive)
-            if (bossAlive && boss != null) {
-                if (maze[boss[0]][boss[1]] == 'B') maze[boss[0]][boss[1]] = '.';
-                int dirIdx = random.nextInt(directions.length);
-                int[] dir = directions[dirIdx];
-                int newX = boss[0] + dir[0];
-                int newY = boss[1] + dir[1];
-                if (isValidMove(maze, newX, newY) && !isMonsterAt(newX, newY) && !isPlayerAt(newX, newY)) {
-                    boss[0] = newX; boss[1] = newY; boss[2] = dir[2];
-                }
-                if (maze[boss[0]][boss[1]] != 'A' && maze[boss[0]][boss[1]] != 'S' && maze[boss[0]][boss[1]] != 'C' && maze[boss[0]][boss[1]] != 'E') {
-                    maze[boss[0]][boss[1]] = 'B';
-                }
-            }
-
-        } catch (Exception e) {
-            game.getStoryManager().appendToLog("Error moving monsters: " + e.getMessage() + "\n");
-        }
-    }
-
-    private boolean isValidMove(char[][] maze, int x, int y) {
-        return x >= 0 && x < maze.length && y >= 0 && y < maze[0].length && maze[x][y] != '#' && maze[x][y] != 'W' && maze[x][y] != 'G';
-    }
-
-    public boolean isMonsterAt(int x, int y) {
-        for (int[] m : monsters) if (m[0] == x && m[1] == y) return true;
-        if (bossAlive && boss != null && boss[0] == x && boss[1] == y) return true;
-        return false;
-    }
-
-    public boolean isPlayerAt(int x, int y) {
-        return x == game.getPlayerX() && y == game.getPlayerY();
-    }
-
-    public static boolean isTrapAt(char[][] maze, int x, int y) {
-        if (x < 0 || x >= maze.length || y < 0 || y < maze[0].length) return false;
-        return maze[x][y] == 'X';
-    }
-
-    public int[] getBossPosition() {
-        return bossAlive ? boss : null;
-    }
-
-    public void killBoss() {
-        bossAlive = false;
-        if (boss != null) {
-            char[][] maze = game.getMaze();
-            if (maze != null && boss[0] >= 0) maze[boss[0]][boss[1]] = '.';
-        }
-    }
-
-    // NEW: For checkpoints
-    public List<int[]> getAllMonsterPositions() {
-        List<int[]> all = new ArrayList<>();
-        for (int[] m : monsters) {
-            all.add(new int[]{m[0], m[1], m[2]});
-        }
-        if (bossAlive && boss != null) {
-            all.add(new int[]{boss[0], boss[1], boss[2]});
-        }
-        return all;
-    }
-
-    // NEW: Restore monster positions from checkpoint
-    public void setAllMonsterPositions(List<int[]> positions) {
-        monsters.clear();
-        boss = null;
-        bossAlive = false;
-        char[][] maze = game.getMaze();
-        if (maze != null) {
-            // Clear old monsters
-            for (int i = 0; i < maze.length; i++) {
-                for (int j = 0; j < maze[i].length; j++) {
-                    if (maze[i][j] == 'M' || maze[i][j] == 'B') maze[i][j] = '.';
-                }
-            }
-            // Place new
-            for (int[] pos : positions) {
-                int x = pos[0], y = pos[1];
-                if (x == 4 && y == 3) continue; // Skip sage
-                if (!bossAlive) {
-                    boss = new int[]{x, y, pos[2]};
-                    bossAlive = true;
-                    maze[x][y] = 'B';
-                } else {
-                    monsters.add(new int[]{x, y, pos[2]});
-                    maze[x][y] = 'M';
-                }
-            }
-        }
-    }
-}
\ No newline at end of file
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+public class MonsterManager {
+    // Hunters chase the player down a shared distance field out to this many steps
+    public static final int HUNT_RADIUS = Integer.getInteger("maze.huntRadius", 48);
+    // ...once they have caught sight of the player within this many cells
+    public static final int SIGHT_RADIUS = Integer.getInteger("maze.sightRadius", 8);
+    // Intents are computed on the common fork-join pool once there are this many monsters
+    public static final int PARALLEL_MIN = Integer.getInteger("maze.aiParallelMin", 4096);
+    private static final int STAY = -1, WANDER = -2, CAUGHT = -3;
+    // A hunting Warden re-plans once the player has left its path's end and the path is this old
+    private static final int BOSS_REPLAN = 5;
+    // ...spending at most this share of the tick's AI budget on it; a longer search goes on next tick
+    private static final double BOSS_SHARE = 0.5;
+    // Monster decisions between looks at the clock
+    private static final int BATCH = 256;
+
+    private final MonsterHost game;
+    private final EntityStore actors = new EntityStore(); // monsters and the boss
+    private int bossId = -1; // while the boss is alive and loaded
+    private boolean hunting = "hunt".equals(System.getProperty("maze.ai")); // -Dmaze.ai=hunt
+    private final DistanceField field = new DistanceField(HUNT_RADIUS);
+    private final OccupancyIndex index = new OccupancyIndex(); // monsters and boss, by block
+    private final HierarchicalPathfinder pathfinder = new HierarchicalPathfinder(); // built per level by the game
+    private int[] bossPath; // cells the Warden is following, from bossStep on
+    private int bossStep, bossSerial;
+    private boolean bossPlanning = false; // a search of the Warden's is paused in the pathfinder
+    private long bossPlanned = -BOSS_REPLAN, lastBossPathMicros = 0;
+    private final AiScheduler scheduler = new AiScheduler(AiScheduler.BUDGET_MICROS);
+    private final AiScheduler.AnytimeTask bossPlanner = this::planBoss;
+    private int[] order = new int[64]; // this tick's decisions, most urgent first
+    private int cursor = 0;            // slot the next tick's pass starts from
+    // Ids of monsters last seen within HUNT_RADIUS of the player, queued ahead of the pass
+    // every tick; a monster joins when the pass reaches it or when it moves into range
+    private int[] nearIds = new int[64];
+    private int nearCount = 0;
+    private boolean[] near = new boolean[64]; // by id
+    private long[] decided = new long[1]; // this tick's decided slots, a bit each, for the commit
+    private SaveJournal journal; // told about every move, when the game keeps one
+    private boolean caughtPlayer = false;
+    private long lastTickNanos = 0, lastFieldNanos = 0;
+    // Random moves are a pure function of (seed, monster id, tick), so a tick comes out the
+    // same whichever thread computes which monster, and a level replays from its seed
+    private long seed = 0, tick = 0;
+    private int[] intents = new int[64]; // read only for the slots decided this tick
+    // Slots whose state an intent changed this tick, so the commit can journal it; each is
+    // written only by the thread deciding for that slot
+    private boolean[] stateChanged = new boolean[64];
+    // Each monster's view, by id, so one standing still doesn't look again; an id reused by a
+    // new monster inherits a view that is still correct for wherever it was taken
+    private FieldOfView[] sight = new FieldOfView[64];
+
+    public MonsterManager(MonsterHost game) {
+        this.game = game;
+    }
+
+    public boolean isHunting() { return hunting; }
+    public void setHunting(boolean hunting) { this.hunting = hunting; }
+    public DistanceField getDistanceField() { return field; }
+    public void setSeed(long seed) { this.seed = seed; }
+    public long getSeed() { return seed; }
+    public long getTick() { return tick; }
+    public void setTick(long tick) { this.tick = tick; } // a loaded game carries on its random streams
+    public OccupancyIndex getOccupancyIndex() { return index; }
+    public HierarchicalPathfinder getPathfinder() { return pathfinder; }
+    public AiScheduler getScheduler() { return scheduler; }
+    public void setJournal(SaveJournal journal) { this.journal = journal; }
+    public long getLastBossPathMicros() { return lastBossPathMicros; }
+    // Read-only to everyone but this class and a checkpoint rewind (see actorsRewound)
+    public EntityStore getActors() { return actors; }
+
+    // A hunter reached the player during the last move
+    public boolean hasCaughtPlayer() { return caughtPlayer; }
+
+    // Whole moveMonsters call, and the part of it spent rebuilding the distance field
+    public long getLastTickMicros() { return lastTickNanos / 1000; }
+    public long getLastFieldMicros() { return lastFieldNanos / 1000; }
+
+    // Register the monsters and boss standing on a freshly loaded level grid
+    public void resetMonsters(MazeGrid maze) {
+        actors.clear();
+        index.clear();
+        bossId = -1;
+        bossPath = null;
+        bossPlanning = false;
+        bossPlanned = -BOSS_REPLAN;
+        cursor = 0;
+        nearCount = 0;
+        Arrays.fill(near, false);
+        tick = 0;
+        for (int i = maze.nextOccupied(0); i >= 0; i = maze.nextOccupied(i + 1)) {
+            addActor(maze.getOccupant(i / maze.getCols(), i % maze.getCols()), i / maze.getCols(), i % maze.getCols());
+        }
+    }
+
+    // A streamed chunk came in: its actors join the simulation
+    public void chunkLoaded(MazeGrid cells, int row0, int col0) {
+        for (int i = cells.nextOccupied(0); i >= 0; i = cells.nextOccupied(i + 1)) {
+            int r = i / cells.getCols(), c = i % cells.getCols();
+            addActor(cells.getOccupant(r, c), row0 + r, col0 + c);
+        }
+    }
+
+    private void addActor(int kind, int r, int c) {
+        if (kind != MazeGrid.MONSTER && kind != MazeGrid.BOSS) return;
+        int id = actors.add(kind, r, c, 2, EntityStore.DEFAULT_HP);
+        if (kind == MazeGrid.BOSS) bossId = id;
+        index.add(r, c);
+    }
+
+    // A streamed chunk was evicted: its actors stay parked in it, frozen, until it comes back
+    public void chunkEvicted(MazeGrid cells, int row0, int col0) {
+        int row1 = row0 + cells.getRows(), col1 = col0 + cells.getCols();
+        for (int slot = actors.size() - 1; slot >= 0; slot--) {
+            int r = actors.getX(slot), c = actors.getY(slot);
+            if (r < row0 || r >= row1 || c < col0 || c >= col1) continue;
+            index.remove(r, c);
+            if (actors.getId(slot) == bossId) bossId = -1;
+            actors.remove(actors.getId(slot)); // the last slot moves here, and it's been checked
+        }
+    }
+
+    // One AI step in two phases. Every monster first picks its move from the tick's starting
+    // state, which nothing writes to meanwhile, so the picks can run in parallel. The moves
+    // are then committed in slot order; when two monsters want the same cell the earlier
+    // slot gets it and the other stands still. Slot order only changes through adds and
+    // removes, which are themselves deterministic.
+    //
+    // Picks are made most urgent first for as long as the scheduler's budget lasts (see
+    // AiScheduler); a monster not reached this tick stands still. A tick only touches the
+    // monsters near the player and those it had time for, so its cost doesn't grow with
+    // the rest of the level.
+    public void moveMonsters() {
+        long start = System.nanoTime();
+        scheduler.beginTick();
+        caughtPlayer = false;
+        int backlog = 0;
+        try {
+            MazeGrid maze = game.getMaze();
+            if (maze == null) return;
+            int px = game.getPlayerX(), py = game.getPlayerY();
+            if (hunting) field.update(maze, px, py);
+            lastFieldNanos = System.nanoTime() - start;
+            tick++;
+            if (journal != null) journal.beginMonsters();
+
+            // Intent: hunters that have seen the player go downhill, everyone else wanders
+            int n = actors.size();
+            if (intents.length < n) intents = new int[Math.max(n, intents.length * 2)];
+            if (stateChanged.length < n) stateChanged = Arrays.copyOf(stateChanged, Math.max(n, stateChanged.length * 2));
+            if (sight.length < actors.getIdLimit()) sight = Arrays.copyOf(sight, Math.max(actors.getIdLimit(), sight.length * 2));
+            if (near.length < actors.getIdLimit()) near = Arrays.copyOf(near, Math.max(actors.getIdLimit(), near.length * 2));
+            if (order.length < n) order = new int[Math.max(n, order.length * 2)];
+            if (decided.length << 6 < n) decided = new long[Math.max((n + 63) >> 6, decided.length * 2)];
+            int[] picks = intents;
+            int bossSlot = actors.slotOf(bossId);
+            if (bossSlot >= 0) picks[bossSlot] = bossIntent(maze, bossSlot, px, py); // alone: the path search isn't thread-safe
+            int queued = queueNear(bossSlot, px, py), fromNear = queued;
+            int[] queue = order;
+            boolean parallel = n >= PARALLEL_MIN;
+            int batch = parallel ? Math.max(BATCH, PARALLEL_MIN) : BATCH, done = 0;
+            if (cursor >= n) cursor = 0;
+            int restart = cursor, passed = 0;
+            while (true) {
+                // Top the queue up from the cursor round; monsters near the player are already on it
+                while (queued - done < batch && passed < n) {
+                    int slot = cursor;
+                    cursor = cursor + 1 == n ? 0 : cursor + 1;
+                    passed++;
+                    if (slot == bossSlot || near[actors.getId(slot)]) continue;
+                    if (distance(slot, px, py) <= HUNT_RADIUS) addNear(actors.getId(slot));
+                    queue[queued++] = slot;
+                }
+                if (done == queued) break;
+                int from = done, to = Math.min(queued, done + batch);
+                if (parallel) {
+                    IntStream.range(from, to).parallel().forEach(k -> picks[queue[k]] = intent(maze, queue[k], px, py));
+                } else {
+                    for (int k = from; k < to; k++) picks[queue[k]] = intent(maze, queue[k], px, py);
+                }
+                for (int k = from; k < to; k++) decided[queue[k] >> 6] |= 1L << queue[k];
+                done = to;
+                if (scheduler.expired()) break;
+            }
+            backlog = n - done - (bossSlot >= 0 ? 1 : 0);
+            // Whoever was queued from the pass but not reached goes first next tick
+            if (done < queued) cursor = done >= fromNear ? queue[done] : restart;
+
+            // Commit, in slot order, just the slots that were decided; the rest are skipped 64
+            // at a time
+            if (bossSlot >= 0) decided[bossSlot >> 6] |= 1L << bossSlot;
+            for (int w = 0, words = (n + 63) >> 6; w < words; w++) {
+                for (long bits = decided[w]; bits != 0; bits &= bits - 1) {
+                    commit(maze, (w << 6) + Long.numberOfTrailingZeros(bits), px, py);
+                }
+                decided[w] = 0;
+            }
+
+            // move boss (if alive), after the monsters
+            int slot = bossSlot;
+            if (slot >= 0 && picks[slot] >= 0) {
+                int x = actors.getX(slot), y = actors.getY(slot), dir = picks[slot];
+                int newX = x + MazeGrid.DIR_ROW[dir];
+                int newY = y + MazeGrid.DIR_COL[dir];
+                if (maze.isFree(newX, newY)) {
+                    game.markAreaDirty(x, y, 1); // aura spills into neighbours
+                    maze.moveOccupant(x, y, newX, newY);
+                    index.move(x, y, newX, newY);
+                    actors.setPosition(slot, newX, newY, dir);
+                    if (journal != null) journal.monsterMoved(slot, dir);
+                    game.markAreaDirty(newX, newY, 1);
+                    if (bossPath != null && bossStep < bossPath.length && bossPath[bossStep] == maze.index(newX, newY)) bossStep++;
+                }
+            }
+            if (journal != null) journal.endMonsters();
+
+        } catch (Exception e) {
+            game.getStoryManager().appendToLog("Error moving monsters: " + e.getMessage() + "\n");
+        } finally {
+            lastTickNanos = System.nanoTime() - start;
+            scheduler.endTick(backlog);
+        }
+    }
+
+    private void commit(MazeGrid maze, int slot, int px, int py) {
+        if (stateChanged[slot]) {
+            stateChanged[slot] = false;
+            if (journal != null) journal.monsterState(slot, actors.getState(slot));
+        }
+        int dir = intents[slot];
+        if (dir == CAUGHT) caughtPlayer = true;
+        if (dir < 0 || actors.getType(slot) != EntityStore.MONSTER) return;
+        int x = actors.getX(slot), y = actors.getY(slot);
+        int newX = x + MazeGrid.DIR_ROW[dir];
+        int newY = y + MazeGrid.DIR_COL[dir];
+        if (!maze.isFree(newX, newY)) return; // taken by an earlier slot this tick
+        game.markCellDirty(x, y);
+        maze.moveOccupant(x, y, newX, newY);
+        index.move(x, y, newX, newY);
+        actors.setPosition(slot, newX, newY, dir);
+        if (journal != null) journal.monsterMoved(slot, dir);
+        game.markCellDirty(newX, newY);
+        if (!near[actors.getId(slot)] && distance(slot, px, py) <= HUNT_RADIUS) addNear(actors.getId(slot));
+    }
+
+    // Queues the monsters near the player, most urgent first: in sight of the player, then
+    // in hunting range. Those gone or out of range leave the list. Returns how many.
+    private int queueNear(int bossSlot, int px, int py) {
+        int inSight = 0, kept = 0;
+        for (int k = 0; k < nearCount; k++) {
+            int id = nearIds[k], slot = actors.slotOf(id);
+            int d = slot < 0 || slot == bossSlot ? Integer.MAX_VALUE : distance(slot, px, py);
+            if (d > HUNT_RADIUS) {
+                near[id] = false;
+                continue;
+            }
+            nearIds[kept++] = id;
+            if (d <= SIGHT_RADIUS) inSight++;
+        }
+        nearCount = kept;
+        int a = 0, b = inSight;
+        for (int k = 0; k < nearCount; k++) {
+            int slot = actors.slotOf(nearIds[k]);
+            if (distance(slot, px, py) <= SIGHT_RADIUS) order[a++] = slot;
+            else order[b++] = slot;
+        }
+        return nearCount;
+    }
+
+    private void addNear(int id) {
+        if (nearCount == nearIds.length) nearIds = Arrays.copyOf(nearIds, nearCount * 2);
+        nearIds[nearCount++] = id;
+        near[id] = true;
+    }
+
+    private int distance(int slot, int px, int py) {
+        return Math.max(Math.abs(actors.getX(slot) - px), Math.abs(actors.getY(slot) - py));
+    }
+
+    // A direction to move in, STAY or CAUGHT; reads the maze and field, and writes only the
+    // monster's own state and view. The boss's pick is made separately, and only checked
+    // against the tick's final state.
+    private int intent(MazeGrid maze, int slot, int px, int py) {
+        int dir = hunting && aggro(maze, slot, px, py) ? chaseDirection(maze, slot, px, py) : WANDER;
+        if (dir != WANDER) return dir;
+        dir = randomDirection(actors.getId(slot));
+        int x = actors.getX(slot), y = actors.getY(slot);
+        return maze.isFree(x + MazeGrid.DIR_ROW[dir], y + MazeGrid.DIR_COL[dir]) ? dir : STAY;
+    }
+
+    // The Warden wanders until, in hunt mode, it sees the player; from then on it follows a
+    // hierarchical path to them from anywhere on the level. A search that outlasts its share
+    // of the budget is resumed on the next tick, the Warden keeping to its old path meanwhile.
+    private int bossIntent(MazeGrid maze, int slot, int px, int py) {
+        if (!hunting || !pathfinder.isBuilt() || !aggro(maze, slot, px, py)) return randomDirection(bossId);
+        int x = actors.getX(slot), y = actors.getY(slot), target = maze.index(px, py);
+        boolean following = bossPath != null && bossStep < bossPath.length;
+        boolean stale = !following || bossPath[bossPath.length - 1] != target;
+        // Straight away at the end of a path, otherwise every BOSS_REPLAN ticks at most
+        if (!bossPlanning && stale && (tick - bossPlanned >= BOSS_REPLAN || bossPath != null && !following)) {
+            bossSerial = pathfinder.startSearch(x, y, px, py);
+            bossPlanning = true;
+            bossPlanned = tick;
+        }
+        if (bossPlanning && scheduler.run(bossPlanner, BOSS_SHARE)) {
+            bossPlanning = false;
+            adoptBossPath(maze.index(x, y));
+        }
+        if (bossPath == null || bossStep >= bossPath.length) return bossPlanning ? STAY : randomDirection(bossId);
+        int next = bossPath[bossStep];
+        for (int dir = 0; dir < 4; dir++) {
+            if (maze.index(x + MazeGrid.DIR_ROW[dir], y + MazeGrid.DIR_COL[dir]) != next) continue;
+            return next == target ? CAUGHT : dir;
+        }
+        bossPath = null; // knocked off its path (a rewind); plan again shortly
+        return STAY;
+    }
+
+    // The Warden's search, one slice; finished also when something else cancelled it
+    private boolean planBoss(long deadlineNanos) {
+        return pathfinder.getSearchSerial() != bossSerial || pathfinder.resume(deadlineNanos) != HierarchicalPathfinder.PENDING;
+    }
+
+    // A finished plan starts from where the Warden stood when it began; pick it up from
+    // where the Warden is now
+    private void adoptBossPath(int here) {
+        bossPath = pathfinder.getSearchSerial() == bossSerial ? pathfinder.getPath() : null;
+        bossStep = 0;
+        lastBossPathMicros = pathfinder.getLastQueryMicros();
+        for (int k = 0; bossPath != null && k < bossPath.length; k++) {
+            if (bossPath[k] == here) bossStep = k + 1;
+        }
+    }
+
+    // A hunter turns on the player once it sees them, and keeps after them until they are
+    // out of the field's range
+    private boolean aggro(MazeGrid maze, int slot, int px, int py) {
+        if (actors.getState(slot) == EntityStore.STATE_AGGRO) return true;
+        int x = actors.getX(slot), y = actors.getY(slot);
+        if (!canSee(maze, actors.getId(slot), x, y, px, py)) return false;
+        actors.setState(slot, EntityStore.STATE_AGGRO);
+        stateChanged[slot] = true;
+        return true;
+    }
+
+    // Line of sight from the monster with this id at (x, y) to (r, c), within SIGHT_RADIUS
+    private boolean canSee(MazeGrid maze, int id, int x, int y, int r, int c) {
+        if (Math.abs(r - x) > SIGHT_RADIUS || Math.abs(c - y) > SIGHT_RADIUS) return false;
+        FieldOfView view = sight[id];
+        if (view == null) view = sight[id] = new FieldOfView(SIGHT_RADIUS);
+        view.update(maze, x, y);
+        return view.isVisible(r, c);
+    }
+
+    // A free neighbour one step closer to the player, tried from the monster's facing round;
+    // STAY when downhill is blocked, CAUGHT when the player is next downhill, WANDER when
+    // out of range
+    private int chaseDirection(MazeGrid maze, int slot, int px, int py) {
+        int x = actors.getX(slot), y = actors.getY(slot);
+        int d = field.distance(x, y);
+        if (d <= 0) {
+            actors.setState(slot, EntityStore.STATE_IDLE);
+            stateChanged[slot] = true;
+            return WANDER;
+        }
+        for (int k = 0; k < 4; k++) {
+            int dir = (actors.getFacing(slot) + k) & 3;
+            int nx = x + MazeGrid.DIR_ROW[dir], ny = y + MazeGrid.DIR_COL[dir];
+            if (field.distance(nx, ny) != d - 1) continue;
+            if (nx == px && ny == py) return CAUGHT;
+            if (maze.isFree(nx, ny)) return dir;
+        }
+        return STAY;
+    }
+
+    // SplitMix64 of (seed, id, tick): an independent stream per entity
+    private int randomDirection(int id) {
+        long z = seed + (id + 1) * 0x9E3779B97F4A7C15L + tick * 0xD1B54A32D192ED03L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return (int) ((z ^ (z >>> 31)) >>> 62);
+    }
+
+    public boolean isMonsterAt(int x, int y) {
+        MazeGrid maze = game.getMaze();
+        if (maze == null || !maze.inBounds(x, y)) return false;
+        int occupant = maze.getOccupant(x, y);
+        return occupant == MazeGrid.MONSTER || occupant == MazeGrid.BOSS;
+    }
+
+    // Monsters on the four cells around (x, y)
+    public int countAdjacentMonsters(int x, int y) {
+        int n = 0;
+        for (int dir = 0; dir < 4; dir++) {
+            if (isMonsterAt(x + MazeGrid.DIR_ROW[dir], y + MazeGrid.DIR_COL[dir])) n++;
+        }
+        return n;
+    }
+
+    // Any monster or the boss within radius cells (Chebyshev distance) of (x, y)
+    public boolean isMonsterNear(int x, int y, int radius) {
+        return countMonstersNear(x, y, radius, 1) > 0;
+    }
+
+    public int countMonstersNear(int x, int y, int radius, int limit) {
+        MazeGrid maze = game.getMaze();
+        return maze == null ? 0 : index.countWithin(maze, x, y, radius, limit);
+    }
+
+    public boolean isPlayerAt(int x, int y) {
+        return x == game.getPlayerX() && y == game.getPlayerY();
+    }
+
+    public static boolean isTrapAt(MazeGrid maze, int x, int y) {
+        return maze.inBounds(x, y) && maze.getTerrain(x, y) == 'X';
+    }
+
+    // {x, y, facing}, or null when the boss is dead or not loaded
+    public int[] getBossPosition() {
+        int slot = actors.slotOf(bossId);
+        return slot < 0 ? null : new int[]{actors.getX(slot), actors.getY(slot), actors.getFacing(slot)};
+    }
+
+    public void killBoss() {
+        int slot = actors.slotOf(bossId);
+        if (slot < 0) return;
+        int x = actors.getX(slot), y = actors.getY(slot);
+        if (journal != null) journal.bossKilled(bossId);
+        index.remove(x, y);
+        actors.remove(bossId);
+        bossId = -1;
+        MazeGrid maze = game.getMaze();
+        if (maze != null) maze.setOccupant(x, y, MazeGrid.NONE);
+    }
+
+    // A checkpoint rewind put back the actors it lists (the grid already has them): move just
+    // those in the index. The Warden's plan is dropped, since the terrain may have changed.
+    public void actorsRewound(CheckpointStore checkpoints) {
+        bossPath = null;
+        bossPlanning = false;
+        for (int k = 0; k < checkpoints.getRestoredActorCount(); k++) {
+            int id = checkpoints.getRestoredId(k), slot = actors.slotOf(id);
+            if (checkpoints.getRestoredFromX(k) >= 0) index.remove(checkpoints.getRestoredFromX(k), checkpoints.getRestoredFromY(k));
+            if (id == bossId && (slot < 0 || actors.getType(slot) != EntityStore.BOSS)) bossId = -1;
+            if (slot < 0) continue;
+            index.add(actors.getX(slot), actors.getY(slot));
+            if (actors.getType(slot) == EntityStore.BOSS) bossId = id;
+        }
+    }
+
+    // A loaded save rewrote the store (the grid's occupants were cleared): put the actors
+    // back on the grid and re-index them
+    public void actorsRestored() {
+        index.clear();
+        bossId = -1;
+        bossPath = null;
+        bossPlanning = false;
+        MazeGrid maze = game.getMaze();
+        for (int slot = 0; slot < actors.size(); slot++) {
+            int x = actors.getX(slot), y = actors.getY(slot), kind = actors.getType(slot);
+            if (kind == EntityStore.BOSS) bossId = actors.getId(slot);
+            if (maze != null) maze.setOccupant(x, y, kind);
+            index.add(x, y);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.util.Arrays;
+
+// Hostile actor counts per 8x8 block of cells, in a spatial hash so it costs memory per
+// occupied block rather than per cell; a streamed world of millions of cells with a few
+// hundred monsters resident needs only a few hundred entries. The maze's own occupant
+// layer answers "which actor is on this cell"; this answers "is any actor near here"
+// without looking at the empty blocks in between.
+//
+// MonsterManager keeps it in step with every spawn, move and removal.
+public class OccupancyIndex {
+    public static final int BLOCK_SHIFT = 3;
+
+    private long[] keys = new long[64];
+    private int[] counts = new int[64]; // 0 marks an empty slot
+    private int mask = 63;
+    private int size = 0;
+
+    public int getBlocksInUse() { return size; }
+
+    public void clear() {
+        Arrays.fill(counts, 0);
+        size = 0;
+    }
+
+    public void add(int r, int c) {
+        long key = key(r >> BLOCK_SHIFT, c >> BLOCK_SHIFT);
+        int i = find(key);
+        if (counts[i] == 0) {
+            keys[i] = key;
+            size++;
+        }
+        counts[i]++;
+        if (size * 2 > keys.length) grow();
+    }
+
+    public void remove(int r, int c) {
+        int i = find(key(r >> BLOCK_SHIFT, c >> BLOCK_SHIFT));
+        if (counts[i] == 0) return;
+        if (--counts[i] == 0) delete(i);
+    }
+
+    public void move(int fromR, int fromC, int toR, int toC) {
+        if (fromR >> BLOCK_SHIFT == toR >> BLOCK_SHIFT && fromC >> BLOCK_SHIFT == toC >> BLOCK_SHIFT) return;
+        remove(fromR, fromC);
+        add(toR, toC);
+    }
+
+    // Actors in the (2 * radius + 1)^2 square around (r, c), up to limit; blocks with no
+    // actors are skipped on one hash probe, so the cost follows the actors, not the area
+    public int countWithin(MazeGrid maze, int r, int c, int radius, int limit) {
+        int r0 = Math.max(0, r - radius), r1 = Math.min(maze.getRows() - 1, r + radius);
+        int c0 = Math.max(0, c - radius), c1 = Math.min(maze.getCols() - 1, c + radius);
+        int found = 0;
+        for (int br = r0 >> BLOCK_SHIFT; br <= r1 >> BLOCK_SHIFT; br++) {
+            for (int bc = c0 >> BLOCK_SHIFT; bc <= c1 >> BLOCK_SHIFT; bc++) {
+                if (counts[find(key(br, bc))] == 0) continue;
+                int rs = Math.max(r0, br << BLOCK_SHIFT), re = Math.min(r1, ((br + 1) << BLOCK_SHIFT) - 1);
+                int cs = Math.max(c0, bc << BLOCK_SHIFT), ce = Math.min(c1, ((bc + 1) << BLOCK_SHIFT) - 1);
+                for (int y = rs; y <= re; y++) {
+                    for (int x = cs; x <= ce; x++) {
+                        int occupant = maze.getOccupant(y, x);
+                        if ((occupant == MazeGrid.MONSTER || occupant == MazeGrid.BOSS) && ++found >= limit) return found;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    private static long key(int blockRow, int blockCol) {
+        return (long) blockRow << 32 | (blockCol & 0xFFFFFFFFL);
+    }
+
+    private int home(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+    }
+
+    // The key's slot, or the empty slot where it would go
+    private int find(long key) {
+        int i = home(key);
+        while (counts[i] != 0 && keys[i] != key) i = (i + 1) & mask;
+        return i;
+    }
+
+    // Linear probing delete: pull later entries of the same run back over the hole
+    private void delete(int hole) {
+        size--;
+        for (int i = (hole + 1) & mask; counts[i] != 0; i = (i + 1) & mask) {
+            if (((i - home(keys[i])) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = keys[i];
+                counts[hole] = counts[i];
+                counts[i] = 0;
+                hole = i;
+            }
+        }
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new long[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        mask = keys.length - 1;
+        for (int k = 0; k < oldKeys.length; k++) {
+            if (oldCounts[k] == 0) continue;
+            int i = find(oldKeys[k]);
+            keys[i] = oldKeys[k];
+            counts[i] = oldCounts[k];
+        }
+    }
+}
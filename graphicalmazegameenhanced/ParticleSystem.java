@@ -0,0 +1,208 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.awt.Rectangle;
+import java.util.Random;
+
+// Pooled particles for the objective glow, exit pulse and boss death. State lives in
+// preallocated parallel arrays (live particles packed in [0, live)), is advanced in one
+// batch per simulation tick and drawn in one pass. At the hard cap the oldest slots are
+// recycled, so emitting never allocates. Drawing writes pixels into a caller-owned layer
+// instead of issuing one translucent fill per particle.
+public class ParticleSystem {
+    public static final int GLOW = 0, PULSE = 1, BURST = 2;
+    private static final int ALPHA_STEPS = 8;
+    private static final int[][] PREMULTIPLIED = new int[3][ALPHA_STEPS]; // [kind][life bucket], ARGB
+    static {
+        int[][] rgb = {{255, 255, 0}, {255, 215, 0}, {200, 0, 200}};
+        for (int k = 0; k < rgb.length; k++) {
+            for (int b = 0; b < ALPHA_STEPS; b++) {
+                int a = 40 + b * 215 / (ALPHA_STEPS - 1);
+                PREMULTIPLIED[k][b] = a << 24 | (rgb[k][0] * a / 255) << 16 | (rgb[k][1] * a / 255) << 8 | rgb[k][2] * a / 255;
+            }
+        }
+    }
+
+    private final int capacity;
+    private final float[] x, y, vx, vy, life, maxLife;
+    private final byte[] kind;
+    private int live = 0;
+    private int peak = 0;
+    private int recycleCursor = 0;
+    private final Random random;
+
+    // World-pixel bounds of the live particles after the last update
+    private int minX, minY, maxX, maxY;
+    private boolean hasBounds = false;
+
+    public ParticleSystem(int capacity, long seed) {
+        this.capacity = capacity;
+        x = new float[capacity];
+        y = new float[capacity];
+        vx = new float[capacity];
+        vy = new float[capacity];
+        life = new float[capacity];
+        maxLife = new float[capacity];
+        kind = new byte[capacity];
+        random = new Random(seed);
+    }
+
+    public int getLiveCount() { return live; }
+    public int getPeakCount() { return peak; }
+    public int getCapacity() { return capacity; }
+
+    // Drop every particle (level change, checkpoint restore)
+    public void clear() {
+        live = 0;
+        recycleCursor = 0;
+        hasBounds = false;
+    }
+
+    // What rasterize and getBounds need, into dst (same capacity): a render snapshot's copy.
+    // Velocities and the random stream stay behind, so dst can't be simulated.
+    public void copyTo(ParticleSystem dst) {
+        System.arraycopy(x, 0, dst.x, 0, live);
+        System.arraycopy(y, 0, dst.y, 0, live);
+        System.arraycopy(life, 0, dst.life, 0, live);
+        System.arraycopy(maxLife, 0, dst.maxLife, 0, live);
+        System.arraycopy(kind, 0, dst.kind, 0, live);
+        dst.live = live;
+        dst.peak = peak;
+        dst.hasBounds = hasBounds;
+        dst.minX = minX;
+        dst.minY = minY;
+        dst.maxX = maxX;
+        dst.maxY = maxY;
+    }
+
+    // Drop every particle and restart the random stream (golden images)
+    public void reset(long seed) {
+        clear();
+        random.setSeed(seed);
+    }
+
+    private void spawn(float px, float py, float pvx, float pvy, float seconds, int k) {
+        int slot;
+        if (live < capacity) {
+            slot = live++;
+            if (live > peak) peak = live;
+        } else {
+            slot = recycleCursor;
+            recycleCursor = (recycleCursor + 1) % capacity;
+        }
+        x[slot] = px;
+        y[slot] = py;
+        vx[slot] = pvx;
+        vy[slot] = pvy;
+        life[slot] = seconds;
+        maxLife[slot] = seconds;
+        kind[slot] = (byte) k;
+    }
+
+    // Sparks drifting out of the objective, centred on (cx, cy) in world pixels
+    public void emitGlow(float cx, float cy, int count) {
+        for (int i = 0; i < count; i++) {
+            double angle = random.nextDouble() * Math.PI * 2;
+            float speed = 8 + random.nextFloat() * 14;
+            spawn(cx + random.nextFloat() * 20 - 10, cy + random.nextFloat() * 20 - 10,
+                    (float) Math.cos(angle) * speed, (float) Math.sin(angle) * speed,
+                    0.6f + random.nextFloat() * 0.6f, GLOW);
+        }
+    }
+
+    // Slow motes rising from the exit door
+    public void emitPulse(float cx, float cy, int count) {
+        for (int i = 0; i < count; i++) {
+            spawn(cx + random.nextFloat() * 24 - 12, cy + random.nextFloat() * 10,
+                    random.nextFloat() * 6 - 3, -10 - random.nextFloat() * 10,
+                    0.8f + random.nextFloat() * 0.5f, PULSE);
+        }
+    }
+
+    // Radial burst when the Warden falls
+    public void emitBurst(float cx, float cy, int count) {
+        for (int i = 0; i < count; i++) {
+            double angle = random.nextDouble() * Math.PI * 2;
+            float speed = 30 + random.nextFloat() * 90;
+            spawn(cx, cy, (float) Math.cos(angle) * speed, (float) Math.sin(angle) * speed,
+                    0.5f + random.nextFloat() * 1.0f, BURST);
+        }
+    }
+
+    // Advance every particle by dt seconds; dead ones are swap-removed
+    public void update(float dt) {
+        float drag = 1f - 1.5f * dt;
+        int bx0 = Integer.MAX_VALUE, by0 = Integer.MAX_VALUE, bx1 = Integer.MIN_VALUE, by1 = Integer.MIN_VALUE;
+        int i = 0;
+        while (i < live) {
+            float l = life[i] - dt;
+            if (l <= 0) {
+                int last = --live;
+                x[i] = x[last]; y[i] = y[last];
+                vx[i] = vx[last]; vy[i] = vy[last];
+                life[i] = life[last]; maxLife[i] = maxLife[last];
+                kind[i] = kind[last];
+                continue;
+            }
+            life[i] = l;
+            vx[i] *= drag;
+            vy[i] *= drag;
+            x[i] += vx[i] * dt;
+            y[i] += vy[i] * dt;
+            int px = (int) x[i], py = (int) y[i];
+            if (px < bx0) bx0 = px;
+            if (py < by0) by0 = py;
+            if (px > bx1) bx1 = px;
+            if (py > by1) by1 = py;
+            i++;
+        }
+        if (recycleCursor >= live) recycleCursor = 0;
+        hasBounds = live > 0;
+        if (hasBounds) {
+            minX = bx0 - 2; minY = by0 - 2; maxX = bx1 + 3; maxY = by1 + 3;
+        }
+    }
+
+    // Union of the current bounds into r (world pixels); false when nothing is alive
+    public boolean getBounds(Rectangle r) {
+        if (!hasBounds) return false;
+        r.setBounds(minX, minY, maxX - minX, maxY - minY);
+        return true;
+    }
+
+    // One pass over the live range: each particle is blended as a 3x3 square straight into
+    // a premultiplied ARGB pixel array covering world pixels [originX, originX + width) x
+    // [originY, originY + height). The touched area is stored in painted (array coordinates);
+    // returns false when nothing landed inside.
+    public boolean rasterize(int[] pixels, int width, int height, int originX, int originY, Rectangle painted) {
+        int px0 = Integer.MAX_VALUE, py0 = Integer.MAX_VALUE, px1 = Integer.MIN_VALUE, py1 = Integer.MIN_VALUE;
+        for (int i = 0; i < live; i++) {
+            int cx = (int) x[i] - originX, cy = (int) y[i] - originY;
+            int x0 = Math.max(0, cx - 1), y0 = Math.max(0, cy - 1);
+            int x1 = Math.min(width - 1, cx + 1), y1 = Math.min(height - 1, cy + 1);
+            if (x0 > x1 || y0 > y1) continue;
+            int src = PREMULTIPLIED[kind[i]][(int) (life[i] / maxLife[i] * (ALPHA_STEPS - 0.01f))];
+            int inv = 255 - (src >>> 24);
+            for (int py = y0; py <= y1; py++) {
+                int row = py * width;
+                for (int px = x0; px <= x1; px++) {
+                    int dst = pixels[row + px];
+                    pixels[row + px] = dst == 0 ? src : src + scale(dst, inv);
+                }
+            }
+            if (x0 < px0) px0 = x0;
+            if (y0 < py0) py0 = y0;
+            if (x1 > px1) px1 = x1;
+            if (y1 > py1) py1 = y1;
+        }
+        if (px0 > px1) return false;
+        painted.setBounds(px0, py0, px1 - px0 + 1, py1 - py0 + 1);
+        return true;
+    }
+
+    // Premultiplied ARGB times inv/255, per channel ("over" for the destination)
+    private static int scale(int argb, int inv) {
+        int rb = ((argb & 0x00FF00FF) * inv >>> 8) & 0x00FF00FF;
+        int ag = (((argb >>> 8) & 0x00FF00FF) * inv) & 0xFF00FF00;
+        return ag | rb;
+    }
+}
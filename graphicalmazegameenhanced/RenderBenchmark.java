@@ -0,0 +1,304 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+// Headless render benchmark: drives GamePanel into a BufferedImage for every level and
+// scenario without opening a window.
+//
+//   java -Djava.awt.headless=true ...RenderBenchmark [--frames N] [--warmup N]
+//        [--golden FILE] [--update-golden] [--max-alloc BYTES] [--snapshots] [--fog]
+//
+// Every frame also runs one simulation tick of particles; "particles-10k" keeps the pool
+// saturated with 10,000 live particles.
+//
+// --golden compares a CRC of one deterministic frame per scenario against FILE (or writes
+// it with --update-golden), so render optimizations can be checked for identical pixels.
+// --max-alloc fails the run if a steady-state frame allocates more than BYTES on average;
+// every scenario is first warmed up for at least 1,000 frames, since Java2D allocates until
+// the JIT has compiled (and settled) its drawing paths. Frames are meant not to allocate at all, so the
+// regression check is
+//
+//   java ...RenderBenchmark --max-alloc 0            (and again with --snapshots, --fog)
+//
+// --snapshots draws every frame from a RenderSnapshot, as the render thread does; the
+// golden checksums must come out the same. --fog turns on fog of war, which changes the
+// pixels, so it needs golden checksums of its own.
+public class RenderBenchmark {
+
+    private static final int WIDTH = GraphicalMazeGameEnhanced.VIEW_COLS * GraphicalMazeGameEnhanced.CELL_SIZE;
+    private static final int HEIGHT = GraphicalMazeGameEnhanced.VIEW_ROWS * GraphicalMazeGameEnhanced.CELL_SIZE;
+    private static final String[] SCENARIOS = {"idle-glow", "near-objective", "paused", "particles-10k"};
+
+    // Minimal stand-in for the game: a level, a player position and the glow animation
+    static class Scene implements RenderState {
+        private final int level;
+        private final MazeGrid maze;
+        private int playerX = 1, playerY = 1;
+        private boolean paused = false;
+        private float glowAlpha = 0.5f;
+        private boolean glowIncreasing = true;
+        private final ParticleSystem particles = new ParticleSystem(16384, 42L);
+        private int[] objective, exit;
+        private int storm = 0; // live particles to hold the pool at
+        private long ticks = 0;
+
+        Scene(int level) {
+            this.level = level;
+            this.maze = MazeData.getLevelGrid(level);
+            this.objective = find('A', 'S', 'C');
+            this.exit = find('E');
+        }
+
+        // Same emitters as the game, one simulation tick
+        void stepParticles() {
+            ticks++;
+            float cs = GraphicalMazeGameEnhanced.CELL_SIZE;
+            if (objective != null && Math.abs(playerX - objective[0]) <= 2 && Math.abs(playerY - objective[1]) <= 2) {
+                particles.emitGlow(objective[1] * cs + cs / 2, objective[0] * cs + cs / 2, 2);
+            }
+            if (exit != null && ticks % 4 == 0) particles.emitPulse(exit[1] * cs + cs / 2, exit[0] * cs + cs / 2, 1);
+            if (storm > particles.getLiveCount()) {
+                particles.emitBurst(playerY * cs + cs / 2, playerX * cs + cs / 2, storm - particles.getLiveCount());
+            }
+            particles.update(GameLoop.TICK_MS / 1000f);
+        }
+
+        void resetParticles() {
+            particles.reset(42L);
+            ticks = 0;
+            for (int t = 0; t < 30; t++) stepParticles();
+        }
+
+        // Same step as the game's glow tick
+        void stepGlow() {
+            if (glowIncreasing) {
+                glowAlpha += 0.07f;
+                if (glowAlpha >= 0.9f) glowIncreasing = false;
+            } else {
+                glowAlpha -= 0.07f;
+                if (glowAlpha <= 0.3f) glowIncreasing = true;
+            }
+        }
+
+        void resetGlow() {
+            glowAlpha = 0.5f;
+            glowIncreasing = true;
+        }
+
+        // Park the player on the closest floor cell next to the objective (the exit on level 4)
+        void movePlayerNearObjective() {
+            int[] target = find('A', 'S', 'C');
+            if (target == null) target = find('E');
+            if (target == null) return;
+            int tx = target[0], ty = target[1];
+            int best = Integer.MAX_VALUE, bx = playerX, by = playerY;
+            for (int i = Math.max(0, tx - 2); i <= Math.min(maze.getRows() - 1, tx + 2); i++) {
+                for (int j = Math.max(0, ty - 2); j <= Math.min(maze.getCols() - 1, ty + 2); j++) {
+                    int d = Math.abs(i - tx) + Math.abs(j - ty);
+                    if (maze.getTerrain(i, j) == '.' && !maze.isOccupied(i, j) && d < best) {
+                        best = d;
+                        bx = i;
+                        by = j;
+                    }
+                }
+            }
+            maze.moveOccupant(playerX, playerY, bx, by);
+            playerX = bx;
+            playerY = by;
+        }
+
+        private int[] find(char... cells) {
+            for (int i = 0; i < maze.getRows(); i++) {
+                for (int j = 0; j < maze.getCols(); j++) {
+                    for (char c : cells) if (maze.getTerrain(i, j) == c) return new int[]{i, j};
+                }
+            }
+            return null;
+        }
+
+        public MazeGrid getMaze() { return maze; }
+        public int getCurrentLevel() { return level; }
+        public int getPlayerX() { return playerX; }
+        public int getPlayerY() { return playerY; }
+        public int getPlayerFacing() { return 2; }
+        public boolean hasObjectiveItem() { return false; }
+        public float getGlowAlpha() { return glowAlpha; }
+        public boolean isPaused() { return paused; }
+        public int getCellSize() { return GraphicalMazeGameEnhanced.CELL_SIZE; }
+        public ParticleSystem getParticles() { return particles; }
+        public long getAiTickMicros() { return 0; }
+        public int getAiBacklog() { return 0; }
+        public String getWorldStats() { return ""; }
+        public String getSaveStats() { return ""; }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (System.getProperty("java.awt.headless") == null) System.setProperty("java.awt.headless", "true");
+        int frames = 500;
+        int warmup = 200;
+        Path golden = null;
+        boolean updateGolden = false;
+        long maxAlloc = -1;
+        boolean snapshots = false;
+        boolean fog = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--frames" -> frames = Integer.parseInt(args[++i]);
+                case "--warmup" -> warmup = Integer.parseInt(args[++i]);
+                case "--golden" -> golden = Paths.get(args[++i]);
+                case "--update-golden" -> updateGolden = true;
+                case "--max-alloc" -> maxAlloc = Long.parseLong(args[++i]);
+                case "--snapshots" -> snapshots = true;
+                case "--fog" -> fog = true;
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+                }
+            }
+        }
+
+        if (maxAlloc >= 0) {
+            for (int level = 1; level <= 4; level++) {
+                for (String scenario : SCENARIOS) run(level, scenario, 0, Math.max(warmup, 1000), snapshots, fog);
+            }
+        }
+
+        Map<String, Long> checksums = new LinkedHashMap<>();
+        boolean failed = false;
+        System.out.printf("%-7s %-15s %9s %9s %9s %9s %10s %10s%n",
+                "level", "scenario", "p50 ms", "p95 ms", "p99 ms", "fps", "Mpx/s", "B/frame");
+        for (int level = 1; level <= 4; level++) {
+            for (String scenario : SCENARIOS) {
+                Result r = run(level, scenario, frames, warmup, snapshots, fog);
+                checksums.put(level + " " + scenario, r.checksum);
+                System.out.printf("%-7d %-15s %9.3f %9.3f %9.3f %9.0f %10.1f %10d%n",
+                        level, scenario, r.p50 / 1e6, r.p95 / 1e6, r.p99 / 1e6,
+                        r.fps, r.pixelsPerSecond / 1e6, r.allocPerFrame);
+                if (maxAlloc >= 0 && r.allocPerFrame > maxAlloc) {
+                    System.err.println("FAIL: level " + level + " " + scenario + " allocates "
+                            + r.allocPerFrame + " B/frame (limit " + maxAlloc + ")");
+                    failed = true;
+                }
+            }
+        }
+        if (maxAlloc >= 0 && !AllocationMeter.isSupported()) {
+            System.err.println("FAIL: --max-alloc needs thread allocation counters, unsupported on this JVM");
+            failed = true;
+        }
+
+        if (golden != null) {
+            if (updateGolden || !Files.exists(golden)) {
+                List<String> lines = new ArrayList<>();
+                for (Map.Entry<String, Long> e : checksums.entrySet()) lines.add(e.getKey() + " " + Long.toHexString(e.getValue()));
+                Files.write(golden, lines, StandardCharsets.UTF_8);
+                System.out.println("Golden checksums written to " + golden);
+            } else {
+                for (String line : Files.readAllLines(golden, StandardCharsets.UTF_8)) {
+                    String[] parts = line.trim().split(" ");
+                    if (parts.length != 3) continue;
+                    String key = parts[0] + " " + parts[1];
+                    Long actual = checksums.get(key);
+                    if (actual == null || actual != Long.parseLong(parts[2], 16)) {
+                        System.err.println("FAIL: pixels differ for level " + key
+                                + " (expected " + parts[2] + ", got " + (actual == null ? "-" : Long.toHexString(actual)) + ")");
+                        failed = true;
+                    }
+                }
+                if (!failed) System.out.println("Golden checksums match " + golden);
+            }
+        }
+        System.exit(failed ? 1 : 0);
+    }
+
+    private static class Result {
+        long p50, p95, p99;
+        double fps;
+        double pixelsPerSecond;
+        long allocPerFrame;
+        long checksum;
+    }
+
+    private static Result run(int level, String scenario, int frames, int warmup, boolean snapshots, boolean fog) {
+        Scene scene = new Scene(level);
+        if (scenario.equals("near-objective")) scene.movePlayerNearObjective();
+        if (scenario.equals("paused")) scene.paused = true;
+        if (scenario.equals("particles-10k")) {
+            scene.movePlayerNearObjective();
+            scene.storm = 10_000;
+        }
+
+        GamePanel panel = new GamePanel(scene, new StoryManager());
+        panel.setSize(WIDTH, HEIGHT);
+        panel.setFogOfWar(fog);
+        RenderSnapshot snapshot = snapshots ? new RenderSnapshot(scene.getParticles().getCapacity()) : null;
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        long[] times = new long[frames];
+        long allocStart = 0;
+        try {
+            for (int f = 0; f < warmup + frames; f++) {
+                if (f == warmup) allocStart = AllocationMeter.currentThreadAllocatedBytes();
+                if (!scene.paused) {
+                    scene.stepGlow();
+                    scene.stepParticles();
+                }
+                if (snapshot != null) publish(scene, panel, snapshot);
+                long t0 = System.nanoTime();
+                panel.renderTo(g);
+                long t1 = System.nanoTime();
+                if (f >= warmup) times[f - warmup] = t1 - t0;
+            }
+            long allocEnd = AllocationMeter.currentThreadAllocatedBytes();
+
+            Result r = new Result();
+            r.allocPerFrame = allocStart < 0 || frames == 0 ? 0 : (allocEnd - allocStart) / frames;
+
+            // One deterministic frame for the golden checksum
+            scene.resetGlow();
+            scene.resetParticles();
+            if (snapshot != null) publish(scene, panel, snapshot);
+            panel.renderTo(g);
+            int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            CRC32 crc = new CRC32();
+            for (int p : pixels) {
+                crc.update(p >>> 16);
+                crc.update(p >>> 8);
+                crc.update(p);
+            }
+            r.checksum = crc.getValue();
+
+            if (frames > 0) {
+                long total = 0;
+                for (long t : times) total += t;
+                Arrays.sort(times);
+                r.p50 = times[(int) (frames * 0.50)];
+                r.p95 = times[Math.min(frames - 1, (int) (frames * 0.95))];
+                r.p99 = times[Math.min(frames - 1, (int) (frames * 0.99))];
+                r.fps = total == 0 ? 0 : frames * 1e9 / total;
+                r.pixelsPerSecond = r.fps * WIDTH * HEIGHT;
+            }
+            return r;
+        } finally {
+            g.dispose();
+        }
+    }
+
+    // What the game thread does each tick in render thread mode, minus the exchange
+    private static void publish(Scene scene, GamePanel panel, RenderSnapshot snapshot) {
+        snapshot.capture(scene, panel.getSnapshotRadius(), 0, scene.ticks, 0);
+        panel.applySnapshot(snapshot);
+    }
+}
@@ -0,0 +1,182 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+// One tick's worth of everything GamePanel draws, copied out of the game so a render thread
+// can draw it while the simulation moves on. The maze is only the window of cells around
+// the player that the camera and the tile cache margin can reach; the game publishes these
+// through a SnapshotExchange and never writes one the renderer can see.
+public class RenderSnapshot implements RenderState {
+
+    // The copied cells, answering in maze coordinates; cells outside read as wall
+    static class MazeWindow extends MazeGrid {
+        private MazeGrid cells = new MazeGrid(1, 1);
+        private int row0, col0;
+        private long moves = 0; // window shifts, which change the walls it shows as well
+
+        MazeWindow(int rows, int cols) {
+            super(rows, cols, true);
+        }
+
+        int getRow0() { return row0; }
+        int getCol0() { return col0; }
+        int getRow1() { return row0 + cells.getRows(); }
+        int getCol1() { return col0 + cells.getCols(); }
+
+        boolean covers(int r, int c) {
+            return r >= row0 && c >= col0 && r < getRow1() && c < getCol1();
+        }
+
+        void copyFrom(MazeGrid src, int r0, int c0, int r1, int c1) {
+            if (cells.getRows() != r1 - r0 || cells.getCols() != c1 - c0) {
+                moves += cells.getWallVersion() + 1; // the new grid's count starts again from 0
+                cells = new MazeGrid(r1 - r0, c1 - c0);
+            }
+            if (r0 != row0 || c0 != col0) moves++;
+            row0 = r0;
+            col0 = c0;
+            for (int r = r0; r < r1; r++) {
+                for (int c = c0; c < c1; c++) {
+                    cells.setTerrain(r - r0, c - c0, src.getTerrain(r, c));
+                    cells.setOccupant(r - r0, c - c0, src.getOccupant(r, c));
+                }
+            }
+        }
+
+        @Override
+        public char getTerrain(int r, int c) {
+            return covers(r, c) ? cells.getTerrain(r - row0, c - col0) : '#';
+        }
+
+        @Override
+        public int getOccupant(int r, int c) {
+            return covers(r, c) ? cells.getOccupant(r - row0, c - col0) : NONE;
+        }
+
+        // Both only ever grow, so the sum changes whenever either does
+        @Override
+        public long getWallVersion() {
+            return cells.getWallVersion() + moves;
+        }
+
+        @Override
+        public boolean isPassable(int r, int c) {
+            return covers(r, c) && cells.isPassable(r - row0, c - col0);
+        }
+
+        @Override
+        public boolean isPassableIndex(int i) {
+            return isPassable(i / getCols(), i % getCols());
+        }
+
+        @Override
+        public void setTerrain(int r, int c, char t) { throw new UnsupportedOperationException("A snapshot is read-only"); }
+
+        @Override
+        public void setOccupant(int r, int c, int kind) { throw new UnsupportedOperationException("A snapshot is read-only"); }
+
+        @Override
+        public int nextOccupied(int from) { throw new UnsupportedOperationException("A snapshot can't be searched"); }
+
+        @Override
+        public MazeGrid copy() { throw new UnsupportedOperationException("A snapshot can't be copied whole"); }
+
+        @Override
+        public void fill(char t) { throw new UnsupportedOperationException("A snapshot is read-only"); }
+
+        @Override
+        public void clearOccupants() { throw new UnsupportedOperationException("A snapshot is read-only"); }
+    }
+
+    private MazeWindow maze;
+    private int level, playerX, playerY, playerFacing, cellSize;
+    private boolean hasObjectiveItem, paused;
+    private float glowAlpha;
+    private long aiTickMicros;
+    private int aiBacklog;
+    private String worldStats = "", saveStats = "";
+    private final ParticleSystem particles;
+    private long staticEpoch;  // bumped by the game whenever the cached tiles must all go
+    private long glowTicks;    // bumped by the game on each glow animation step
+    private long inputNanos;   // receive time of the oldest key this snapshot answers, 0 if none
+
+    public RenderSnapshot(int particleCapacity) {
+        particles = new ParticleSystem(particleCapacity, 0L);
+    }
+
+    // Copy src, with the maze cut to the cells within radius of the player
+    public void capture(RenderState src, int radius, long staticEpoch, long glowTicks, long inputNanos) {
+        MazeGrid live = src.getMaze();
+        playerX = src.getPlayerX();
+        playerY = src.getPlayerY();
+        if (live == null) {
+            maze = null;
+        } else {
+            if (maze == null || maze.getRows() != live.getRows() || maze.getCols() != live.getCols()) {
+                maze = new MazeWindow(live.getRows(), live.getCols());
+            }
+            maze.copyFrom(live, Math.max(0, playerX - radius), Math.max(0, playerY - radius),
+                    Math.min(live.getRows(), playerX + radius + 1), Math.min(live.getCols(), playerY + radius + 1));
+        }
+        level = src.getCurrentLevel();
+        playerFacing = src.getPlayerFacing();
+        cellSize = src.getCellSize();
+        hasObjectiveItem = src.hasObjectiveItem();
+        paused = src.isPaused();
+        glowAlpha = src.getGlowAlpha();
+        aiTickMicros = src.getAiTickMicros();
+        aiBacklog = src.getAiBacklog();
+        worldStats = src.getWorldStats();
+        saveStats = src.getSaveStats();
+        src.getParticles().copyTo(particles);
+        this.staticEpoch = staticEpoch;
+        this.glowTicks = glowTicks;
+        this.inputNanos = inputNanos;
+    }
+
+    // Same contents in dst, which can then outlive this snapshot's turn in the exchange
+    public void copyTo(RenderSnapshot dst) {
+        if (maze == null) {
+            dst.maze = null;
+        } else {
+            if (dst.maze == null || dst.maze.getRows() != maze.getRows() || dst.maze.getCols() != maze.getCols()) {
+                dst.maze = new MazeWindow(maze.getRows(), maze.getCols());
+            }
+            dst.maze.copyFrom(maze, maze.getRow0(), maze.getCol0(), maze.getRow1(), maze.getCol1());
+        }
+        dst.level = level;
+        dst.playerX = playerX;
+        dst.playerY = playerY;
+        dst.playerFacing = playerFacing;
+        dst.cellSize = cellSize;
+        dst.hasObjectiveItem = hasObjectiveItem;
+        dst.paused = paused;
+        dst.glowAlpha = glowAlpha;
+        dst.aiTickMicros = aiTickMicros;
+        dst.aiBacklog = aiBacklog;
+        dst.worldStats = worldStats;
+        dst.saveStats = saveStats;
+        particles.copyTo(dst.particles);
+        dst.staticEpoch = staticEpoch;
+        dst.glowTicks = glowTicks;
+        dst.inputNanos = inputNanos;
+    }
+
+    MazeWindow getWindow() { return maze; }
+    public long getStaticEpoch() { return staticEpoch; }
+    public long getGlowTicks() { return glowTicks; }
+    public long getInputNanos() { return inputNanos; }
+
+    public MazeGrid getMaze() { return maze; }
+    public int getCurrentLevel() { return level; }
+    public int getPlayerX() { return playerX; }
+    public int getPlayerY() { return playerY; }
+    public int getPlayerFacing() { return playerFacing; }
+    public boolean hasObjectiveItem() { return hasObjectiveItem; }
+    public float getGlowAlpha() { return glowAlpha; }
+    public boolean isPaused() { return paused; }
+    public int getCellSize() { return cellSize; }
+    public ParticleSystem getParticles() { return particles; }
+    public long getAiTickMicros() { return aiTickMicros; }
+    public int getAiBacklog() { return aiBacklog; }
+    public String getWorldStats() { return worldStats; }
+    public String getSaveStats() { return saveStats; }
+}
@@ -0,0 +1,20 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+// Everything GamePanel reads to draw a frame. Implemented by the live game and by
+// the headless RenderBenchmark scenes.
+public interface RenderState {
+    MazeGrid getMaze();
+    int getCurrentLevel();
+    int getPlayerX();
+    int getPlayerY();
+    int getPlayerFacing();
+    boolean hasObjectiveItem();
+    float getGlowAlpha();
+    boolean isPaused();
+    int getCellSize();
+    ParticleSystem getParticles();
+    long getAiTickMicros(); // last monster tick, for the stats overlay
+    int getAiBacklog();     // monsters the AI budget left waiting in it
+    String getWorldStats(); // streaming counters for the stats overlay, "" when not streamed
+    String getSaveStats();  // save pipeline counters for the stats overlay, "" without one
+}
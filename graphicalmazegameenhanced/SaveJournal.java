@@ -0,0 +1,447 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.CRC32;
+
+// An append-only log of what has changed since the autosave it follows (its base): player
+// steps, terrain changes (pickups), the objective item and text, Sage visits, checkpoints and
+// rewinds, the Warden's death and each monster tick as the moves and state changes (aggro)
+// it made. Monster moves are logged rather than their random draws, because which monsters
+// get to draw at all depends on the AI budget (see AiScheduler).
+//
+// A record is a varint length, the payload and the low 16 bits of the payload's CRC-32. The
+// payload's first byte is the record type above a 2-bit argument, so a step costs 4 bytes.
+// Loading replays the records onto the base until one is torn or fails its check, so a crash
+// loses at most what hadn't reached the disk; a LEVEL record also ends the replay, since the
+// next level comes from its own base.
+//
+// The game thread only appends to a buffer. The save writer thread writes it out shortly
+// after, and once the journal passes COMPACT_BYTES (or on the autosave timer) folds it into a
+// new base by replaying it there, then starts a new journal. A level change or a loaded game
+// starts a new base from the game itself (rebase). The journal file names the generation of
+// the base it follows; a journal left behind by an older base is ignored.
+public class SaveJournal {
+    public static final int COMPACT_BYTES = Integer.getInteger("maze.journalCompactKB", 256) << 10;
+    static final Path JOURNAL_FILE = Paths.get("maze_journal.log");
+    private static final int MAGIC = 0x4D5A4A4C; // "MZJL"
+    private static final short VERSION = 2; // 2 added monster state changes
+    private static final int HEADER_BYTES = 16;
+    private static final long RETRY_NANOS = 10_000_000_000L; // after a failed write, before the next base
+
+    static final int STEP = 0, TERRAIN = 1, ITEM = 2, OBJECTIVE = 3, SAGE = 4, CHECKPOINT = 5, REWIND = 6,
+            BOSS_KILL = 7, MONSTERS = 8, LEVEL = 9;
+
+    private final ExecutorService writer;
+    private final Path baseFile;
+
+    // Game loop thread; recording is also cleared by the writer when a write fails
+    private volatile boolean recording = false; // a base has been taken for the current level
+    private ByteBuffer record = ByteBuffer.allocate(64);
+    private int monsterChanges, lastSlot;
+    private long records = 0;
+
+    // Shared under this
+    private ByteBuffer pending = ByteBuffer.allocate(4096);
+    private int epoch = 0;          // bumped by each rebase; pending holds this epoch's records
+    private boolean flushQueued = false, compactRequested = false;
+    private long retryAt = System.nanoTime(); // no new base before this, after a failure
+    private StoryManager log;                 // told about failures
+
+    // Writer thread
+    private FileChannel channel;
+    private int fileEpoch = -1;
+    private long generation = System.nanoTime() | 1; // never 0, which marks a base without a journal
+    private SaveLoadManager.Snapshot base;
+    private long journalBytes = 0;
+    private volatile long fileBytes = 0, compactions = 0, lastCompactMicros = 0, failures = 0;
+
+    SaveJournal(ExecutorService writer, Path baseFile) {
+        this.writer = writer;
+        this.baseFile = baseFile;
+    }
+
+    public boolean isRecording() { return recording; }
+    public long getRecords() { return records; }
+    public long getFileBytes() { return fileBytes; }
+    public long getCompactions() { return compactions; }
+    public long getLastCompactMicros() { return lastCompactMicros; }
+    public long getFailures() { return failures; }
+
+    // Game loop thread: whether the game should take a base now (it has none, and the last
+    // failure, if any, was a while ago)
+    public synchronized boolean wantsBase() {
+        return !recording && System.nanoTime() - retryAt >= 0;
+    }
+
+    // Game loop thread: the game as it is now becomes the base, and the journal restarts
+    public void rebase(SaveLoadManager.Snapshot snapshot, StoryManager log) {
+        int e;
+        synchronized (this) {
+            pending.clear(); // the snapshot already holds what these say
+            e = ++epoch;
+            compactRequested = false;
+            recording = true;
+            this.log = log;
+        }
+        writer.execute(() -> startBase(snapshot, e));
+    }
+
+    // Game loop thread: stop recording until the next rebase (a restored game, a streamed level)
+    public void suspend() {
+        recording = false;
+    }
+
+    // Game loop thread: fold the journal into its base on the writer thread soon
+    public void requestCompaction() {
+        synchronized (this) {
+            compactRequested = true;
+        }
+        scheduleFlush();
+    }
+
+    // Events, game loop thread; ignored while not recording
+
+    public void step(int dir) {
+        if (begin(STEP, dir)) end();
+    }
+
+    // Terrain at a cell became t; the old terrain is in the replayed maze
+    public void terrain(int cell, char t) {
+        if (!begin(TERRAIN, 0)) return;
+        SaveLoadManager.putVarint(record, cell);
+        record.put((byte) t);
+        end();
+    }
+
+    public void item(boolean has) {
+        if (begin(ITEM, has ? 1 : 0)) end();
+    }
+
+    public void objective(String text) {
+        if (!begin(OBJECTIVE, 0)) return;
+        ensure(SaveLoadManager.stringSize(text));
+        SaveLoadManager.putString(record, text);
+        end();
+    }
+
+    public void sage() {
+        if (begin(SAGE, 0)) end();
+    }
+
+    public void checkpoint() {
+        if (begin(CHECKPOINT, 0)) end();
+    }
+
+    public void rewind(int steps) {
+        if (!begin(REWIND, 0)) return;
+        SaveLoadManager.putVarint(record, steps);
+        end();
+    }
+
+    public void bossKilled(int id) {
+        if (!begin(BOSS_KILL, 0)) return;
+        SaveLoadManager.putVarint(record, id);
+        end();
+    }
+
+    public void level(int level) {
+        if (!begin(LEVEL, 0)) return;
+        SaveLoadManager.putVarint(record, level);
+        end();
+    }
+
+    // One monster tick: beginMonsters, a monsterMoved or monsterState per change in commit
+    // order, endMonsters. Each is the (zigzagged) gap from the previous slot above 3 bits:
+    // a direction moved, or 4 plus the new state.
+    public void beginMonsters() {
+        if (!begin(MONSTERS, 0)) return;
+        monsterChanges = 0;
+        lastSlot = 0;
+        record.position(record.position() + 5); // the change count goes here
+    }
+
+    public void monsterMoved(int slot, int dir) {
+        monsterChange(slot, dir);
+    }
+
+    public void monsterState(int slot, int state) {
+        monsterChange(slot, 4 | state);
+    }
+
+    private void monsterChange(int slot, int change) {
+        if (!recording) return;
+        ensure(5);
+        SaveLoadManager.putVarint(record, SaveLoadManager.zigzag(slot - lastSlot) << 3 | change);
+        lastSlot = slot;
+        monsterChanges++;
+    }
+
+    public void endMonsters() {
+        if (!recording) return;
+        // The count was given 5 bytes up front; shift the changes down to the varint's real size
+        int movesAt = 6, moves = record.position() - movesAt;
+        ByteBuffer count = ByteBuffer.allocate(5);
+        SaveLoadManager.putVarint(count, monsterChanges);
+        System.arraycopy(record.array(), movesAt, record.array(), 1 + count.position(), moves);
+        System.arraycopy(count.array(), 0, record.array(), 1, count.position());
+        record.position(1 + count.position() + moves);
+        end();
+    }
+
+    private boolean begin(int type, int arg) {
+        if (!recording) return false;
+        record.clear();
+        record.put((byte) (type << 2 | arg));
+        return true;
+    }
+
+    private void ensure(int bytes) {
+        if (record.remaining() < bytes) {
+            record = ByteBuffer.allocate(Math.max(record.capacity() * 2, record.position() + bytes)).put(record.flip());
+        }
+    }
+
+    // Frame the record into pending and make sure a flush is on its way
+    private void end() {
+        int length = record.position();
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, length);
+        synchronized (this) {
+            if (pending.remaining() < length + 7) {
+                pending = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + length + 7)).put(pending.flip());
+            }
+            SaveLoadManager.putVarint(pending, length);
+            pending.put(record.array(), 0, length);
+            pending.putShort((short) crc.getValue());
+        }
+        records++;
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        synchronized (this) {
+            if (flushQueued) return;
+            flushQueued = true;
+        }
+        writer.execute(this::flush);
+    }
+
+    // Writer thread: the base, then a fresh journal for it
+    private void startBase(SaveLoadManager.Snapshot snapshot, int e) {
+        try {
+            snapshot.generation = ++generation;
+            SaveLoadManager.write(baseFile, SaveLoadManager.encode(snapshot));
+            base = snapshot;
+            startJournal();
+            synchronized (this) {
+                fileEpoch = e;
+            }
+        } catch (IOException | RuntimeException ex) {
+            fail(e, ex);
+            return;
+        }
+        flush();
+    }
+
+    // Writer thread: after a failed write the files no longer follow the game, so drop what's
+    // pending and stop recording until the game takes a new base (see wantsBase)
+    private void fail(int e, Exception ex) {
+        failures++;
+        StoryManager tell;
+        synchronized (this) {
+            if (epoch != e) return; // a newer base is already on its way
+            pending.clear();
+            fileEpoch = -1;
+            recording = false;
+            retryAt = System.nanoTime() + RETRY_NANOS;
+            tell = log;
+        }
+        if (tell != null) tell.appendToLog("Error writing the autosave journal: " + ex.getMessage() + "\n");
+    }
+
+    // Writer thread: append what's pending, and compact when it's time
+    private void flush() {
+        byte[] bytes;
+        boolean compact;
+        int e;
+        synchronized (this) {
+            flushQueued = false;
+            if (epoch != fileEpoch) return; // a rebase is queued; it flushes once its file is there
+            bytes = Arrays.copyOf(pending.array(), pending.position());
+            pending.clear();
+            compact = compactRequested;
+            e = epoch;
+        }
+        try {
+            if (bytes.length > 0) {
+                ByteBuffer data = ByteBuffer.wrap(bytes);
+                while (data.hasRemaining()) channel.write(data);
+                channel.force(false);
+                journalBytes += bytes.length;
+                fileBytes = journalBytes;
+            }
+            if ((compact || journalBytes >= COMPACT_BYTES) && journalBytes > 0) compact();
+        } catch (IOException | RuntimeException ex) {
+            fail(e, ex);
+        }
+    }
+
+    // Writer thread: base plus journal replayed becomes the next base
+    private void compact() throws IOException {
+        long start = System.nanoTime();
+        synchronized (this) {
+            compactRequested = false;
+        }
+        ByteBuffer journal = SaveLoadManager.read(JOURNAL_FILE);
+        journal.position(HEADER_BYTES);
+        SaveLoadManager.Snapshot next = replay(base, journal);
+        next.generation = ++generation;
+        SaveLoadManager.write(baseFile, SaveLoadManager.encode(next));
+        base = next;
+        startJournal();
+        compactions++;
+        lastCompactMicros = (System.nanoTime() - start) / 1000;
+    }
+
+    private void startJournal() throws IOException {
+        if (channel != null) channel.close();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putShort(VERSION).putShort((short) 0).putLong(generation).flip();
+        SaveLoadManager.write(JOURNAL_FILE, header);
+        channel = FileChannel.open(JOURNAL_FILE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        journalBytes = 0;
+        fileBytes = 0;
+    }
+
+    // The base with its journal's records replayed, when the journal belongs to it
+    static SaveLoadManager.Snapshot load(SaveLoadManager.Snapshot base) throws IOException {
+        if (base.terrain == null || base.generation == 0 || !Files.exists(JOURNAL_FILE)) return base;
+        ByteBuffer journal = SaveLoadManager.read(JOURNAL_FILE);
+        if (journal.remaining() < HEADER_BYTES || journal.getInt(0) != MAGIC || journal.getShort(4) != VERSION
+                || journal.getLong(8) != base.generation) {
+            return base;
+        }
+        journal.position(HEADER_BYTES);
+        return replay(base, journal);
+    }
+
+    // Headless replay onto a copy of the base, up to the first bad record or level change
+    static SaveLoadManager.Snapshot replay(SaveLoadManager.Snapshot base, ByteBuffer in) {
+        MazeGrid maze = MazeGrid.fromTerrain(base.rows, base.cols, base.terrain.clone());
+        EntityStore actors = new EntityStore();
+        base.actors.copyTo(actors);
+        CheckpointStore checkpoints = new CheckpointStore(CheckpointStore.GAME_CHECKPOINTS, CheckpointStore.GAME_LOG_BYTES);
+        checkpoints.readFrom(ByteBuffer.wrap(base.checkpoints));
+        SaveLoadManager.Snapshot s = base.copyScalars();
+        placeActors(maze, actors, s);
+        CRC32 crc = new CRC32();
+        while (in.hasRemaining()) {
+            int start = in.position();
+            int length;
+            try {
+                length = SaveLoadManager.getVarint(in);
+            } catch (RuntimeException ex) {
+                break;
+            }
+            if (length <= 0 || in.remaining() < length + 2) break; // torn at the end
+            crc.reset();
+            crc.update(in.array(), in.position(), length);
+            if (in.getShort(in.position() + length) != (short) crc.getValue()) break;
+            ByteBuffer payload = in.slice(in.position(), length);
+            in.position(in.position() + length + 2);
+            try {
+                if (!apply(payload, maze, actors, checkpoints, s)) break;
+            } catch (RuntimeException ex) {
+                in.position(start);
+                break;
+            }
+        }
+        s.terrain = maze.terrainBytes();
+        s.actors = actors;
+        ByteBuffer history = ByteBuffer.allocate(checkpoints.getSaveSize());
+        checkpoints.writeTo(history);
+        s.checkpoints = Arrays.copyOf(history.array(), history.position());
+        return s;
+    }
+
+    // One record onto the replay state; false at a level change
+    private static boolean apply(ByteBuffer p, MazeGrid maze, EntityStore actors, CheckpointStore checkpoints,
+                                 SaveLoadManager.Snapshot s) {
+        int head = p.get() & 0xFF, type = head >>> 2, arg = head & 3;
+        switch (type) {
+            case STEP -> {
+                int r = s.playerX + MazeGrid.DIR_ROW[arg], c = s.playerY + MazeGrid.DIR_COL[arg];
+                maze.moveOccupant(s.playerX, s.playerY, r, c);
+                s.playerX = r;
+                s.playerY = c;
+                s.playerFacing = arg;
+                s.moveCount++;
+            }
+            case TERRAIN -> {
+                int cell = SaveLoadManager.getVarint(p);
+                char t = (char) p.get();
+                int r = cell / maze.getCols(), c = cell % maze.getCols();
+                checkpoints.terrainChanged(cell, maze.getTerrain(r, c));
+                maze.setTerrain(r, c, t);
+            }
+            case ITEM -> s.hasObjectiveItem = arg != 0;
+            case OBJECTIVE -> s.objective = SaveLoadManager.getString(p);
+            case SAGE -> s.sageInteractionStage++;
+            case CHECKPOINT -> checkpoints.save(s.playerX, s.playerY, s.playerFacing, s.hasObjectiveItem, s.objective, actors);
+            case REWIND -> {
+                maze.setOccupant(s.playerX, s.playerY, MazeGrid.NONE); // as the game does
+                CheckpointStore.State cp = checkpoints.rewind(SaveLoadManager.getVarint(p), maze, actors);
+                if (cp != null) {
+                    s.playerX = cp.playerX;
+                    s.playerY = cp.playerY;
+                    s.playerFacing = cp.playerFacing;
+                    s.hasObjectiveItem = cp.hasObjectiveItem;
+                    s.objective = cp.objective;
+                }
+                maze.setOccupant(s.playerX, s.playerY, MazeGrid.PLAYER);
+            }
+            case BOSS_KILL -> {
+                int slot = actors.slotOf(SaveLoadManager.getVarint(p));
+                if (slot >= 0) {
+                    maze.setOccupant(actors.getX(slot), actors.getY(slot), MazeGrid.NONE);
+                    actors.remove(actors.getId(slot));
+                }
+            }
+            case MONSTERS -> {
+                int slot = 0;
+                for (int n = SaveLoadManager.getVarint(p); n > 0; n--) {
+                    int packed = SaveLoadManager.getVarint(p), change = packed & 7;
+                    slot += SaveLoadManager.unzigzag(packed >>> 3);
+                    if (change >= 4) {
+                        actors.setState(slot, change - 4);
+                        continue;
+                    }
+                    int dir = change, x = actors.getX(slot), y = actors.getY(slot);
+                    int newX = x + MazeGrid.DIR_ROW[dir], newY = y + MazeGrid.DIR_COL[dir];
+                    maze.moveOccupant(x, y, newX, newY);
+                    actors.setPosition(slot, newX, newY, dir);
+                }
+                s.monsterTick++;
+            }
+            case LEVEL -> { return false; }
+            default -> throw new IllegalArgumentException("Unknown journal record " + type);
+        }
+        return true;
+    }
+
+    private static void placeActors(MazeGrid maze, EntityStore actors, SaveLoadManager.Snapshot s) {
+        maze.setOccupant(s.playerX, s.playerY, MazeGrid.PLAYER);
+        for (int slot = 0; slot < actors.size(); slot++) {
+            maze.setOccupant(actors.getX(slot), actors.getY(slot), actors.getType(slot));
+        }
+    }
+}
@@ -1,75 +1,411 @@
-package com.mycompany.graphicalmazegameenhanced;
-
-import javax.swing.*;
-import java.io.*;
-
-public class SaveLoadManager {
-
-    private static final String SAVE_FILE = "maze_save.txt";
-
-    public SaveLoadManager() {
-    }
-
-    public void saveGame(GraphicalMazeGameEnhanced game) {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(SAVE_FILE))) {
-            writer.println(game.getCurrentLevel());
-            writer.println(game.getPlayerX() + "," + game.getPlayerY() + "," + game.getPlayerFacing());
-            writer.println(game.hasObjectiveItem());
-            writer.println(0); // Sage stage
-            char[][] maze = game.getMaze();
-            int countM = 0;
-            if (maze != null) {
-                for (char[] row : maze)
-                    for (char c : row)
-                        if (c == 'M' || c == 'B') countM++;
-            }
-            writer.println(countM);
-            if (maze != null) {
-                for (int i = 0; i < maze.length; i++) {
-                    for (int j = 0; j < maze[i].length; j++) {
-                        if (maze[i][j] == 'M' || maze[i][j] == 'B')
-                            writer.println(i + "," + j + ",2");
-                    }
-                }
-            }
-            if (maze != null) {
-                for (char[] row : maze) {
-                    for (char c : row) writer.print(c);
-                    writer.println();
-                }
-            }
-            writer.println("Saved Game");
-            JOptionPane.showMessageDialog(null, "Game saved successfully!");
-        } catch (IOException ex) {
-            JOptionPane.showMessageDialog(null, "Error saving game: " + ex.getMessage());
-        }
-    }
-
-    public void loadGame(GraphicalMazeGameEnhanced game) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(SAVE_FILE))) {
-            int level = Integer.parseInt(reader.readLine());
-            String[] playerData = reader.readLine().split(",");
-            int px = Integer.parseInt(playerData[0]);
-            int py = Integer.parseInt(playerData[1]);
-            int pf = Integer.parseInt(playerData[2]);
-            boolean hasItem = Boolean.parseBoolean(reader.readLine());
-            int sageStage = Integer.parseInt(reader.readLine());
-            int monsterCount = Integer.parseInt(reader.readLine());
-            for (int i = 0; i < monsterCount; i++) reader.readLine();
-            char[][] maze = new char[GraphicalMazeGameEnhanced.ROWS][GraphicalMazeGameEnhanced.COLS];
-            for (int i = 0; i < GraphicalMazeGameEnhanced.ROWS; i++) {
-                String line = reader.readLine();
-                if (line == null) throw new IOException("Unexpected save file end");
-                maze[i] = line.toCharArray();
-            }
-            game.loadLevel(level);
-            game.setHasObjectiveItem(hasItem);
-            JOptionPane.showMessageDialog(null, "Game loaded. (Partial state) Level: " + level);
-            game.getStoryManager().appendToLog("Game loaded. Current Level: " + level + ".\n");
-            game.getStoryManager().showSpeechBubble("Loaded saved game.");
-        } catch (IOException | NumberFormatException ex) {
-            JOptionPane.showMessageDialog(null, "Error loading game: " + ex.getMessage());
-            game.getStoryManager().appendToLog("Error loading game: " + ex.getMessage() + "\n");
-        }
-    }
-}
\ No newline at end of file
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+
+// The whole game in one binary file: a fixed header (magic, format version, payload length,
+// CRC-32 of the payload) and then the payload, in one buffer so it takes one write and one
+// read. The maze goes in as its packed terrain layer, half a byte a cell; actors by slot with
+// their ids, varint-packed; checkpoints as their own undo log (CheckpointStore.writeTo); and
+// the level seed and monster clock, so the random streams carry on where they left off.
+//
+// Saving never waits on the disk: the game loop thread only takes a Snapshot, and a
+// background writer encodes it, writes it and fsyncs it (see requestSave). A file is written
+// beside the old one and renamed over it, so a crash mid-save leaves the previous save
+// intact. A streamed world is re-read from its level pack, so only the player's state is
+// kept for it.
+public class SaveLoadManager {
+
+    private static final Path SAVE_FILE = Paths.get("maze_save.sav");
+    private static final Path AUTOSAVE_FILE = Paths.get("maze_autosave.sav");
+    private static final int MAGIC = 0x4D5A5356; // "MZSV"
+    private static final short VERSION = 2; // 2 added the journal generation
+    private static final int HEADER_BYTES = 16;
+    private static final int MAX_PAYLOAD = 64 << 20;
+    private static final int LATENCY_SAMPLES = 128;
+    private static final long LOAD_WAIT_MILLIS = 2000;
+
+    // Everything a save holds, copied off the game so it can be encoded without it
+    public static class Snapshot {
+        public long seed;
+        public int level, moveCount;
+        public int playerX, playerY, playerFacing;
+        public boolean hasObjectiveItem;
+        public int sageInteractionStage;
+        public String objective;
+        public long monsterSeed, monsterTick;
+        public boolean hunting;
+        public int rows, cols;
+        public byte[] terrain;      // packed as in MazeGrid; null for a streamed world
+        public EntityStore actors;  // by slot; empty for a streamed world
+        public byte[] checkpoints;  // CheckpointStore.writeTo
+        public long generation;     // of the SaveJournal that follows it; 0 for none
+
+        // The fields that aren't arrays or stores, for a journal replay to start from
+        Snapshot copyScalars() {
+            Snapshot s = new Snapshot();
+            s.seed = seed;
+            s.level = level;
+            s.moveCount = moveCount;
+            s.playerX = playerX;
+            s.playerY = playerY;
+            s.playerFacing = playerFacing;
+            s.hasObjectiveItem = hasObjectiveItem;
+            s.sageInteractionStage = sageInteractionStage;
+            s.objective = objective;
+            s.monsterSeed = monsterSeed;
+            s.monsterTick = monsterTick;
+            s.hunting = hunting;
+            s.rows = rows;
+            s.cols = cols;
+            return s;
+        }
+    }
+
+    // A save waiting for the writer: what to write, where, and who to tell
+    private static class Request {
+        final Snapshot snapshot;
+        final Path file;
+        final long requestedNanos;
+        final StoryManager log;
+
+        Request(Snapshot snapshot, Path file, long requestedNanos, StoryManager log) {
+            this.snapshot = snapshot;
+            this.file = file;
+            this.requestedNanos = requestedNanos;
+            this.log = log;
+        }
+    }
+
+    // The save waiting for each file; at most one each
+    private final AtomicReference<Request> nextSave = new AtomicReference<>(), nextAutosave = new AtomicReference<>();
+    private final ExecutorService writer;
+    private final SaveJournal journal;
+    private final AtomicInteger queueDepth = new AtomicInteger(); // requested, not yet on disk
+    private final AtomicLong written = new AtomicLong(), coalesced = new AtomicLong(), failures = new AtomicLong();
+    private volatile int maxQueueDepth = 0;
+    private volatile long lastCaptureNanos = 0;
+    private final AtomicLong events = new AtomicLong(); // bumped whenever a counter above moves
+    // Game loop thread: the stats overlay line, kept until a counter moves
+    private long statsEvents = -1;
+    private String statsLine = "";
+    // Request-to-durable latency of the last LATENCY_SAMPLES writes, for percentiles
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private int latencyCount = 0;
+
+    public SaveLoadManager() {
+        writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "save-writer");
+            t.setDaemon(true);
+            return t;
+        });
+        journal = new SaveJournal(writer, AUTOSAVE_FILE);
+    }
+
+    // Changes since the autosave, written as they happen
+    public SaveJournal getJournal() { return journal; }
+
+    public long getLastCaptureMicros() { return lastCaptureNanos / 1000; }
+    public int getQueueDepth() { return queueDepth.get(); }
+    public int getMaxQueueDepth() { return maxQueueDepth; }
+    public long getWritten() { return written.get(); }
+    public long getCoalesced() { return coalesced.get(); }
+    public long getFailures() { return failures.get(); }
+
+    // Game loop thread: the pipeline's counters for the stats overlay (F3), rebuilt only after
+    // a save request, write or failure, since the snapshot asks for it every tick
+    public String getStatsLine() {
+        long seen = events.get();
+        if (seen != statsEvents) {
+            statsEvents = seen;
+            statsLine = "save q " + getQueueDepth() + "/" + getMaxQueueDepth() + "  ok " + getWritten()
+                    + "  merged " + getCoalesced() + "  fail " + getFailures() + "  p50/95 " + getLatencyMicros(0.5)
+                    + "/" + getLatencyMicros(0.95) + "us  cap " + getLastCaptureMicros() + "us";
+        }
+        return statsLine;
+    }
+
+    // Manual save (V), game loop thread
+    public void saveGame(GraphicalMazeGameEnhanced game) {
+        long start = System.nanoTime();
+        requestSave(game.captureSave(), false, game.getStoryManager(), start);
+    }
+
+    // Timed autosave, game loop thread; kept apart from the manual save
+    public void autosave(GraphicalMazeGameEnhanced game) {
+        long start = System.nanoTime();
+        requestSave(game.captureSave(), true, game.getStoryManager(), start);
+    }
+
+    // Only the snapshot is taken here. Encoding, the write and the fsync happen on the writer
+    // thread, and a request still waiting for it is replaced by the newer one, so a burst of
+    // saves costs one write of the latest state. The outcome goes to the quest log.
+    void requestSave(Snapshot snapshot, boolean autosave, StoryManager log, long requestedNanos) {
+        lastCaptureNanos = System.nanoTime() - requestedNanos;
+        AtomicReference<Request> slot = autosave ? nextAutosave : nextSave;
+        Request request = new Request(snapshot, autosave ? AUTOSAVE_FILE : SAVE_FILE, requestedNanos, log);
+        maxQueueDepth = Math.max(maxQueueDepth, queueDepth.incrementAndGet());
+        if (slot.getAndSet(request) == null) {
+            writer.execute(() -> writeNext(slot));
+        } else {
+            coalesced.incrementAndGet();
+            queueDepth.decrementAndGet();
+        }
+        events.incrementAndGet();
+    }
+
+    // Writer thread
+    private void writeNext(AtomicReference<Request> slot) {
+        Request request = slot.getAndSet(null);
+        if (request != null) write(request);
+    }
+
+    private void write(Request request) {
+        try {
+            ByteBuffer file = encode(request.snapshot);
+            int bytes = file.remaining();
+            write(request.file, file);
+            long micros = (System.nanoTime() - request.requestedNanos) / 1000;
+            written.incrementAndGet();
+            recordLatency(micros);
+            if (request.file == SAVE_FILE) {
+                request.log.appendToLog("Game saved (" + bytes + " bytes in " + micros + "us; p50 "
+                        + getLatencyMicros(0.5) + "us, p95 " + getLatencyMicros(0.95) + "us).\n");
+            }
+        } catch (IOException | RuntimeException ex) {
+            failures.incrementAndGet();
+            request.log.appendToLog("Error saving game: " + ex.getMessage() + "\n");
+        } finally {
+            queueDepth.decrementAndGet();
+            events.incrementAndGet();
+        }
+    }
+
+    private synchronized void recordLatency(long micros) {
+        latencies[latencyCount++ % LATENCY_SAMPLES] = micros;
+    }
+
+    // Request-to-durable save latency at quantile q (0.5 = median) over recent writes; 0 before any
+    public synchronized long getLatencyMicros(double q) {
+        int n = Math.min(latencyCount, LATENCY_SAMPLES);
+        if (n == 0) return 0;
+        long[] sorted = Arrays.copyOf(latencies, n);
+        Arrays.sort(sorted);
+        return sorted[Math.min(n - 1, (int) (q * n))];
+    }
+
+    // Wait until every save requested so far is on disk, or the timeout passes; false if it did
+    public boolean flush(long timeoutMillis) {
+        try {
+            writer.submit(() -> { }).get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            return false;
+        }
+    }
+
+    // Game loop thread: L reads the manual save
+    public void loadGame(GraphicalMazeGameEnhanced game) {
+        load(game, SAVE_FILE);
+    }
+
+    // Game loop thread: K carries on from the autosave with its journal replayed, which is
+    // where the game last was
+    public void continueGame(GraphicalMazeGameEnhanced game) {
+        load(game, AUTOSAVE_FILE);
+    }
+
+    // After letting any write in flight finish
+    private void load(GraphicalMazeGameEnhanced game, Path file) {
+        flush(LOAD_WAIT_MILLIS);
+        if (!Files.exists(file)) {
+            game.getStoryManager().appendToLog("There is no " + file.getFileName() + " to load.\n");
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            Snapshot save = decode(read(file));
+            if (file == AUTOSAVE_FILE) save = SaveJournal.load(save);
+            game.restoreSave(save);
+            long micros = (System.nanoTime() - start) / 1000;
+            game.getStoryManager().appendToLog("Game loaded from " + file.getFileName() + ". Current Level: "
+                    + save.level + " (" + micros + "us).\n");
+            game.getStoryManager().showSpeechBubble("Loaded saved game.");
+        } catch (IOException | IllegalArgumentException ex) {
+            game.getStoryManager().appendToLog("Error loading game: " + ex.getMessage() + "\n");
+        }
+    }
+
+    // Header and payload, ready to write
+    public static ByteBuffer encode(Snapshot s) {
+        EntityStore actors = s.actors;
+        int terrainBytes = s.terrain == null ? 0 : s.terrain.length;
+        int size = HEADER_BYTES + 75 + stringSize(s.objective) + terrainBytes + 19 * actors.size()
+                + s.checkpoints.length; // fixed fields, then at most this for the variable parts
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.position(HEADER_BYTES);
+        out.putLong(s.generation).putLong(s.seed).putInt(s.level).putInt(s.moveCount);
+        out.putInt(s.playerX).putInt(s.playerY).put((byte) s.playerFacing).put((byte) (s.hasObjectiveItem ? 1 : 0));
+        out.putInt(s.sageInteractionStage);
+        putString(out, s.objective);
+        out.putLong(s.monsterSeed).putLong(s.monsterTick).put((byte) (s.hunting ? 1 : 0));
+        out.putInt(s.rows).putInt(s.cols).putInt(terrainBytes);
+        if (s.terrain != null) out.put(s.terrain);
+        out.putInt(actors.getIdLimit()).putInt(actors.size());
+        for (int slot = 0; slot < actors.size(); slot++) {
+            putVarint(out, zigzag(actors.getId(slot) - slot)); // ids mostly follow slots
+            out.put((byte) (actors.getState(slot) << 4 | actors.getType(slot) << 2 | actors.getFacing(slot)));
+            putVarint(out, actors.getX(slot));
+            putVarint(out, actors.getY(slot));
+            putVarint(out, actors.getHp(slot));
+        }
+        out.put(s.checkpoints);
+        out.flip();
+        CRC32 crc = new CRC32();
+        crc.update(out.duplicate().position(HEADER_BYTES));
+        out.putInt(0, MAGIC).putShort(4, VERSION).putShort(6, (short) 0);
+        out.putInt(8, out.limit() - HEADER_BYTES).putInt(12, (int) crc.getValue());
+        return out;
+    }
+
+    // The header is checked before anything is taken from the payload
+    public static Snapshot decode(ByteBuffer in) throws IOException {
+        if (in.remaining() < HEADER_BYTES || in.getInt(0) != MAGIC) throw new IOException("Not a maze save file");
+        short version = in.getShort(4);
+        if (version < 1 || version > VERSION) throw new IOException("Unsupported save version " + version);
+        int length = in.getInt(8);
+        if (length != in.remaining() - HEADER_BYTES) throw new IOException("Save file is truncated");
+        CRC32 crc = new CRC32();
+        crc.update(in.duplicate().position(HEADER_BYTES));
+        if ((int) crc.getValue() != in.getInt(12)) throw new IOException("Save file is corrupt (checksum mismatch)");
+        try {
+            in.position(HEADER_BYTES);
+            Snapshot s = new Snapshot();
+            s.generation = version >= 2 ? in.getLong() : 0;
+            s.seed = in.getLong();
+            s.level = in.getInt();
+            s.moveCount = in.getInt();
+            s.playerX = in.getInt();
+            s.playerY = in.getInt();
+            s.playerFacing = in.get() & 3;
+            s.hasObjectiveItem = in.get() != 0;
+            s.sageInteractionStage = in.getInt();
+            s.objective = getString(in);
+            s.monsterSeed = in.getLong();
+            s.monsterTick = in.getLong();
+            s.hunting = in.get() != 0;
+            s.rows = in.getInt();
+            s.cols = in.getInt();
+            int terrainBytes = in.getInt();
+            if (terrainBytes < 0 || terrainBytes > in.remaining()) throw new IOException("Bad terrain length " + terrainBytes);
+            if (terrainBytes > 0) {
+                s.terrain = new byte[terrainBytes];
+                in.get(s.terrain);
+            }
+            s.actors = new EntityStore();
+            int idLimit = in.getInt();
+            if (idLimit < 0 || idLimit > MAX_PAYLOAD) throw new IOException("Bad actor id limit " + idLimit);
+            for (int n = in.getInt(), slot = 0; slot < n; slot++) {
+                int id = slot + unzigzag(getVarint(in)), flags = in.get() & 0xFF;
+                int type = flags >>> 2 & 3, facing = flags & 3, state = flags >>> 4;
+                int x = getVarint(in), y = getVarint(in), hp = getVarint(in);
+                if (id < 0 || id >= idLimit || s.actors.slotOf(id) >= 0) throw new IOException("Bad actor id " + id);
+                if (type != EntityStore.MONSTER && type != EntityStore.BOSS) throw new IOException("Bad actor type " + type);
+                s.actors.put(id, type, x, y, facing, hp);
+                s.actors.setState(s.actors.slotOf(id), state);
+            }
+            s.checkpoints = new byte[in.remaining()];
+            in.get(s.checkpoints);
+            return s;
+        } catch (BufferUnderflowException ex) {
+            throw new IOException("Save file ends early");
+        }
+    }
+
+    // Write to a temporary file, force it to disk and rename it over the target
+    static void write(Path target, ByteBuffer data) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (data.hasRemaining()) channel.write(data);
+            channel.force(true);
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    static ByteBuffer read(Path source) throws IOException {
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > HEADER_BYTES + MAX_PAYLOAD) throw new IOException("Save file is too large");
+            ByteBuffer in = ByteBuffer.allocate((int) size);
+            while (in.hasRemaining() && channel.read(in) >= 0) { }
+            return in.flip();
+        }
+    }
+
+    // Unsigned LEB128, as in CheckpointStore's records; at most 5 bytes
+    static void putVarint(ByteBuffer out, int v) {
+        while ((v & ~0x7F) != 0) {
+            out.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.put((byte) v);
+    }
+
+    static int getVarint(ByteBuffer in) {
+        int v = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.get();
+            v |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IllegalArgumentException("Bad varint");
+    }
+
+    static int zigzag(int v) { return (v << 1) ^ (v >> 31); }
+    static int unzigzag(int v) { return (v >>> 1) ^ -(v & 1); }
+
+    // Strings as a UTF-8 length and bytes
+    static int stringSize(String s) {
+        return 4 + s.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    static void putString(ByteBuffer out, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.putInt(bytes.length).put(bytes);
+    }
+
+    static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining()) throw new IllegalArgumentException("Bad string length " + length);
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,46 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Hands RenderSnapshots from the simulation thread to the render thread without locks.
+// Three buffers: the writer fills its back buffer and swaps it into the middle slot in one
+// atomic step; the reader swaps the middle slot for its front buffer when something new is
+// there. Neither side ever waits for the other or sees a buffer the other is writing, and
+// a reader that falls behind just skips to the newest snapshot.
+public class SnapshotExchange {
+    private static final int FRESH = 4; // on the middle slot: published, not yet taken
+
+    private final RenderSnapshot[] buffers = new RenderSnapshot[3];
+    private final AtomicInteger middle = new AtomicInteger(1);
+    private int back = 0;  // writer's
+    private int front = 2; // reader's
+    private long published = 0, taken = 0;
+
+    public SnapshotExchange(int particleCapacity) {
+        for (int i = 0; i < buffers.length; i++) buffers[i] = new RenderSnapshot(particleCapacity);
+    }
+
+    // Writer: the buffer to fill next
+    public RenderSnapshot back() {
+        return buffers[back];
+    }
+
+    // Writer: make the filled back buffer the newest snapshot
+    public void publish() {
+        back = middle.getAndSet(back | FRESH) & 3;
+        published++;
+    }
+
+    // Reader: the newest snapshot, or null when nothing was published since the last call.
+    // It stays the reader's until the next call that returns non-null.
+    public RenderSnapshot take() {
+        if ((middle.get() & FRESH) == 0) return null;
+        front = middle.getAndSet(front) & 3;
+        taken++;
+        return buffers[front];
+    }
+
+    // Counters for each side; read them from that side's thread
+    public long getPublished() { return published; }
+    public long getTaken() { return taken; }
+}
@@ -0,0 +1,154 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+// Everything GamePanel draws per frame on top of the static chunks, rendered once into an
+// image per look: people by facing and level look, the Warden with its aura, objective
+// items, and the objective glow and exit pulse by alpha. Antialiased shapes allocate every
+// time they are filled, images don't. A frame only blits these, clipped by hand (see blit).
+//
+// Every sprite is the cell plus MARGIN on each side and is drawn MARGIN up and left of the
+// cell. Built on first use by the render thread, which is the only one to touch them.
+public class SpriteCache {
+    public static final int MARGIN = 20; // the objective glow reaches this far past its cell
+    private static final int CS = GraphicalMazeGameEnhanced.CELL_SIZE;
+    private static final int SIZE = CS + 2 * MARGIN;
+
+    private static final Color MONSTER_FOREST = new Color(0, 100, 0);
+    private static final Color MONSTER_RUINS = new Color(0, 150, 255);
+    private static final Color BOSS = new Color(120, 0, 120);
+    private static final Color BOSS_AURA = new Color(200, 0, 200, 50);
+    private static final Color[] GLOW_YELLOW = new Color[256]; // indexed by alpha
+    static {
+        for (int a = 0; a < 256; a++) GLOW_YELLOW[a] = new Color(255, 255, 0, a);
+    }
+
+    private final TileRenderer tiles = new TileRenderer();
+    private final BufferedImage[] players = new BufferedImage[4];  // by facing
+    private final BufferedImage[] monsters = new BufferedImage[4]; // by look
+    private final BufferedImage[] bosses = new BufferedImage[4];   // by look
+    private final BufferedImage[] objectives = new BufferedImage[3];
+    private final BufferedImage[] glows = new BufferedImage[256];  // by alpha
+    private final BufferedImage[] pulses = new BufferedImage[256]; // by alpha
+
+    // Levels 1-3 each have their own monsters; later ones share a look without the spirit aura
+    private static int look(int level) {
+        return Math.max(0, Math.min(3, level - 1));
+    }
+
+    // Alpha 0-1 to the table index the glow and pulse sprites are kept by
+    public static int alphaIndex(float alpha) {
+        return Math.max(0, Math.min(255, (int) (alpha * 255 + 0.5f)));
+    }
+
+    public BufferedImage player(int facing) {
+        BufferedImage s = players[facing & 3];
+        if (s == null) {
+            Graphics2D g = begin(s = players[facing & 3] = create());
+            tiles.drawPerson(g, 0, 0, Color.BLUE, facing & 3, false, 1); // the same on every level
+            g.dispose();
+        }
+        return s;
+    }
+
+    public BufferedImage monster(int level) {
+        int look = look(level);
+        BufferedImage s = monsters[look];
+        if (s == null) {
+            Color color = look == 0 ? Color.RED : look == 1 ? MONSTER_FOREST : MONSTER_RUINS;
+            Graphics2D g = begin(s = monsters[look] = create());
+            tiles.drawPerson(g, 0, 0, color, 2, false, look + 1);
+            g.dispose();
+        }
+        return s;
+    }
+
+    public BufferedImage boss(int level) {
+        int look = look(level);
+        BufferedImage s = bosses[look];
+        if (s == null) {
+            Graphics2D g = begin(s = bosses[look] = create());
+            tiles.drawPerson(g, 0, 0, BOSS, 2, false, look + 1);
+            g.setColor(BOSS_AURA);
+            g.fillOval(5, -5, CS - 10, CS + 10);
+            g.dispose();
+        }
+        return s;
+    }
+
+    public BufferedImage objective(char type) {
+        int k = type == 'A' ? 0 : type == 'S' ? 1 : 2;
+        BufferedImage s = objectives[k];
+        if (s == null) {
+            Graphics2D g = begin(s = objectives[k] = create());
+            tiles.drawObjectiveItem(g, 0, 0, type);
+            g.dispose();
+        }
+        return s;
+    }
+
+    // The two rings around an objective the player is near; the outer one at half the alpha
+    public BufferedImage glow(int alpha) {
+        BufferedImage s = glows[alpha];
+        if (s == null) {
+            Graphics2D g = begin(s = glows[alpha] = create());
+            g.setColor(GLOW_YELLOW[(alpha + 1) / 2]);
+            g.fillOval(-20, -20, CS + 40, CS + 40);
+            g.setColor(GLOW_YELLOW[alpha]);
+            g.fillOval(-15, -15, CS + 30, CS + 30);
+            g.dispose();
+        }
+        return s;
+    }
+
+    // The dot on the exit door
+    public BufferedImage exitPulse(int alpha) {
+        BufferedImage s = pulses[alpha];
+        if (s == null) {
+            Graphics2D g = begin(s = pulses[alpha] = create());
+            g.setColor(GLOW_YELLOW[alpha]);
+            g.fillOval(20, 30, 5, 5);
+            g.dispose();
+        }
+        return s;
+    }
+
+    private static BufferedImage create() {
+        return new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB_PRE);
+    }
+
+    // Drawing at (0, 0) lands on the sprite's cell
+    private static Graphics2D begin(BufferedImage image) {
+        Graphics2D g = antialiased(image);
+        g.translate(MARGIN, MARGIN);
+        return g;
+    }
+
+    // Graphics for pre-rendering, set up as frames used to draw these shapes directly
+    static Graphics2D antialiased(BufferedImage image) {
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        return g;
+    }
+
+    // The part of image at (x, y) that falls inside clip. Setting a clip on the Graphics
+    // allocates, so frames clip by hand.
+    public static void blit(Graphics2D g, Image image, int x, int y, int w, int h, Rectangle clip) {
+        int x0 = Math.max(x, clip.x), y0 = Math.max(y, clip.y);
+        int x1 = Math.min(x + w, clip.x + clip.width), y1 = Math.min(y + h, clip.y + clip.height);
+        if (x0 < x1 && y0 < y1) g.drawImage(image, x0, y0, x1, y1, x0 - x, y0 - y, x1 - x, y1 - y, null);
+    }
+
+    // A sprite for the cell whose top-left corner is at (x, y)
+    public static void blitCell(Graphics2D g, BufferedImage sprite, int x, int y, Rectangle clip) {
+        blit(g, sprite, x - MARGIN, y - MARGIN, SIZE, SIZE, clip);
+    }
+
+    // fillRect, clipped by hand
+    public static void fill(Graphics2D g, int x, int y, int w, int h, Rectangle clip) {
+        int x0 = Math.max(x, clip.x), y0 = Math.max(y, clip.y);
+        int x1 = Math.min(x + w, clip.x + clip.width), y1 = Math.min(y + h, clip.y + clip.height);
+        if (x0 < x1 && y0 < y1) g.fillRect(x0, y0, x1 - x0, y1 - y0);
+    }
+}
@@ -1,85 +1,102 @@
-package com.mycompany.graphicalmazegameenhanced;
-
-import javax.swing.*;
-import java.awt.*;
-import java.util.Timer;
-import java.util.TimerTask;
-
-public class StoryManager {
-    private final JTextArea storyLog = new JTextArea();
-    private String activeSpeech = "";
-    private boolean showingSpeech = false;
-
-    public StoryManager() {
-        storyLog.setEditable(false);
-        storyLog.setWrapStyleWord(true);
-        storyLog.setLineWrap(true);
-        storyLog.setFont(new Font("Serif", Font.PLAIN, 14));
-    }
-
-    public JScrollPane createLogScrollPane() {
-        JScrollPane sp = new JScrollPane(storyLog);
-        return sp;
-    }
-
-    public void appendToLog(String text) {
-        SwingUtilities.invokeLater(() -> {
-            storyLog.append(text);
-            storyLog.setCaretPosition(storyLog.getDocument().getLength());
-        });
-    }
-
-    public void showSpeechBubble(String text) {
-        activeSpeech = text;
-        showingSpeech = true;
-        new Timer().schedule(new TimerTask() {
-            @Override
-            public void run() {
-                showingSpeech = false;
-                activeSpeech = "";
-            }
-        }, 3500);
-    }
-
-    public boolean hasActiveSpeech() {
-        return showingSpeech && activeSpeech != null && !activeSpeech.isEmpty();
-    }
-
-    public void drawSpeechBubble(Graphics2D g, int playerRow, int playerCol, int cellSize) {
-        if (!hasActiveSpeech()) return;
-
-        int px = playerCol * cellSize;
-        int py = playerRow * cellSize;
-        int bx = px - 10;
-        int by = py - 40;
-        int bw = 360;
-        int bh = 60;
-
-        g.setColor(new Color(255, 255, 255, 230));
-        g.fillRoundRect(bx, by, bw, bh, 20, 20);
-        g.setColor(Color.BLACK);
-        g.drawRoundRect(bx, by, bw, bh, 20, 20);
-
-        g.setFont(new Font("Serif", Font.PLAIN, 12));
-        drawStringWrapped(g, activeSpeech.replaceAll("\n", " "), bx + 10, by + 20, bw - 20);
-    }
-
-    private void drawStringWrapped(Graphics2D g, String text, int x, int y, int maxWidth) {
-        FontMetrics fm = g.getFontMetrics();
-        String[] words = text.split(" ");
-        String line = "";
-        int lineHeight = fm.getHeight();
-        int curY = y;
-        for (String w : words) {
-            String test = line.isEmpty() ? w : line + " " + w;
-            if (fm.stringWidth(test) > maxWidth) {
-                g.drawString(line, x, curY);
-                line = w;
-                curY += lineHeight;
-            } else {
-                line = test;
-            }
-        }
-        if (!line.isEmpty()) g.drawString(line, x, curY);
-    }
+package com.mycompany.graphicalmazegameenhanced;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+public class StoryManager {
+    private static final long SPEECH_NANOS = 3_500_000_000L;
+
+    // Text and expiry travel together, so a reader on another thread sees both or neither
+    private static class Speech {
+        final String text;
+        final long until; // System.nanoTime()
+
+        Speech(String text, long until) {
+            this.text = text;
+            this.until = until;
+        }
+    }
+
+    private final JTextArea storyLog = new JTextArea();
+    private volatile Speech speech = null;
+    private static final Font BUBBLE_FONT = new Font("Serif", Font.PLAIN, 12);
+    private static final Color BUBBLE_FILL = new Color(255, 255, 255, 230);
+    private static final int BUBBLE_WIDTH = 360, BUBBLE_HEIGHT = 60;
+    private static final int BUBBLE_PAD = 1; // room for the outline's antialiasing
+    // Wrapped bubble text, laid out once per message
+    private final TextLayoutCache bubbleLayouts = new TextLayoutCache(8);
+    // Render thread: the current message's bubble
+    private Speech bubbleFor;
+    private BufferedImage bubble;
+
+    public StoryManager() {
+        storyLog.setEditable(false);
+        storyLog.setWrapStyleWord(true);
+        storyLog.setLineWrap(true);
+        storyLog.setFont(new Font("Serif", Font.PLAIN, 14));
+    }
+
+    public JScrollPane createLogScrollPane() {
+        JScrollPane sp = new JScrollPane(storyLog);
+        return sp;
+    }
+
+    public void appendToLog(String text) {
+        SwingUtilities.invokeLater(() -> {
+            storyLog.append(text);
+            storyLog.setCaretPosition(storyLog.getDocument().getLength());
+        });
+    }
+
+    // Shown for 3.5 seconds; it expires by the clock, no timer thread involved
+    public void showSpeechBubble(String text) {
+        speech = new Speech(text, System.nanoTime() + SPEECH_NANOS);
+    }
+
+    public boolean hasActiveSpeech() {
+        return isActive(speech);
+    }
+
+    private static boolean isActive(Speech s) {
+        return s != null && s.text != null && !s.text.isEmpty() && System.nanoTime() - s.until < 0;
+    }
+
+    // Where the bubble is drawn for a player at (playerRow, playerCol), into r
+    public Rectangle getSpeechBubbleBounds(int playerRow, int playerCol, int cellSize, Rectangle r) {
+        r.setBounds(playerCol * cellSize - 10, playerRow * cellSize - 40, BUBBLE_WIDTH, BUBBLE_HEIGHT);
+        return r;
+    }
+
+    // Render thread: the part of the bubble inside clip. The bubble is drawn into an image once
+    // per message, so frames showing it only blit.
+    public void drawSpeechBubble(Graphics2D g, int playerRow, int playerCol, int cellSize, Rectangle clip) {
+        Speech s = speech;
+        if (!isActive(s)) return;
+        if (s != bubbleFor) {
+            bubble = renderBubble(s.text);
+            bubbleFor = s;
+        }
+        SpriteCache.blit(g, bubble, playerCol * cellSize - 10 - BUBBLE_PAD, playerRow * cellSize - 40 - BUBBLE_PAD,
+                bubble.getWidth(), bubble.getHeight(), clip);
+    }
+
+    // The bubble with its top-left corner at (BUBBLE_PAD, BUBBLE_PAD); taller if the text overflows
+    private BufferedImage renderBubble(String text) {
+        Graphics2D measure = SpriteCache.antialiased(new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB_PRE));
+        TextLayoutCache.Layout layout = bubbleLayouts.get(measure, text, BUBBLE_FONT, BUBBLE_WIDTH - 20);
+        measure.dispose();
+        int height = Math.max(BUBBLE_HEIGHT, 20 + layout.getHeight());
+        BufferedImage image = new BufferedImage(BUBBLE_WIDTH + 2 * BUBBLE_PAD, height + 2 * BUBBLE_PAD,
+                BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = SpriteCache.antialiased(image);
+        g.translate(BUBBLE_PAD, BUBBLE_PAD);
+        g.setColor(BUBBLE_FILL);
+        g.fillRoundRect(0, 0, BUBBLE_WIDTH, BUBBLE_HEIGHT, 20, 20);
+        g.setColor(Color.BLACK);
+        g.drawRoundRect(0, 0, BUBBLE_WIDTH, BUBBLE_HEIGHT, 20, 20);
+        layout.draw(g, 10, 20);
+        g.dispose();
+        return image;
+    }
 }
\ No newline at end of file
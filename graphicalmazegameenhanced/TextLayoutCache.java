@@ -0,0 +1,119 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.util.ArrayList;
+import java.util.List;
+
+// Small bounded LRU of laid-out text. Word wrapping and glyph shaping happen once per
+// unique (text, font, width, render context); frames after that only draw the cached
+// glyph vectors. Lookups scan a few slots and never allocate.
+public class TextLayoutCache {
+
+    public static class Layout {
+        private final GlyphVector[] lines;
+        private final int lineHeight, ascent, width;
+
+        Layout(GlyphVector[] lines, int lineHeight, int ascent, int width) {
+            this.lines = lines;
+            this.lineHeight = lineHeight;
+            this.ascent = ascent;
+            this.width = width;
+        }
+
+        public int getWidth() { return width; }
+        public int getLineHeight() { return lineHeight; }
+        public int getAscent() { return ascent; }
+        public int getHeight() { return lineHeight * lines.length; }
+
+        // y is the baseline of the first line
+        public void draw(Graphics2D g, int x, int y) {
+            for (int i = 0; i < lines.length; i++) {
+                g.drawGlyphVector(lines[i], x, y + i * lineHeight);
+            }
+        }
+    }
+
+    private final String[] texts;
+    private final Font[] fonts;
+    private final int[] widths;
+    private final FontRenderContext[] contexts;
+    private final Layout[] layouts;
+    private final long[] lastUsed;
+    private int size = 0;
+    private long useClock = 0;
+    private long hits = 0, misses = 0;
+
+    public TextLayoutCache(int capacity) {
+        texts = new String[capacity];
+        fonts = new Font[capacity];
+        widths = new int[capacity];
+        contexts = new FontRenderContext[capacity];
+        layouts = new Layout[capacity];
+        lastUsed = new long[capacity];
+    }
+
+    public long getHits() { return hits; }
+    public long getMisses() { return misses; }
+
+    // maxWidth <= 0 keeps the text on one line; newlines are treated as spaces when wrapping
+    public Layout get(Graphics2D g, String text, Font font, int maxWidth) {
+        FontRenderContext frc = g.getFontRenderContext();
+        useClock++;
+        for (int i = 0; i < size; i++) {
+            if (widths[i] == maxWidth && fonts[i].equals(font) && texts[i].equals(text) && contexts[i].equals(frc)) {
+                lastUsed[i] = useClock;
+                hits++;
+                return layouts[i];
+            }
+        }
+        misses++;
+        int slot = size < texts.length ? size++ : leastRecentlyUsed();
+        texts[slot] = text;
+        fonts[slot] = font;
+        widths[slot] = maxWidth;
+        contexts[slot] = frc;
+        layouts[slot] = layout(g.getFontMetrics(font), text, font, maxWidth, frc);
+        lastUsed[slot] = useClock;
+        return layouts[slot];
+    }
+
+    private int leastRecentlyUsed() {
+        int oldest = 0;
+        for (int i = 1; i < size; i++) {
+            if (lastUsed[i] < lastUsed[oldest]) oldest = i;
+        }
+        return oldest;
+    }
+
+    private static Layout layout(FontMetrics fm, String text, Font font, int maxWidth, FontRenderContext frc) {
+        String[] lines = maxWidth > 0 ? wrapLines(fm, text.replace('\n', ' '), maxWidth) : new String[]{text};
+        GlyphVector[] glyphs = new GlyphVector[lines.length];
+        int width = 0;
+        for (int i = 0; i < lines.length; i++) {
+            glyphs[i] = font.createGlyphVector(frc, lines[i]);
+            width = Math.max(width, fm.stringWidth(lines[i]));
+        }
+        return new Layout(glyphs, fm.getHeight(), fm.getAscent(), width);
+    }
+
+    private static String[] wrapLines(FontMetrics fm, String text, int maxWidth) {
+        List<String> lines = new ArrayList<>();
+        String[] words = text.split(" ");
+        String line = "";
+        for (String w : words) {
+            String test = line.isEmpty() ? w : line + " " + w;
+            if (fm.stringWidth(test) > maxWidth) {
+                lines.add(line);
+                line = w;
+            } else {
+                line = test;
+            }
+        }
+        if (!line.isEmpty()) lines.add(line);
+        return lines.toArray(new String[0]);
+    }
+}
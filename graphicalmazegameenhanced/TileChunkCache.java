@@ -0,0 +1,183 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+// Static tile imagery split into fixed-size chunks. Missing or stale chunks are rasterized
+// in parallel on the common ForkJoin pool; a tile change only rebuilds its own chunk.
+// Only a bounded, least-recently-used set of chunks around the camera keeps its pixels,
+// so huge mazes never hold the whole floor as images.
+public class TileChunkCache {
+    public static final int CHUNK_CELLS = 16;
+
+    public static class Chunk {
+        final int chunkRow, chunkCol;
+        final int row0, col0, rows, cols;
+        BufferedImage image;
+        boolean stale = true;
+        long lastUsed;
+        int[] animated = new int[0]; // objective and exit cells, packed r * mazeCols + c
+
+        Chunk(int chunkRow, int chunkCol, int mazeRows, int mazeCols) {
+            this.chunkRow = chunkRow;
+            this.chunkCol = chunkCol;
+            this.row0 = chunkRow * CHUNK_CELLS;
+            this.col0 = chunkCol * CHUNK_CELLS;
+            this.rows = Math.min(CHUNK_CELLS, mazeRows - row0);
+            this.cols = Math.min(CHUNK_CELLS, mazeCols - col0);
+        }
+    }
+
+    private final int cellSize;
+    private Chunk[] grid = new Chunk[0]; // chunkRow * chunkCols + chunkCol, null when not resident
+    private final List<Chunk> resident = new ArrayList<>();
+    private int chunkCols;
+    private long useClock = 0;
+    private int capacity = 16;
+    private int level = -1;
+    private int mazeRows, mazeCols;
+    private long rasterizedChunks = 0;
+    private long lastBuildNanos = 0;
+
+    public TileChunkCache(int cellSize) {
+        this.cellSize = cellSize;
+    }
+
+    private Chunk chunkAt(int chunkRow, int chunkCol) {
+        return grid[chunkRow * chunkCols + chunkCol];
+    }
+
+    // Everything is stale (level load, checkpoint restore)
+    public void invalidateAll() {
+        for (Chunk c : resident) c.stale = true;
+    }
+
+    // One static tile changed: only its chunk is rebuilt
+    public void invalidateCell(int r, int c) {
+        if (r < 0 || r >= mazeRows || c < 0 || c >= mazeCols) return;
+        Chunk chunk = chunkAt(r / CHUNK_CELLS, c / CHUNK_CELLS);
+        if (chunk != null) chunk.stale = true;
+    }
+
+    public long getRasterizedChunks() { return rasterizedChunks; }
+    public long getLastBuildMicros() { return lastBuildNanos / 1000; }
+
+    // Make sure every chunk overlapping the given cell range is resident and current,
+    // rasterizing the missing ones in parallel. Runs on the render thread, which also
+    // owns the maze, so workers can read it while this call blocks.
+    public void ensure(MazeGrid maze, int currentLevel, int row0, int col0, int rows, int cols, GraphicsConfiguration gc) {
+        if (currentLevel != level || maze.getRows() != mazeRows || maze.getCols() != mazeCols) {
+            level = currentLevel;
+            mazeRows = maze.getRows();
+            mazeCols = maze.getCols();
+            chunkCols = (mazeCols + CHUNK_CELLS - 1) / CHUNK_CELLS;
+            grid = new Chunk[((mazeRows + CHUNK_CELLS - 1) / CHUNK_CELLS) * chunkCols];
+            resident.clear();
+        }
+        useClock++;
+        int cr0 = Math.max(0, row0 / CHUNK_CELLS), cc0 = Math.max(0, col0 / CHUNK_CELLS);
+        int cr1 = Math.min((mazeRows - 1) / CHUNK_CELLS, (row0 + rows - 1) / CHUNK_CELLS);
+        int cc1 = Math.min((mazeCols - 1) / CHUNK_CELLS, (col0 + cols - 1) / CHUNK_CELLS);
+        capacity = Math.max(capacity, 2 * (cr1 - cr0 + 1) * (cc1 - cc0 + 1));
+
+        List<Chunk> toBuild = null;
+        for (int cr = cr0; cr <= cr1; cr++) {
+            for (int cc = cc0; cc <= cc1; cc++) {
+                Chunk chunk = chunkAt(cr, cc);
+                if (chunk == null) {
+                    chunk = new Chunk(cr, cc, mazeRows, mazeCols);
+                    grid[cr * chunkCols + cc] = chunk;
+                    resident.add(chunk);
+                }
+                chunk.lastUsed = useClock;
+                if (chunk.stale) {
+                    if (toBuild == null) toBuild = new ArrayList<>();
+                    toBuild.add(chunk);
+                }
+            }
+        }
+        if (toBuild != null) build(maze, currentLevel, toBuild, gc);
+        if (resident.size() > capacity) evict();
+    }
+
+    private void build(MazeGrid maze, int currentLevel, List<Chunk> toBuild, GraphicsConfiguration gc) {
+        long start = System.nanoTime();
+        if (toBuild.size() == 1) {
+            rasterize(maze, currentLevel, toBuild.get(0), gc);
+        } else {
+            List<Callable<Void>> tasks = new ArrayList<>(toBuild.size());
+            for (Chunk chunk : toBuild) {
+                tasks.add(() -> {
+                    rasterize(maze, currentLevel, chunk, gc);
+                    return null;
+                });
+            }
+            ForkJoinPool.commonPool().invokeAll(tasks);
+        }
+        rasterizedChunks += toBuild.size();
+        lastBuildNanos = System.nanoTime() - start;
+    }
+
+    private void rasterize(MazeGrid maze, int currentLevel, Chunk chunk, GraphicsConfiguration gc) {
+        int w = chunk.cols * cellSize, h = chunk.rows * cellSize;
+        if (chunk.image == null) {
+            chunk.image = gc != null
+                    ? gc.createCompatibleImage(w, h, Transparency.OPAQUE)
+                    : new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        }
+        TileRenderer tiles = new TileRenderer();
+        int[] animated = new int[4];
+        int animatedCount = 0;
+        Graphics2D g2d = chunk.image.createGraphics();
+        try {
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2d.translate(-chunk.col0 * cellSize, -chunk.row0 * cellSize);
+            for (int i = chunk.row0; i < chunk.row0 + chunk.rows; i++) {
+                for (int j = chunk.col0; j < chunk.col0 + chunk.cols; j++) {
+                    char cell = maze.getTerrain(i, j);
+                    tiles.drawStaticCell(g2d, cell, i, j, currentLevel);
+                    if (cell == 'A' || cell == 'S' || cell == 'C' || cell == 'E') {
+                        if (animatedCount == animated.length) animated = Arrays.copyOf(animated, animatedCount * 2);
+                        animated[animatedCount++] = i * mazeCols + j;
+                    }
+                }
+            }
+        } finally {
+            g2d.dispose();
+        }
+        chunk.animated = Arrays.copyOf(animated, animatedCount);
+        chunk.stale = false;
+    }
+
+    // Drop the least recently used chunks; the ones just ensured carry the newest stamp
+    private void evict() {
+        resident.sort((a, b) -> Long.compare(b.lastUsed, a.lastUsed));
+        while (resident.size() > capacity && resident.get(resident.size() - 1).lastUsed != useClock) {
+            Chunk c = resident.remove(resident.size() - 1);
+            grid[c.chunkRow * chunkCols + c.chunkCol] = null;
+        }
+    }
+
+    // Chunks overlapping the cell range, already ensured; fills out and returns the count
+    public int collect(int row0, int col0, int rows, int cols, Chunk[] out) {
+        int n = 0;
+        int cr0 = Math.max(0, row0 / CHUNK_CELLS), cc0 = Math.max(0, col0 / CHUNK_CELLS);
+        int cr1 = Math.min((mazeRows - 1) / CHUNK_CELLS, (row0 + rows - 1) / CHUNK_CELLS);
+        int cc1 = Math.min((mazeCols - 1) / CHUNK_CELLS, (col0 + cols - 1) / CHUNK_CELLS);
+        for (int cr = cr0; cr <= cr1; cr++) {
+            for (int cc = cc0; cc <= cc1; cc++) {
+                Chunk chunk = chunkAt(cr, cc);
+                if (chunk != null && n < out.length) out[n++] = chunk;
+            }
+        }
+        return n;
+    }
+}
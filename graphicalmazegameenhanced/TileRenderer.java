@@ -0,0 +1,188 @@
+package com.mycompany.graphicalmazegameenhanced;
+
+import java.awt.*;
+
+// Tile and character drawing shared by the chunk rasterizer and GamePanel's dynamic pass.
+// Instances hold scratch arrays, so each rendering thread uses its own.
+public class TileRenderer {
+    private final int[] polyX = new int[3];
+    private final int[] polyY = new int[3];
+
+    // Paint palette, created once: the render path must not allocate
+    private static final int CS = GraphicalMazeGameEnhanced.CELL_SIZE;
+    private static final GradientPaint GROUND_MEADOW = new GradientPaint(0, 0, new Color(144, 238, 144), CS, CS, new Color(100, 200, 100));
+    private static final GradientPaint GROUND_FOREST = new GradientPaint(0, 0, new Color(50, 150, 50), CS, CS, new Color(30, 100, 30));
+    private static final GradientPaint GROUND_NIGHT = new GradientPaint(0, 0, new Color(0, 50, 100), CS, CS, new Color(0, 20, 50));
+    private static final GradientPaint WALL_HEDGE = new GradientPaint(0, 0, new Color(60, 160, 60), CS, CS, new Color(30, 100, 30));
+    private static final GradientPaint WALL_RUIN = new GradientPaint(0, 0, new Color(120, 120, 180), CS, CS, new Color(70, 70, 120));
+    private static final GradientPaint WALL_BRICK = new GradientPaint(0, 0, new Color(139, 69, 19), CS, CS, new Color(100, 50, 10));
+    private static final GradientPaint EXIT_DOOR = new GradientPaint(0, 0, new Color(0, 100, 0), 40, 40, new Color(0, 150, 0));
+    private static final Color MEADOW_DOT = new Color(80, 160, 80, 100);
+    private static final Color FOREST_DOT = new Color(100, 80, 60, 100);
+    private static final Color FAINT_WHITE = new Color(255, 255, 255, 100);
+    private static final Color HEDGE_LEAF = new Color(0, 120, 0, 150);
+    private static final Color HEDGE_VEIN = new Color(0, 80, 0, 100);
+    private static final Color RUIN_STUD = new Color(200, 200, 255, 150);
+    private static final Color RUIN_EDGE = new Color(255, 255, 255, 50);
+    private static final Color BRICK_LINE = new Color(80, 40, 0);
+    private static final Color BROWN = new Color(139, 69, 19);
+    private static final Color STONE_GREY = new Color(169, 169, 169);
+    private static final Color CRYSTAL_BLUE = new Color(0, 200, 255, 150);
+    private static final Color SPIRE_GOLD = new Color(255, 200, 0);
+    private static final Color EXIT_FRAME = new Color(255, 215, 0);
+    private static final Color SKIN = new Color(255, 220, 200);
+    private static final Color SAGE_ROBE = new Color(200, 0, 200, 150);
+    private static final Color ARMOR = new Color(150, 150, 150, 150);
+    private static final Color SPIRIT_AURA = new Color(0, 255, 255, 100);
+
+    public void drawStaticCell(Graphics2D g2d, char cell, int i, int j, int currentLevel) {
+        int CELL_SIZE = GraphicalMazeGameEnhanced.CELL_SIZE;
+        int x = j * CELL_SIZE;
+        int y = i * CELL_SIZE;
+
+        // Ground with patterns (same colors as original)
+        if (currentLevel == 1) {
+            fillCellGradient(g2d, GROUND_MEADOW, x, y, true);
+            g2d.setColor(MEADOW_DOT);
+            g2d.fillOval(x + 10, y + 10, 5, 5);
+        } else if (currentLevel == 2) {
+            fillCellGradient(g2d, GROUND_FOREST, x, y, true);
+            g2d.setColor(FOREST_DOT);
+            g2d.fillRect(x + 15, y + 15, 5, 5);
+        } else {
+            fillCellGradient(g2d, GROUND_NIGHT, x, y, true);
+            g2d.setColor(FAINT_WHITE);
+            g2d.fillOval(x + 20, y + 20, 3, 3);
+        }
+
+        if (cell == '#' || cell == 'W') {
+            boolean isBuilding = currentLevel == 1 && (i + j) % 2 == 0;
+            drawWall(g2d, x, y, cell == 'W' ? false : isBuilding, currentLevel);
+        } else if (cell == 'T') {
+            drawDecoration(g2d, x, y, currentLevel);
+        } else if (cell == 'E') {
+            drawExitDoor(g2d, x, y);
+        } else if (cell == 'G') {
+            drawPerson(g2d, x, y, Color.MAGENTA, 2, true, currentLevel);
+        }
+
+        // Actors stand on floor, so their cells get the floor stones too
+        if (cell == '.' || cell == 'T' || cell == 'P' || cell == 'M' || cell == 'B') {
+            drawFloorStone(g2d, x, y, i, j, currentLevel);
+        }
+    }
+
+    // The shared gradients start at (0,0), so shift the origin to the cell instead of building a new one
+    private static void fillCellGradient(Graphics2D g, GradientPaint paint, int x, int y, boolean rect) {
+        g.translate(x, y);
+        g.setPaint(paint);
+        if (rect) g.fillRect(0, 0, CS, CS);
+        else g.fillOval(0, 0, CS, CS);
+        g.translate(-x, -y);
+    }
+
+    public void drawFloorStone(Graphics2D g2d, int x, int y, int i, int j, int currentLevel) {
+        if ((i + j) % 3 == 0) {
+            int CELL_SIZE = GraphicalMazeGameEnhanced.CELL_SIZE;
+            g2d.setColor(currentLevel == 1 ? STONE_GREY : BROWN);
+            g2d.fillRect(x + 10, y + 20, CELL_SIZE - 20, 10);
+        }
+    }
+
+    // All drawing helper methods
+    private void drawWall(Graphics2D g, int x, int y, boolean isBuilding, int currentLevel) {
+        int CELL_SIZE = GraphicalMazeGameEnhanced.CELL_SIZE;
+        if (currentLevel == 2 || !isBuilding) {
+            fillCellGradient(g, WALL_HEDGE, x, y, false);
+            g.setColor(HEDGE_LEAF);
+            g.fillOval(x + 10, y + 10, CELL_SIZE - 20, CELL_SIZE - 20);
+            g.setColor(HEDGE_VEIN);
+            g.drawLine(x + 15, y + 15, x + 35, y + 35);
+        } else if (currentLevel == 3) {
+            fillCellGradient(g, WALL_RUIN, x, y, true);
+            g.setColor(RUIN_STUD);
+            g.fillOval(x + 5, y + 5, 10, 10);
+            g.fillOval(x + 35, y + 35, 10, 10);
+            g.setColor(RUIN_EDGE);
+            g.drawRect(x + 2, y + 2, CELL_SIZE - 4, CELL_SIZE - 4);
+        } else {
+            fillCellGradient(g, WALL_BRICK, x, y, true);
+            g.setColor(BRICK_LINE);
+            g.drawLine(x + 2, y + 2, x + CELL_SIZE - 2, y + 2);
+            g.drawLine(x + 2, y + 2, x + 2, y + CELL_SIZE - 2);
+            g.setColor(Color.YELLOW);
+            g.fillRect(x + 10, y + 10, 10, 10);
+            g.fillRect(x + 30, y + 30, 10, 10);
+        }
+    }
+
+    private void drawDecoration(Graphics2D g, int x, int y, int currentLevel) {
+        if (currentLevel == 3) {
+            g.setColor(CRYSTAL_BLUE);
+            g.fillOval(x + 15, y + 15, 20, 20);
+            g.setColor(FAINT_WHITE);
+            g.fillOval(x + 20, y + 20, 10, 10);
+        } else {
+            g.setColor(BROWN);
+            g.fillRect(x + 20, y + 30, 10, 20);
+            g.setColor(Color.GREEN);
+            g.fillOval(x + 5, y + 5, 40, 40);
+        }
+    }
+
+    public void drawObjectiveItem(Graphics2D g, int x, int y, char type) {
+        g.setColor(type == 'A' ? Color.YELLOW : type == 'S' ? Color.WHITE : SPIRE_GOLD);
+        polyX[0] = x + 25; polyX[1] = x + 10; polyX[2] = x + 40;
+        polyY[0] = y + 10; polyY[1] = y + 40; polyY[2] = y + 40;
+        g.fillPolygon(polyX, polyY, 3);
+    }
+
+    private void drawExitDoor(Graphics2D g, int x, int y) {
+        g.translate(x, y);
+        g.setPaint(EXIT_DOOR);
+        g.fillRect(10, 10, 30, 40);
+        g.translate(-x, -y);
+        g.setColor(EXIT_FRAME);
+        g.drawRect(x + 8, y + 8, 34, 44);
+    }
+
+    public void drawPerson(Graphics2D g, int x, int y, Color color, int facing, boolean isSage, int currentLevel) {
+        g.setColor(color);
+        g.fillOval(x + 15, y + 5, 20, 20);
+        g.setColor(SKIN);
+        g.fillOval(x + 18, y + 8, 14, 14);
+        g.setColor(color);
+        g.fillRect(x + 22, y + 25, 6, 15);
+        g.drawLine(x + 25, y + 28, x + 15, y + 23);
+        g.drawLine(x + 25, y + 28, x + 35, y + 23);
+        g.drawLine(x + 24, y + 40, x + 20, y + 45);
+        g.drawLine(x + 26, y + 40, x + 30, y + 45);
+        if (isSage) {
+            g.setColor(SAGE_ROBE);
+            polyX[0] = x + 15; polyX[1] = x + 25; polyX[2] = x + 35;
+            polyY[0] = y + 25; polyY[1] = y + 40; polyY[2] = y + 25;
+            g.fillPolygon(polyX, polyY, 3);
+            g.setColor(Color.GRAY);
+            g.fillRect(x + 23, y + 10, 4, 10);
+        } else {
+            g.setColor(ARMOR);
+            g.fillRect(x + 20, y + 25, 10, 10);
+            g.setColor(Color.BLACK);
+            g.fillRect(x + 22, y + 30, 6, 2);
+        }
+        if (currentLevel == 3 && !isSage && color != Color.BLUE) {
+            g.setColor(SPIRIT_AURA);
+            g.fillOval(x + 10, y, 30, 30);
+            g.setColor(Color.WHITE);
+            g.fillOval(x + 20, y + 10, 4, 4);
+            g.fillOval(x + 26, y + 10, 4, 4);
+        }
+        g.setColor(Color.BLACK);
+        switch (facing) {
+            case 0: g.drawLine(x + 25, y + 15, x + 25, y + 5); break;
+            case 1: g.drawLine(x + 25, y + 15, x + 35, y + 15); break;
+            case 2: g.drawLine(x + 25, y + 15, x + 25, y + 25); break;
+            case 3: g.drawLine(x + 25, y + 15, x + 15, y + 15); break;
+        }
+    }
+}